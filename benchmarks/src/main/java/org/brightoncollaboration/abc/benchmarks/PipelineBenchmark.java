@@ -0,0 +1,100 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.benchmarks;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.RecursiveDescentParser;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.visitor.CNFConjunction;
+import org.brightoncollaboration.abc.clause.visitor.CNFEncoding;
+import org.brightoncollaboration.abc.clause.visitor.ClauseSimplifier;
+import org.brightoncollaboration.abc.clause.visitor.FillAndSimplify;
+import org.brightoncollaboration.abc.clause.visitor.FillEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Benchmarks the stages of the classification pipeline separately and end
+ * to end. Each stage gets the output of the previous stage as input (see
+ * Workload).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Benchmark
+    public CaseDefinition parseCaseDefinition(Workload workload) throws ParseException {
+        return AbcParser.parseCaseDefinition(workload.text, workload.creator);
+    }
+
+    @Benchmark
+    public CaseDefinition parseCaseDefinitionRecursiveDescent(Workload workload) throws ParseException {
+        return RecursiveDescentParser.parseCaseDefinition(workload.text, workload.creator);
+    }
+
+    @Benchmark
+    public Clause fillEvent(Workload workload) {
+        return workload.clause.acceptVisitor(new FillEvent(workload.event));
+    }
+
+    @Benchmark
+    public Clause simplify(Workload workload) {
+        return workload.filled.acceptVisitor(new ClauseSimplifier());
+    }
+
+    @Benchmark
+    public Clause fillAndSimplify(Workload workload) {
+        return workload.clause.acceptVisitor(new FillAndSimplify(workload.event));
+    }
+
+    @Benchmark
+    public CNFConjunction toCNFConjunction(Workload workload) {
+        return CNFEncoding.AUTOMATIC.encode(workload.simplified);
+    }
+
+    @Benchmark
+    public boolean isSatisfiable(Workload workload) throws TimeoutException {
+        return workload.simplified.isSatisfiable();
+    }
+
+    @Benchmark
+    public boolean isTautology(Workload workload) throws TimeoutException {
+        return workload.simplified.isTautology();
+    }
+
+    @Benchmark
+    public Classification assignLevel(Workload workload) {
+        return workload.caseDefinition.assignLevel(workload.event);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.benchmarks;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.visitor.ClauseSimplifier;
+import org.brightoncollaboration.abc.clause.visitor.FillEvent;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A synthetic case definition and event. The level clauses are trees of
+ * ATLEAST lists of the given width, threshold and depth over the given number
+ * of criteria. Every third leaf is negated and every fifth is an unknown test.
+ * About a third of the criteria are left unknown in the event, so that the
+ * preconditions do not simplify to constants.
+ *
+ * The intermediate clauses of the pipeline are precomputed, so that each
+ * stage can be measured on its own.
+ */
+@State(Scope.Benchmark)
+public class Workload {
+
+    @Param({"8", "32"})
+    public int criteria;
+
+    @Param({"3", "6"})
+    public int width;
+
+    @Param({"1", "2"})
+    public int threshold;
+
+    @Param({"1", "2", "3"})
+    public int depth;
+
+    Criterion.Creator creator;
+    String text;
+    CaseDefinition caseDefinition;
+    Event event;
+    Clause clause;
+    Clause filled;
+    Clause simplified;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ParseException {
+        creator = Criterion.Creator.fromScratch();
+        text = String.format("CASEDEFINITION \"benchmark\" LEVEL1 (%s) LEVEL2 (%s) LEVEL3 (%s)",
+                clause(depth, 0), clause(depth, 1), clause(Math.max(depth - 1, 1), 2));
+        caseDefinition = AbcParser.parseCaseDefinition(text, creator);
+        event = event(new Random(criteria * 31 + depth));
+        clause = caseDefinition.getLevel1Clause();
+        filled = clause.acceptVisitor(new FillEvent(event));
+        simplified = filled.acceptVisitor(new ClauseSimplifier());
+    }
+
+    private int leaves = 0;
+
+    private String clause(int depth, int offset) {
+        if (depth == 0) {
+            int leaf = leaves++;
+            String name = "C" + ((leaf * 7 + offset) % criteria);
+            if (leaf % 5 == 4)
+                return "?" + name;
+            else if (leaf % 3 == 2)
+                return "!" + name;
+            else
+                return name;
+        } else {
+            List<String> children = new ArrayList<String>(width);
+            for (int i = 0; i < width; i++)
+                children.add("(" + clause(depth - 1, offset) + ")");
+            StringBuilder sb = new StringBuilder("ATLEAST " + Math.min(threshold, width) + " FROM ");
+            for (int i = 0; i < children.size(); i++)
+                sb.append(i == 0 ? "" : ", ").append(children.get(i));
+            return sb.toString();
+        }
+    }
+
+    private Event event(Random random) {
+        Event event = new Event();
+        for (int i = 0; i < criteria; i++) {
+            switch (random.nextInt(3)) {
+            case 0:
+                event.addSymptom(creator.getByShortName("C" + i), Value.POSITIVE);
+                break;
+            case 1:
+                event.addSymptom(creator.getByShortName("C" + i), Value.NEGATIVE);
+                break;
+            default:
+                break;
+            }
+        }
+        return event;
+    }
+}
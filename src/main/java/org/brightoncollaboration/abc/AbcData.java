@@ -21,9 +21,11 @@ package org.brightoncollaboration.abc;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.brightoncollaboration.abc.Criterion.Creator;
 
@@ -33,53 +35,73 @@ public abstract class AbcData {
 	
 	public abstract Criterion.Creator getCriterionCreator();
 	
+	/** Validates the data and logs the problems of the report (see
+	 *  validationReport). Only when no criteria are missing, the levels of
+	 *  the case definitions are analyzed, each within the budget of
+	 *  LevelAnalysis, and unnested levels are logged.
+	 *
+	 *  @throws AbcConfigurationException if criteria are missing
+	 */
 	void validate() throws AbcConfigurationException {
-        
-	    StringBuffer irrelevantMsg = new StringBuffer();
-	    Collection<Criterion> irrelevant = irrelevantCriteria();
-        if (!irrelevant.isEmpty()) {
-            irrelevantMsg.append(String.format("there are irrelevant criteria: %s", irrelevant));
-            AbcEngine.log.warn(irrelevantMsg.toString());
-        }
-        
-        StringBuffer missingMsg = new StringBuffer();
-        Collection<Criterion> missing = missingCriteria();
-        if (!missing.isEmpty()) {            
-            missingMsg.append("criteria are missing for the case definitions: ");
-            missingMsg.append(missing.toString());
-            AbcEngine.log.warn(missingMsg.toString()); 
-        }
-        
-        if (!missing.isEmpty()) {
-            StringBuffer errorMsg = new StringBuffer();
-            errorMsg.append(missingMsg);            
-            if (!irrelevant.isEmpty()) {
-                errorMsg.append(" however there are irrelevant criteria, too: ");
-                errorMsg.append(irrelevantMsg);
-            }
-            throw new AbcConfigurationException(errorMsg.toString());
-        }
+	    ValidationReport report;
+	    try {
+	        report = validationReport();
+	    } catch (InterruptedException exc) {
+	        Thread.currentThread().interrupt();
+	        throw new AbcConfigurationException("Validation interrupted", exc);
+	    }
+
+	    Set<Criterion> irrelevant = report.getIrrelevantCriteria();
+	    if (!irrelevant.isEmpty())
+	        AbcEngine.log.warn(String.format("there are irrelevant criteria: %s", irrelevant));
+
+	    if (!report.isValid()) {
+	        String msg = String.format("criteria are missing for the case definitions: %s", report.getMissingCriteria());
+	        AbcEngine.log.warn(msg);
+	        if (!irrelevant.isEmpty())
+	            msg += String.format(" however there are irrelevant criteria, too: %s", irrelevant);
+	        throw new AbcConfigurationException(msg);
+	    }
+
+	    for (CaseDefinition caseDefinition : getCaseDefinitions().values()) {
+	        LevelAnalysis analysis = caseDefinition.analyzeLevels();
+	        if (!analysis.isNested())
+	            AbcEngine.log.warn(String.format("levels of %s are not nested (%s): %s",
+	                    caseDefinition, analysis, analysis.getProblems()));
+	    }
+	}
+
+	/** Validates the case definitions in parallel on all processors.
+	 */
+	public ValidationReport validationReport() throws InterruptedException {
+	    return validationReport(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ValidationReport validationReport(int parallelism) throws InterruptedException {
+	    return ValidationReport.validate(this, parallelism);
 	}
 
-    private Collection<Criterion> occurringCriteria() {
-        Collection<Criterion> res = new LinkedList<Criterion>();
+    private Set<Criterion> occurringCriteria() {
+        Set<Criterion> res = new LinkedHashSet<Criterion>();
         for (CaseDefinition caseDefinition : getCaseDefinitions().values())
             res.addAll(caseDefinition.occurringCriteria());
         return res;
     }
 
     public Collection<Criterion> missingCriteria() {
-        Collection<Criterion> res = new LinkedList<Criterion>();
-        Collection<Criterion> occurring = occurringCriteria();
-        for (Criterion criterion : occurring)
-            if (getCriterionCreator() != Creator.FROM_SCRATCH && !getCriterionCreator().getCriteria().contains(criterion))
+        Collection<Criterion> res = new LinkedHashSet<Criterion>();
+        if (getCriterionCreator() == Creator.FROM_SCRATCH)
+            return res;
+        Set<Criterion> known = new HashSet<Criterion>(getCriterionCreator().getCriteria());
+        for (Criterion criterion : occurringCriteria())
+            if (!known.contains(criterion))
                 res.add(criterion);
         return res;
     }
 
     public Collection<Criterion> irrelevantCriteria() {
-        Collection<Criterion> res = new LinkedList<Criterion>();
-        Collection<Criterion> occurring = occurringCriteria();
+        Collection<Criterion> res = new LinkedHashSet<Criterion>();
+        Set<Criterion> occurring = occurringCriteria();
         for (Criterion criterion : getCriterionCreator().getCriteria())
             if (!occurring.contains(criterion))
                 res.add(criterion);
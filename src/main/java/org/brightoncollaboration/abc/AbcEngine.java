@@ -19,13 +19,22 @@
 
 package org.brightoncollaboration.abc;
 
+import java.lang.management.ManagementFactory;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.log4j.Logger;
 import org.brightoncollaboration.abc.Criterion.Tag;
+import org.brightoncollaboration.abc.clause.SolverBudget;
 
 /**
  * This class provides high level and validation methods to work with the ABC
@@ -35,7 +44,13 @@ public class AbcEngine {
 
     static final Logger log = Logger.getLogger(AbcEngine.class);
 
+    public static final String METRICS_NAME = "org.brightoncollaboration.abc:type=Metrics";
+
     private AbcData data;
+
+    private volatile ClassificationCache cache = null;
+    private volatile SolverBudget solverBudget = null;
+    private volatile CaseDefinitionIndex caseDefinitionIndex = null;
     
     public AbcEngine() {
         this.data = null;
@@ -46,6 +61,16 @@ public class AbcEngine {
         this.data = data;
     }
 
+    /** Starts from a snapshot, whose data was validated when it was written
+     *  (see AbcSnapshot). The classification tables of the snapshot are not
+     *  used by the engine.
+     */
+    public static AbcEngine fromSnapshot(AbcSnapshot snapshot) {
+        AbcEngine engine = new AbcEngine();
+        engine.data = snapshot.getData();
+        return engine;
+    }
+
     public Criterion.Creator getCriterionCreator() {
         return data.getCriterionCreator();
     }
@@ -83,11 +108,102 @@ public class AbcEngine {
         return res;
     }
 
+    /** Sets the cache used by confirmDiagnosis, null to disable caching.
+     */
+    public void setClassificationCache(ClassificationCache cache) {
+        this.cache = cache;
+    }
+
+    public ClassificationCache getClassificationCache() {
+        return cache;
+    }
+
+    /** Sets the budget of the satisfiability tests for all case definitions
+     *  without their own (see CaseDefinition.setSolverBudget), null for no
+     *  limits.
+     */
+    public void setSolverBudget(SolverBudget solverBudget) {
+        this.solverBudget = solverBudget;
+    }
+
+    public SolverBudget getSolverBudget() {
+        return solverBudget;
+    }
+
+    /** Enables the Metrics and registers them with the platform MBean
+     *  server, unless already registered.
+     */
+    public static ObjectName registerMetrics() throws JMException {
+        ObjectName name = new ObjectName(METRICS_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        synchronized (AbcEngine.class) {
+            if (!server.isRegistered(name))
+                server.registerMBean(Metrics.mxBean(), name);
+        }
+        Metrics.setEnabled(true);
+        return name;
+    }
+
+    /** Disables the Metrics and removes them from the platform MBean server.
+     */
+    public static void unregisterMetrics() throws JMException {
+        ObjectName name = new ObjectName(METRICS_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Metrics.setEnabled(false);
+        synchronized (AbcEngine.class) {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+    }
+
     public Classification confirmDiagnosis(String reporterName, CaseDefinition caseDefinition, CommentedValue.Event event) throws AbcConfigurationException {
-        Classification classification = caseDefinition.assignLevel(event.toEvent());
+        Classification classification = caseDefinition.assignLevel(
+                data == null ? event.toEvent() : event.toEvent(data.getCriterionCreator()), cache, solverBudget);
         log.debug(String.format("Confirm diagnosis: case definition %s: %s", caseDefinition.getName()
                 .defaultTranslation(), classification.getResult().toInt()));
         return classification;
     }
+
+    /** Same as confirmDiagnosis, but classifies on the given classifier and
+     *  returns immediately.
+     */
+    public Future<Classification> confirmDiagnosisAsync(String reporterName, CaseDefinition caseDefinition, CommentedValue.Event event, AsyncClassifier classifier) throws RejectedExecutionException {
+        return classifier.submit(caseDefinition,
+                data == null ? event.toEvent() : event.toEvent(data.getCriterionCreator()), cache, solverBudget);
+    }
+
+    /** Classifies the event by all case definitions, see
+     *  CaseDefinitionIndex, using the cache and the budget of the engine.
+     *  An engine without data has no case definitions and returns an empty
+     *  map.
+     */
+    public Map<String, Classification> confirmDiagnoses(String reporterName, CommentedValue.Event event) {
+        if (data == null)
+            return Collections.emptyMap();
+        CaseDefinitionIndex index = caseDefinitionIndex;
+        if (index == null)
+            caseDefinitionIndex = index = new CaseDefinitionIndex(data);
+        Map<String, Classification> classifications = index.classify(event.toEvent(data.getCriterionCreator()), cache, solverBudget);
+        log.debug(String.format("Confirm diagnoses: event %s: %d case definitions", event.getUid(), classifications.size()));
+        return classifications;
+    }
+
+    /** Starts an incremental classification of the event, to which symptoms
+     *  are added one at a time, using the budget of the engine.
+     */
+    public ClassificationSession classificationSession(CaseDefinition caseDefinition, CommentedValue.Event event) {
+        return new ClassificationSession(caseDefinition,
+                data == null ? event.toEvent() : event.toEvent(data.getCriterionCreator()), solverBudget);
+    }
+
+    /** Confirm the diagnoses of all events for all case definitions in
+     *  parallel, using the cache and the budget of the engine.
+     */
+    public BatchClassifier.Result confirmDiagnoses(String reporterName, Collection<CaseDefinition> caseDefinitions, Iterable<CommentedValue.Event> events, BatchClassifier classifier) throws InterruptedException {
+        BatchClassifier.Result result = classifier.classify(events.iterator(), caseDefinitions,
+                data == null ? null : data.getCriterionCreator(), cache, solverBudget);
+        log.info(String.format("Confirm diagnoses: %s", result));
+        return result;
+    }
     
 }
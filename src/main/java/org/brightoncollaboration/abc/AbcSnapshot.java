@@ -0,0 +1,596 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.brightoncollaboration.abc.MedDRACoding.MedDRATerm;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.Relation;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+import org.brightoncollaboration.abc.tools.I18n;
+import org.brightoncollaboration.abc.tools.StringI18n;
+
+/**
+ * A validated AbcData in a binary file, which is loaded without parsing and
+ * validating again. The file holds
+ *
+ * - the criteria of the creator in the order of their ordinals,
+ * - the level clauses as a DAG of the interned clauses, each clause once,
+ * - the case definitions with their level analysis (see LevelAnalysis),
+ * - optionally classification tables (see ClassificationTable), and
+ * - the CRC32 checksums of the source files the data was read from, so that
+ *   isCurrent can tell whether the snapshot is outdated.
+ *
+ * The payload is protected by a CRC32 checksum, which is verified when the
+ * file is loaded. Loading maps the file into memory.
+ */
+public class AbcSnapshot {
+
+    private static final int MAGIC = 0x41424353;
+    private static final int VERSION = 1;
+
+    // Tags of the clauses in the DAG
+    private static final byte FALSE = 0, TRUE = 1, CRITERION = 2, NOT = 3, AND = 4, NLIST = 5;
+
+    private final AbcData data;
+    private final Map<String, ClassificationTable> tables;
+    private final Map<String, Long> sources;
+
+    private AbcSnapshot(AbcData data, Map<String, ClassificationTable> tables, Map<String, Long> sources) {
+        this.data = data;
+        this.tables = tables;
+        this.sources = sources;
+    }
+
+    public AbcData getData() {
+        return data;
+    }
+
+    /** The classification tables by the names of their case definitions.
+     */
+    public Map<String, ClassificationTable> getClassificationTables() {
+        return Collections.unmodifiableMap(tables);
+    }
+
+    /** The checksums of the source files by their paths.
+     */
+    public Map<String, Long> getSources() {
+        return Collections.unmodifiableMap(sources);
+    }
+
+    /** Tests whether the source files are exactly those of the snapshot and
+     *  unchanged.
+     */
+    public boolean isCurrent(Collection<File> files) throws IOException {
+        if (files.size() != sources.size())
+            return false;
+        for (File file : files) {
+            Long checksum = sources.get(file.getPath());
+            if (checksum == null || checksum != checksum(file))
+                return false;
+        }
+        return true;
+    }
+
+    // Writing
+
+    /** Validates the data and writes it with the tables (by the names of
+     *  their case definitions, possibly empty) and the checksums of the
+     *  source files.
+     */
+    public static void write(File file, AbcData data, Map<String, ClassificationTable> tables, Collection<File> sources) throws IOException, AbcConfigurationException {
+        data.validate();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(sources.size());
+        for (File source : sources) {
+            writeString(out, source.getPath());
+            out.writeLong(checksum(source));
+        }
+
+        Criterion.Creator creator = data.getCriterionCreator();
+        boolean fromScratch = creator == Criterion.Creator.FROM_SCRATCH;
+        out.writeBoolean(fromScratch);
+        List<Criterion> criteria = new ArrayList<Criterion>();
+        if (fromScratch) {
+            Set<Criterion> occurring = new LinkedHashSet<Criterion>();
+            for (CaseDefinition caseDefinition : data.getCaseDefinitions().values())
+                occurring.addAll(caseDefinition.occurringCriteria());
+            criteria.addAll(occurring);
+            out.writeInt(criteria.size());
+            for (Criterion criterion : criteria)
+                writeString(out, criterion.getShortName());
+        } else {
+            for (int ordinal = 0; ordinal < creator.getOrdinalBound(); ordinal++)
+                if (creator.getByOrdinal(ordinal) != null)
+                    criteria.add(creator.getByOrdinal(ordinal));
+            out.writeInt(criteria.size());
+            for (Criterion criterion : criteria)
+                writeCriterion(out, criterion);
+        }
+
+        ClauseWriter clauses = new ClauseWriter(out, criteria);
+        List<int[]> levels = new ArrayList<int[]>();
+        for (CaseDefinition caseDefinition : data.getCaseDefinitions().values())
+            levels.add(new int[] {
+                    caseDefinition.getLevel1Clause().acceptVisitor(clauses),
+                    caseDefinition.getLevel2Clause().acceptVisitor(clauses),
+                    caseDefinition.getLevel3Clause().acceptVisitor(clauses) });
+        out.writeByte(-1);
+
+        out.writeInt(data.getCaseDefinitions().size());
+        int i = 0;
+        for (Map.Entry<String, CaseDefinition> entry : data.getCaseDefinitions().entrySet()) {
+            CaseDefinition caseDefinition = entry.getValue();
+            writeString(out, entry.getKey());
+            writeTranslations(out, caseDefinition.getName());
+            for (int level : levels.get(i++))
+                out.writeInt(level);
+            out.writeInt(caseDefinition.analyzeLevels().toBits());
+            ClassificationTable table = tables.get(entry.getKey());
+            if (table != null && table.getCaseDefinition() != caseDefinition)
+                throw new IllegalArgumentException(String.format("Classification table of %s for %s", table.getCaseDefinition(), caseDefinition));
+            out.writeBoolean(table != null);
+            if (table != null) {
+                ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+                table.save(tableBytes);
+                out.writeInt(tableBytes.size());
+                tableBytes.writeTo(out);
+            }
+        }
+        out.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        // Readers never see a partly written snapshot, as in ClassificationTable.loadOrCompile
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream stream = new DataOutputStream(new FileOutputStream(tmp));
+        boolean written = false;
+        try {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(crc.getValue());
+            stream.writeInt(bytes.size());
+            bytes.writeTo(stream);
+            written = true;
+        } finally {
+            stream.close();
+            if (!written)
+                tmp.delete();
+        }
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file)))
+            throw new IOException(String.format("Cannot write snapshot %s", file));
+    }
+
+    /** Numbers the clauses in the order of their first complete visit, so
+     *  that children precede their parents, and writes each clause once.
+     */
+    private static class ClauseWriter implements Visitor<Integer> {
+
+        private final DataOutputStream out;
+        private final Map<Criterion, Integer> criteria = new HashMap<Criterion, Integer>();
+        private final Map<Clause, Integer> ids = new IdentityHashMap<Clause, Integer>();
+
+        ClauseWriter(DataOutputStream out, List<Criterion> criteria) {
+            this.out = out;
+            for (int i = 0; i < criteria.size(); i++)
+                this.criteria.put(criteria.get(i), i);
+        }
+
+        private Integer written(Clause clause) {
+            Integer id = ids.size();
+            ids.put(clause, id);
+            return id;
+        }
+
+        private int[] children(List<Clause> clauses) {
+            int[] res = new int[clauses.size()];
+            for (int i = 0; i < res.length; i++)
+                res[i] = clauses.get(i).acceptVisitor(this);
+            return res;
+        }
+
+        private void writeChildren(int[] children) throws IOException {
+            out.writeInt(children.length);
+            for (int child : children)
+                out.writeInt(child);
+        }
+
+        public Integer visitConstant(ConstantClause c) {
+            if (ids.containsKey(c))
+                return ids.get(c);
+            try {
+                out.writeByte(c.getValue() ? TRUE : FALSE);
+            } catch (IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+            return written(c);
+        }
+
+        public Integer visitCriterion(CriterionClause c) {
+            if (ids.containsKey(c))
+                return ids.get(c);
+            Integer criterion = criteria.get(c.getCriterion());
+            if (criterion == null)
+                throw new IllegalStateException(String.format("Unknown criterion %s", c.getCriterion()));
+            try {
+                out.writeByte(CRITERION);
+                out.writeInt(criterion);
+                out.writeByte(c.getValue().toInteger());
+            } catch (IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+            return written(c);
+        }
+
+        public Integer visitNot(NotClause c) {
+            if (ids.containsKey(c))
+                return ids.get(c);
+            int child = c.getClause().acceptVisitor(this);
+            try {
+                out.writeByte(NOT);
+                out.writeInt(child);
+            } catch (IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+            return written(c);
+        }
+
+        public Integer visitAnd(AndClause c) {
+            if (ids.containsKey(c))
+                return ids.get(c);
+            int[] children = children(c.getClauses());
+            try {
+                out.writeByte(AND);
+                writeChildren(children);
+            } catch (IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+            return written(c);
+        }
+
+        public Integer visitNList(NListClause c) {
+            if (ids.containsKey(c))
+                return ids.get(c);
+            int[] children = children(c.getClauses());
+            try {
+                out.writeByte(NLIST);
+                out.writeByte(c.getRelation().ordinal());
+                out.writeInt(c.getNumber());
+                writeChildren(children);
+            } catch (IOException exc) {
+                throw new IllegalStateException(exc);
+            }
+            return written(c);
+        }
+    }
+
+    private static void writeCriterion(DataOutputStream out, Criterion criterion) throws IOException {
+        writeString(out, criterion.getShortName());
+        writeTranslations(out, criterion.getWording());
+        writeTranslations(out, criterion.getComment());
+        List<I18n<Criterion.Footnote>> footnotes = criterion.getFootnotes();
+        out.writeInt(footnotes == null ? -1 : footnotes.size());
+        if (footnotes != null)
+            for (I18n<Criterion.Footnote> footnote : footnotes) {
+                out.writeInt(footnote.getLanguages().size());
+                for (String language : footnote.getLanguages()) {
+                    writeString(out, language);
+                    Criterion.Footnote translation = footnote.translation(language);
+                    out.writeInt(translation.getPosition() == null ? -1 : translation.getPosition());
+                    writeString(out, translation.getContent());
+                }
+            }
+        List<StringI18n> references = criterion.getReferences();
+        out.writeInt(references == null ? -1 : references.size());
+        if (references != null)
+            for (StringI18n reference : references)
+                writeTranslations(out, reference);
+        Collection<Criterion.Tag> tags = criterion.getTags();
+        out.writeInt(tags == null ? -1 : tags.size());
+        if (tags != null)
+            for (Criterion.Tag tag : tags) {
+                writeString(out, tag.getId());
+                writeTranslations(out, tag.getName());
+            }
+        MedDRACoding coding = criterion.getMedDRACoding();
+        out.writeBoolean(coding != null);
+        if (coding != null) {
+            writeTerms(out, coding.highLevelTerms);
+            writeTerms(out, coding.preferredLevelTerms);
+            writeTerms(out, coding.lowestLevelTerms);
+        }
+        Integer weight = criterion.getOrderingWeight();
+        out.writeBoolean(weight != null);
+        if (weight != null)
+            out.writeInt(weight);
+    }
+
+    private static void writeTerms(DataOutputStream out, Collection<MedDRATerm> terms) throws IOException {
+        out.writeInt(terms == null ? -1 : terms.size());
+        if (terms != null)
+            for (MedDRATerm term : terms)
+                writeString(out, term.id);
+    }
+
+    private static void writeTranslations(DataOutputStream out, StringI18n str) throws IOException {
+        out.writeInt(str == null ? -1 : str.getLanguages().size());
+        if (str != null)
+            for (String language : str.getLanguages()) {
+                writeString(out, language);
+                writeString(out, str.translation(language));
+            }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null)
+            out.writeInt(-1);
+        else {
+            byte[] bytes = str.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer))
+                crc.update(buffer, 0, n);
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    // Reading
+
+    /** Maps the file into memory, verifies its checksum and restores the
+     *  data.
+     *
+     *  @throws IOException if the file is not a snapshot of this version or
+     *  is corrupt.
+     */
+    public static AbcSnapshot read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not an ABC snapshot");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException(String.format("Unsupported ABC snapshot version %d", version));
+            long checksum = buffer.getLong();
+            int length = buffer.getInt();
+            if (length != buffer.remaining())
+                throw new IOException("Truncated ABC snapshot");
+            if (checksum(buffer.duplicate()) != checksum)
+                throw new IOException("Corrupt ABC snapshot (checksum mismatch)");
+            return read(buffer);
+        } catch (BufferUnderflowException exc) {
+            throw new IOException("Truncated ABC snapshot");
+        } catch (AbcConfigurationException exc) {
+            throw new IOException(String.format("Invalid criteria in ABC snapshot: %s", exc.getMessage()));
+        }
+    }
+
+    private static long checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return crc.getValue();
+    }
+
+    private static AbcSnapshot read(ByteBuffer in) throws IOException, AbcConfigurationException {
+        Map<String, Long> sources = new LinkedHashMap<String, Long>();
+        for (int i = in.getInt(); i > 0; i--) {
+            String path = readString(in);
+            sources.put(path, in.getLong());
+        }
+
+        Criterion.Creator creator;
+        boolean fromScratch = in.get() != 0;
+        Criterion[] criteria = new Criterion[in.getInt()];
+        if (fromScratch) {
+            creator = Criterion.Creator.fromScratch();
+            for (int i = 0; i < criteria.length; i++)
+                criteria[i] = creator.getByShortName(readString(in));
+        } else {
+            for (int i = 0; i < criteria.length; i++)
+                criteria[i] = readCriterion(in);
+            creator = new Criterion.Creator(Arrays.asList(criteria));
+        }
+
+        List<Clause> clauses = new ArrayList<Clause>();
+        for (byte tag = in.get(); tag != -1; tag = in.get()) {
+            switch (tag) {
+            case FALSE:
+                clauses.add(Clause.fals());
+                break;
+            case TRUE:
+                clauses.add(Clause.tru());
+                break;
+            case CRITERION:
+                Criterion criterion = criteria[in.getInt()];
+                clauses.add(Clause.criterion(criterion, value(in.get())));
+                break;
+            case NOT:
+                clauses.add(Clause.not(clauses.get(in.getInt())));
+                break;
+            case AND:
+                clauses.add(Clause.and(readChildren(in, clauses)));
+                break;
+            case NLIST:
+                Relation relation = Relation.values()[in.get()];
+                int number = in.getInt();
+                clauses.add(Clause.nlist(relation, number, readChildren(in, clauses)));
+                break;
+            default:
+                throw new IOException(String.format("Invalid clause tag %d in ABC snapshot", tag));
+            }
+        }
+
+        Map<String, CaseDefinition> caseDefinitions = new LinkedHashMap<String, CaseDefinition>();
+        Map<String, ClassificationTable> tables = new HashMap<String, ClassificationTable>();
+        for (int i = in.getInt(); i > 0; i--) {
+            String key = readString(in);
+            StringI18n name = readTranslations(in);
+            CaseDefinition caseDefinition = new CaseDefinition(name,
+                    clauses.get(in.getInt()), clauses.get(in.getInt()), clauses.get(in.getInt()));
+            caseDefinition.setLevelAnalysis(new LevelAnalysis(caseDefinition, in.getInt()));
+            caseDefinitions.put(key, caseDefinition);
+            if (in.get() != 0) {
+                byte[] table = new byte[in.getInt()];
+                in.get(table);
+                tables.put(key, ClassificationTable.load(new ByteArrayInputStream(table), caseDefinition));
+            }
+        }
+        return new AbcSnapshot(AbcData.staticData(creator, caseDefinitions), tables, sources);
+    }
+
+    private static Value value(int code) throws IOException {
+        for (Value value : Value.values())
+            if (value.toInteger() == code)
+                return value;
+        throw new IOException(String.format("Invalid value %d in ABC snapshot", code));
+    }
+
+    private static Clause[] readChildren(ByteBuffer in, List<Clause> clauses) {
+        Clause[] res = new Clause[in.getInt()];
+        for (int i = 0; i < res.length; i++)
+            res[i] = clauses.get(in.getInt());
+        return res;
+    }
+
+    private static Criterion readCriterion(ByteBuffer in) throws IOException {
+        String shortName = readString(in);
+        StringI18n wording = readTranslations(in);
+        StringI18n comment = readTranslations(in);
+        List<I18n<Criterion.Footnote>> footnotes = null;
+        int n = in.getInt();
+        if (n >= 0) {
+            footnotes = new LinkedList<I18n<Criterion.Footnote>>();
+            for (int i = 0; i < n; i++) {
+                Map<String, Criterion.Footnote> translations = new HashMap<String, Criterion.Footnote>();
+                for (int j = in.getInt(); j > 0; j--) {
+                    String language = readString(in);
+                    int position = in.getInt();
+                    translations.put(language, new Criterion.Footnote(position < 0 ? null : position, readString(in)));
+                }
+                footnotes.add(new I18n<Criterion.Footnote>(translations));
+            }
+        }
+        List<StringI18n> references = null;
+        n = in.getInt();
+        if (n >= 0) {
+            references = new LinkedList<StringI18n>();
+            for (int i = 0; i < n; i++)
+                references.add(readTranslations(in));
+        }
+        List<Criterion.Tag> tags = null;
+        n = in.getInt();
+        if (n >= 0) {
+            tags = new LinkedList<Criterion.Tag>();
+            for (int i = 0; i < n; i++) {
+                String id = readString(in);
+                tags.add(new Criterion.Tag(id, readTranslations(in)));
+            }
+        }
+        MedDRACoding coding = null;
+        if (in.get() != 0)
+            coding = new MedDRACoding(readTerms(in), readTerms(in), readTerms(in));
+        Integer weight = in.get() != 0 ? in.getInt() : null;
+        return new Criterion(shortName, wording, comment, footnotes, references, tags, coding, weight);
+    }
+
+    private static Collection<MedDRATerm> readTerms(ByteBuffer in) throws IOException {
+        int n = in.getInt();
+        if (n < 0)
+            return null;
+        List<MedDRATerm> res = new ArrayList<MedDRATerm>(n);
+        for (int i = 0; i < n; i++)
+            res.add(new MedDRATerm(readString(in)));
+        return res;
+    }
+
+    private static StringI18n readTranslations(ByteBuffer in) throws IOException {
+        int n = in.getInt();
+        if (n < 0)
+            return null;
+        Map<String, String> translations = new HashMap<String, String>();
+        for (int i = 0; i < n; i++) {
+            String language = readString(in);
+            translations.put(language, readString(in));
+        }
+        return new StringI18n(translations);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
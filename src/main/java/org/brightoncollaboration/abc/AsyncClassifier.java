@@ -0,0 +1,130 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.brightoncollaboration.abc.clause.SolverBudget;
+
+/**
+ * Classifies single events on a bounded pool of daemon threads, so that slow
+ * classifications do not block the callers. At most queueCapacity
+ * classifications wait for a thread; further submissions are handled by the
+ * rejection policy (by default, they throw a RejectedExecutionException).
+ *
+ * Cancelling a future with mayInterruptIfRunning stops a running solver (see
+ * SolverBudget.interrupt) and the classification ends as an ERROR with reason
+ * INTERRUPTED.
+ */
+public class AsyncClassifier {
+
+    private final ThreadPoolExecutor executor;
+
+    public AsyncClassifier(int threads, int queueCapacity) {
+        this(threads, queueCapacity, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public AsyncClassifier(int threads, int queueCapacity, RejectedExecutionHandler rejectionPolicy) {
+        if (threads <= 0)
+            throw new IllegalArgumentException(String.format("Invalid number of threads %d", threads));
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException(String.format("Invalid queue capacity %d", queueCapacity));
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new DaemonThreadFactory("abc-async-"), rejectionPolicy);
+    }
+
+    /** Classify the event against the case definition, using the cache and
+     *  the budget as in CaseDefinition.assignLevel(event, cache, budget).
+     *  Both may be null.
+     */
+    public Future<Classification> submit(final CaseDefinition caseDefinition, final Event event, final ClassificationCache cache, final SolverBudget budget) throws RejectedExecutionException {
+        ClassificationTask task = new ClassificationTask(new Callable<Classification>() {
+            public Classification call() {
+                return caseDefinition.assignLevel(event, cache, budget);
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    /** The number of classifications waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /** Stops accepting classifications. Those already submitted are
+     *  completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /** Records the thread running the task, so that cancel can stop its
+     *  solver and not the solver of the next task of the thread.
+     */
+    private static class ClassificationTask extends FutureTask<Classification> {
+
+        private Thread runner = null;
+
+        ClassificationTask(Callable<Classification> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            try {
+                super.run();
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean res = super.cancel(mayInterruptIfRunning);
+            if (res && mayInterruptIfRunning)
+                synchronized (this) {
+                    if (runner != null)
+                        SolverBudget.interrupt(runner);
+                }
+            return res;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.brightoncollaboration.abc.clause.SolverBudget;
+
+/**
+ * Classifies many events against a list of case definitions in parallel.
+ *
+ * The events are cut into chunks which are pulled by the workers as they
+ * become idle, so slow events (large preconditions) do not hold up a fixed
+ * partition. The results are reported in the order of the input events,
+ * independently of the scheduling.
+ */
+public class BatchClassifier {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    /** The classifications of a batch, in the order of the input.
+     */
+    public static class Result {
+
+        private final List<CaseDefinition> caseDefinitions;
+        private final List<CommentedValue.Event> events;
+        private final List<Classification[]> classifications;
+        private final long elapsedNanos;
+
+        Result(List<CaseDefinition> caseDefinitions, List<CommentedValue.Event> events, List<Classification[]> classifications, long elapsedNanos) {
+            this.caseDefinitions = caseDefinitions;
+            this.events = events;
+            this.classifications = classifications;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<CaseDefinition> getCaseDefinitions() {
+            return caseDefinitions;
+        }
+
+        public List<CommentedValue.Event> getEvents() {
+            return events;
+        }
+
+        public int size() {
+            return events.size();
+        }
+
+        /** The classification of the i-th event by the j-th case definition.
+         */
+        public Classification getClassification(int event, int caseDefinition) {
+            return classifications.get(event)[caseDefinition];
+        }
+
+        /** The classifications of the i-th event, one per case definition.
+         */
+        public List<Classification> getClassifications(int event) {
+            return Collections.unmodifiableList(Arrays.asList(classifications.get(event)));
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** Classified events per second.
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : size() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d events, %d case definitions in %.1f ms (%.1f events/s)",
+                    size(), caseDefinitions.size(), elapsedNanos / 1e6, getThroughput());
+        }
+    }
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int parallelism;
+    private final int chunkSize;
+
+    /** Classify on a private pool of the given number of daemon threads.
+     */
+    public BatchClassifier(int parallelism) {
+        this(Executors.newFixedThreadPool(checkPositive(parallelism, "parallelism"), new DaemonThreadFactory("abc-batch-")), true, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    /** Classify on the given executor with the given number of workers. The
+     *  executor is not shut down by shutdown().
+     */
+    public BatchClassifier(ExecutorService executor, int parallelism, int chunkSize) {
+        this(executor, false, checkPositive(parallelism, "parallelism"), checkPositive(chunkSize, "chunk size"));
+    }
+
+    private BatchClassifier(ExecutorService executor, boolean ownExecutor, int parallelism, int chunkSize) {
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Result classify(Iterable<CommentedValue.Event> events, Collection<CaseDefinition> caseDefinitions, ClassificationCache cache) throws InterruptedException {
+        return classify(events.iterator(), caseDefinitions, cache, null);
+    }
+
+    public Result classify(Iterator<CommentedValue.Event> events, Collection<CaseDefinition> caseDefinitions, ClassificationCache cache) throws InterruptedException {
+        return classify(events, caseDefinitions, cache, null);
+    }
+
+    public Result classify(Iterable<CommentedValue.Event> events, Collection<CaseDefinition> caseDefinitions, ClassificationCache cache, SolverBudget budget) throws InterruptedException {
+        return classify(events.iterator(), caseDefinitions, cache, budget);
+    }
+
+    public Result classify(Iterator<CommentedValue.Event> events, Collection<CaseDefinition> caseDefinitions, ClassificationCache cache, SolverBudget budget) throws InterruptedException {
+        return classify(events, caseDefinitions, null, cache, budget);
+    }
+
+    /** Classify all events against all case definitions. The events are
+     *  packed for the criteria of the creator (see PackedEvent). The creator,
+     *  the cache and the budget (see CaseDefinition.assignLevel(event,
+     *  defaultBudget)) may be null. The iterator is only accessed by one
+     *  worker at a time. If a worker fails, the others are cancelled.
+     */
+    public Result classify(Iterator<CommentedValue.Event> events, Collection<CaseDefinition> caseDefinitions, final Criterion.Creator creator, final ClassificationCache cache, final SolverBudget budget) throws InterruptedException {
+        long start = System.nanoTime();
+        final CaseDefinition[] definitions = caseDefinitions.toArray(new CaseDefinition[caseDefinitions.size()]);
+        final ChunkSource source = new ChunkSource(events, chunkSize);
+        final ConcurrentHashMap<Integer, Classification[][]> chunks = new ConcurrentHashMap<Integer, Classification[][]>();
+        List<Future<?>> workers = new ArrayList<Future<?>>(parallelism);
+        for (int i = 0; i < parallelism; i++)
+            workers.add(executor.submit(new Runnable() {
+                public void run() {
+                    boolean completed = false;
+                    try {
+                        classifyChunks();
+                        completed = true;
+                    } finally {
+                        if (!completed)
+                            source.cancel();
+                    }
+                }
+                private void classifyChunks() {
+                    for (Chunk chunk = source.next(); chunk != null; chunk = source.next()) {
+                        Classification[][] res = new Classification[chunk.events.length][definitions.length];
+                        List<org.brightoncollaboration.abc.Event> events = new ArrayList<org.brightoncollaboration.abc.Event>(chunk.events.length);
+                        for (CommentedValue.Event event : chunk.events)
+                            events.add(creator == null ? event.toEvent() : event.toEvent(creator));
+                        for (int j = 0; j < definitions.length; j++) {
+                            if (cache == null) {
+                                // Evaluate the chunk bit-parallel, see CaseDefinition.assignLevels
+                                List<Classification> classifications = definitions[j].assignLevels(events, budget);
+                                for (int i = 0; i < events.size(); i++)
+                                    res[i][j] = classifications.get(i);
+                            } else
+                                for (int i = 0; i < events.size(); i++)
+                                    res[i][j] = definitions[j].assignLevel(events.get(i), cache, budget);
+                        }
+                        chunks.put(chunk.index, res);
+                    }
+                }
+            }));
+        try {
+            for (Future<?> worker: workers)
+                worker.get();
+        } catch (ExecutionException exc) {
+            for (Future<?> worker: workers)
+                worker.cancel(true);
+            throw new IllegalStateException("Batch classification failed", exc.getCause());
+        } catch (InterruptedException exc) {
+            for (Future<?> worker: workers)
+                worker.cancel(true);
+            throw exc;
+        }
+        List<Classification[]> classifications = new ArrayList<Classification[]>(source.events.size());
+        for (int i = 0; i < chunks.size(); i++)
+            classifications.addAll(Arrays.asList(chunks.get(i)));
+        return new Result(Collections.unmodifiableList(Arrays.asList(definitions)), Collections.unmodifiableList(source.events),
+                Collections.unmodifiableList(classifications), System.nanoTime() - start);
+    }
+
+    /** Shut down the pool if it was created by this classifier.
+     */
+    public void shutdown() {
+        if (ownExecutor)
+            executor.shutdown();
+    }
+
+    private static class Chunk {
+        final int index;
+        final CommentedValue.Event[] events;
+        Chunk(int index, CommentedValue.Event[] events) {
+            this.index = index;
+            this.events = events;
+        }
+    }
+
+    /** Hands out consecutive chunks of the input and records the events in
+     *  input order.
+     */
+    private static class ChunkSource {
+
+        private final Iterator<CommentedValue.Event> iterator;
+        private final int chunkSize;
+        private final List<CommentedValue.Event> events = new ArrayList<CommentedValue.Event>();
+        private int index = 0;
+        private volatile boolean cancelled = false;
+
+        ChunkSource(Iterator<CommentedValue.Event> iterator, int chunkSize) {
+            this.iterator = iterator;
+            this.chunkSize = chunkSize;
+        }
+
+        synchronized Chunk next() {
+            if (cancelled || !iterator.hasNext() || Thread.currentThread().isInterrupted())
+                return null;
+            List<CommentedValue.Event> chunk = new ArrayList<CommentedValue.Event>(chunkSize);
+            while (chunk.size() < chunkSize && iterator.hasNext())
+                chunk.add(iterator.next());
+            events.addAll(chunk);
+            return new Chunk(index++, chunk.toArray(new CommentedValue.Event[chunk.size()]));
+        }
+
+        /** No more chunks are handed out, because a worker failed.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static int checkPositive(int n, String what) {
+        if (n <= 0)
+            throw new IllegalArgumentException(String.format("Invalid %s %d", what, n));
+        return n;
+    }
+}
@@ -19,17 +19,29 @@
 
 package org.brightoncollaboration.abc;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.brightoncollaboration.abc.Classification.ErrorReason;
 import org.brightoncollaboration.abc.Classification.Result;
+import org.brightoncollaboration.abc.clause.BitParallelEvaluator;
+import org.brightoncollaboration.abc.clause.BitParallelEvaluator.Lanes;
+import org.brightoncollaboration.abc.clause.BinaryDecisionDiagram;
+import org.brightoncollaboration.abc.clause.BudgetExceededException;
 import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.SolverBudget;
 import org.brightoncollaboration.abc.clause.visitor.UnparseClause;
 import org.brightoncollaboration.abc.tools.StringI18n;
 
@@ -37,11 +49,31 @@ import org.brightoncollaboration.abc.tools.StringI18n;
 @XmlAccessorType(XmlAccessType.NONE)
 public class CaseDefinition {
 
+    /** How assignLevel decides whether the level clauses filled with an
+     *  event are tautologies or satisfiable.
+     */
+    public enum Backend {
+        /** A SAT solver per test, limited by the solver budget. */
+        SAT,
+        /** Binary decision diagrams of the level clauses, compiled on first
+         *  use (see Clause.toBinaryDecisionDiagram). No budget applies. */
+        BINARY_DECISION_DIAGRAM
+    }
+
     private final StringI18n name;
 
     private final Clause level1Clause;
     private final Clause level2Clause;
     private final Clause level3Clause;
+
+    private volatile Criterion[] sortedCriteria = null; // Computed lazily, see projection
+    private volatile LevelAnalysis levelAnalysis = null;  // See analyzeLevels
+    private volatile SolverBudget solverBudget = null;
+    private volatile Backend backend = Backend.SAT;
+    private volatile BinaryDecisionDiagram[] diagrams = null; // Computed lazily, see Backend.BINARY_DECISION_DIAGRAM
+
+    final AtomicLongArray resultCounts = new AtomicLongArray(Result.values().length); // See Metrics.recordResult
+    final AtomicBoolean resultsRecorded = new AtomicBoolean();
     
     public CaseDefinition() {
     	this(null, null, null, null);
@@ -93,31 +125,227 @@ public class CaseDefinition {
         return false;
     }
     
+    /** Proves the relations between the levels once (see LevelAnalysis),
+     *  which are then used by assignLevel to skip preconditions.
+     */
+    public LevelAnalysis analyzeLevels() {
+        LevelAnalysis analysis = levelAnalysis;
+        if (analysis == null)
+            levelAnalysis = analysis = new LevelAnalysis(this);
+        return analysis;
+    }
+
+    void setLevelAnalysis(LevelAnalysis levelAnalysis) {
+        this.levelAnalysis = levelAnalysis;
+    }
+
+    /** The analysis of the levels or null if analyzeLevels was not called.
+     */
+    public LevelAnalysis getLevelAnalysis() {
+        return levelAnalysis;
+    }
+
+    /** Limits the satisfiability tests of assignLevel for this case
+     *  definition, overriding the budget of the engine. Null to use the
+     *  budget of the engine, if any.
+     */
+    public void setSolverBudget(SolverBudget solverBudget) {
+        this.solverBudget = solverBudget;
+    }
+
+    public SolverBudget getSolverBudget() {
+        return solverBudget;
+    }
+
+    /** Selects how assignLevel decides the preconditions, SAT by default.
+     *  ClassificationSession and CompiledCaseDefinition always use the
+     *  solver.
+     */
+    public void setBackend(Backend backend) {
+        if (backend == null)
+            throw new IllegalArgumentException("No backend");
+        this.backend = backend;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    private BinaryDecisionDiagram[] diagrams() {
+        BinaryDecisionDiagram[] res = diagrams;
+        if (res == null)
+            diagrams = res = new BinaryDecisionDiagram[] {
+                level1Clause.toBinaryDecisionDiagram(),
+                level2Clause.toBinaryDecisionDiagram(),
+                level3Clause.toBinaryDecisionDiagram()
+            };
+        return res;
+    }
+
     public Classification assignLevel(Event event) {
+        return assignLevel(event, (SolverBudget) null);
+    }
+
+    /** Same as assignLevel(event) but limits the satisfiability tests by the
+     *  budget of this case definition or else by the given one (which may be
+     *  null). An exceeded budget yields an ERROR with the exceeded limit as
+     *  reason.
+     */
+    public Classification assignLevel(Event event, SolverBudget defaultBudget) {
+        if (!Metrics.isEnabled())
+            return classify(event, defaultBudget);
+        long start = System.nanoTime();
+        Classification res = classify(event, defaultBudget);
+        Metrics.record(Metrics.Stage.ASSIGN_LEVEL, System.nanoTime() - start);
+        Metrics.recordResult(this, res.getResult());
+        return res;
+    }
+
+    private Classification classify(Event event, SolverBudget defaultBudget) {
+        SolverBudget budget = solverBudget;
+        if (budget == null)
+            budget = defaultBudget == null ? SolverBudget.UNLIMITED : defaultBudget;
         try {
-            Classification.Result result;
-            Clause precondition1 = level1Clause.precondition(event);
-            Clause precondition2 = level2Clause.precondition(event);
-            Clause precondition3 = level3Clause.precondition(event);
-            if (precondition1.isTrue())
-                result = Result.LEVEL1;
-            else if (precondition2.isTrue())
-                result = Result.LEVEL2;
-            else if (precondition3.isTrue())
-                result = Result.LEVEL3;
-            else {
-                boolean allFalse = precondition1.isFalse() && precondition2.isFalse() && precondition3.isFalse();
-                if (!allFalse)
-                    result = Result.CATEGORY4;
-                else
-                    result = Result.CATEGORY5;
+            LevelAnalysis analysis = levelAnalysis;
+            Clause precondition1, precondition2, precondition3;
+            if (backend == Backend.BINARY_DECISION_DIAGRAM) {
+                BinaryDecisionDiagram[] diagrams = diagrams();
+                precondition1 = level1Clause.precondition(event, diagrams[0]);
+                precondition2 = level2Clause.precondition(event, diagrams[1]);
+                precondition3 = level3Clause.precondition(event, diagrams[2]);
+            } else if (analysis == null) {
+                precondition1 = level1Clause.precondition(event, budget);
+                precondition2 = level2Clause.precondition(event, budget);
+                precondition3 = level3Clause.precondition(event, budget);
+            } else {
+                Clause[] preconditions = analysis.preconditions(event, budget);
+                precondition1 = preconditions[0];
+                precondition2 = preconditions[1];
+                precondition3 = preconditions[2];
             }
+            Classification.Result result = result(precondition1, precondition2, precondition3);
             return Classification.create(result, precondition1, precondition2, precondition3);
         } catch (OutOfMemoryError err) {
-            return Classification.createError();
+            return Classification.createError(ErrorReason.OUT_OF_MEMORY);
+        } catch (BudgetExceededException exc) {
+            return Classification.createError(errorReason(exc.getLimit()));
         } catch (org.sat4j.specs.TimeoutException err) {
-            return Classification.createError();
+            return Classification.createError(ErrorReason.TIMEOUT);
+        }
+    }
+
+    static ErrorReason errorReason(BudgetExceededException.Limit limit) {
+        switch (limit) {
+        case CONFLICTS:
+            return ErrorReason.CONFLICT_LIMIT;
+        case CNF_SIZE:
+            return ErrorReason.CNF_SIZE_LIMIT;
+        case INTERRUPTED:
+            return ErrorReason.INTERRUPTED;
+        default:
+            return ErrorReason.TIMEOUT;
+        }
+    }
+
+    /** Same as assignLevel(event) but looks up the classification in the
+     *  cache first. Erroneous classifications are not cached.
+     */
+    public Classification assignLevel(Event event, ClassificationCache cache) {
+        return assignLevel(event, cache, null);
+    }
+
+    /** Same as assignLevel(event, cache) with the budget as in
+     *  assignLevel(event, defaultBudget).
+     */
+    public Classification assignLevel(Event event, ClassificationCache cache, SolverBudget defaultBudget) {
+        if (cache == null)
+            return assignLevel(event, defaultBudget);
+        ClassificationCache.Key key = new ClassificationCache.Key(this, projection(event));
+        Classification classification = cache.get(key);
+        if (classification == null) {
+            classification = assignLevel(event, defaultBudget);
+            if (classification.getResult() != Result.ERROR)
+                cache.put(key, classification);
+        }
+        return classification;
+    }
+
+    /** Same as assignLevel for each event, but evaluates the level clauses on
+     *  blocks of events at once (see BitParallelEvaluator). Only the events
+     *  for which some level is not decided by the evaluation are classified
+     *  by assignLevel. In the Metrics, each decided event takes an equal
+     *  share of the evaluation of its block as ASSIGN_LEVEL time.
+     */
+    public List<Classification> assignLevels(List<? extends Event> events) {
+        return assignLevels(events, null);
+    }
+
+    /** Same as assignLevels(events) with the budget as in
+     *  assignLevel(event, defaultBudget).
+     */
+    public List<Classification> assignLevels(List<? extends Event> events, SolverBudget defaultBudget) {
+        List<Classification> res = new ArrayList<Classification>(events.size());
+        for (int start = 0; start < events.size(); start += BitParallelEvaluator.LANES) {
+            List<? extends Event> block = events.subList(start, Math.min(start + BitParallelEvaluator.LANES, events.size()));
+            boolean timed = Metrics.isEnabled();
+            long time = timed ? System.nanoTime() : 0;
+            BitParallelEvaluator evaluator = new BitParallelEvaluator(block);
+            Lanes lanes1 = level1Clause.acceptVisitor(evaluator);
+            Lanes lanes2 = level2Clause.acceptVisitor(evaluator);
+            Lanes lanes3 = level3Clause.acceptVisitor(evaluator);
+            long share = timed ? (System.nanoTime() - time) / block.size() : 0;
+            long decided = lanes1.getDecided() & lanes2.getDecided() & lanes3.getDecided();
+            for (int lane = 0; lane < block.size(); lane++) {
+                if ((decided >>> lane & 1) != 0) {
+                    Clause precondition1 = lanes1.isTrue(lane) ? ConstantClause.TRUE : ConstantClause.FALSE;
+                    Clause precondition2 = lanes2.isTrue(lane) ? ConstantClause.TRUE : ConstantClause.FALSE;
+                    Clause precondition3 = lanes3.isTrue(lane) ? ConstantClause.TRUE : ConstantClause.FALSE;
+                    Result result = result(precondition1, precondition2, precondition3);
+                    if (Metrics.isEnabled()) {
+                        Metrics.record(Metrics.Stage.ASSIGN_LEVEL, share);
+                        Metrics.recordResult(this, result);
+                    }
+                    res.add(Classification.create(result, precondition1, precondition2, precondition3));
+                } else
+                    res.add(assignLevel(block.get(lane), defaultBudget));
+            }
+        }
+        return res;
+    }
+
+    /** The values of the event on the occurring criteria, two bits each.
+     */
+    long[] projection(Event event) {
+        Criterion[] criteria = sortedCriteria;
+        if (criteria == null) {
+            criteria = occurringCriteria().toArray(new Criterion[0]);
+            Arrays.sort(criteria);
+            sortedCriteria = criteria;
         }
+        long[] res = new long[(criteria.length + 31) / 32];
+        for (int i = 0; i < criteria.length; i++)
+            res[i / 32] |= (long) event.valueOfCriterion(criteria[i]).toInteger() << (2 * (i % 32));
+        return res;
+    }
+
+    static Result result(Clause precondition1, Clause precondition2, Clause precondition3) {
+        if (precondition1.isTrue())
+            return Result.LEVEL1;
+        else if (precondition2.isTrue())
+            return Result.LEVEL2;
+        else if (precondition3.isTrue())
+            return Result.LEVEL3;
+        else if (precondition1.isFalse() && precondition2.isFalse() && precondition3.isFalse())
+            return Result.CATEGORY5;
+        else
+            return Result.CATEGORY4;
+    }
+
+    /** Encodes the level clauses once for repeated classification, see
+     *  CompiledCaseDefinition.
+     */
+    public CompiledCaseDefinition compile() {
+        return new CompiledCaseDefinition(this);
     }
 
     public Collection<Criterion> occurringCriteria() {
@@ -0,0 +1,132 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.brightoncollaboration.abc.Classification.Result;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+
+/**
+ * Classifies an event against all case definitions of the data through an
+ * index from each criterion to the case definitions in which it occurs.
+ *
+ * Only the case definitions in which some criterion with a value in the
+ * event occurs are classified. All other case definitions see the same
+ * values as in the empty event, so their classification of the empty event
+ * is computed once and reused. The index is immutable and thread-safe.
+ */
+public class CaseDefinitionIndex {
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<CaseDefinition> caseDefinitions = new ArrayList<CaseDefinition>();
+    private final Map<Criterion, int[]> index = new HashMap<Criterion, int[]>(); // Indices of the case definitions by criterion
+    private final AtomicReferenceArray<Classification> emptyEventClassifications;
+
+    public CaseDefinitionIndex(AbcData data) {
+        Map<Criterion, List<Integer>> occurrences = new HashMap<Criterion, List<Integer>>();
+        for (Map.Entry<String, CaseDefinition> entry : data.getCaseDefinitions().entrySet()) {
+            int i = caseDefinitions.size();
+            names.add(entry.getKey());
+            caseDefinitions.add(entry.getValue());
+            for (Criterion criterion : entry.getValue().occurringCriteria()) {
+                List<Integer> indices = occurrences.get(criterion);
+                if (indices == null)
+                    occurrences.put(criterion, indices = new ArrayList<Integer>());
+                indices.add(i);
+            }
+        }
+        for (Map.Entry<Criterion, List<Integer>> entry : occurrences.entrySet()) {
+            int[] indices = new int[entry.getValue().size()];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = entry.getValue().get(i);
+            index.put(entry.getKey(), indices);
+        }
+        emptyEventClassifications = new AtomicReferenceArray<Classification>(caseDefinitions.size());
+    }
+
+    /** The names of the case definitions in which the criterion occurs.
+     */
+    public List<String> getCaseDefinitionNames(Criterion criterion) {
+        List<String> res = new ArrayList<String>();
+        int[] indices = index.get(criterion);
+        if (indices != null)
+            for (int i : indices)
+                res.add(names.get(i));
+        return res;
+    }
+
+    /** The classifications of the event by all case definitions, by their
+     *  names in the order of the data. The classified case definitions use
+     *  the cache (which may be null) and the budget as in
+     *  CaseDefinition.assignLevel(event, cache, defaultBudget).
+     */
+    public Map<String, Classification> classify(Event event, ClassificationCache cache, SolverBudget defaultBudget) {
+        BitSet affected = new BitSet(caseDefinitions.size());
+        Map<Criterion, Value> symptoms;
+        if (event instanceof PackedEvent) {
+            // Visit the added ordinals without copying the symptoms
+            PackedEvent packed = (PackedEvent) event;
+            Criterion.Creator creator = packed.getCreator();
+            for (int ordinal = packed.nextOrdinal(0); ordinal >= 0; ordinal = packed.nextOrdinal(ordinal + 1))
+                if (packed.valueOfOrdinal(ordinal) != Value.UNDEFINED)
+                    markAffected(affected, creator.getByOrdinal(ordinal));
+            symptoms = packed.getUnpackedSymptoms();
+        } else
+            symptoms = event.getSymptoms();
+        for (Map.Entry<Criterion, Value> symptom : symptoms.entrySet())
+            if (symptom.getValue() != Value.UNDEFINED)
+                markAffected(affected, symptom.getKey());
+        Map<String, Classification> res = new LinkedHashMap<String, Classification>();
+        for (int i = 0; i < caseDefinitions.size(); i++) {
+            Classification classification;
+            if (affected.get(i))
+                classification = caseDefinitions.get(i).assignLevel(event, cache, defaultBudget);
+            else
+                classification = emptyEventClassification(i, defaultBudget);
+            res.put(names.get(i), classification);
+        }
+        return res;
+    }
+
+    private void markAffected(BitSet affected, Criterion criterion) {
+        int[] indices = index.get(criterion);
+        if (indices != null)
+            for (int i : indices)
+                affected.set(i);
+    }
+
+    /** Erroneous classifications are not kept, as in ClassificationCache.
+     */
+    private Classification emptyEventClassification(int i, SolverBudget defaultBudget) {
+        Classification classification = emptyEventClassifications.get(i);
+        if (classification == null) {
+            classification = caseDefinitions.get(i).assignLevel(new Event(), defaultBudget);
+            if (classification.getResult() != Result.ERROR)
+                emptyEventClassifications.compareAndSet(i, null, classification);
+        }
+        return classification;
+    }
+}
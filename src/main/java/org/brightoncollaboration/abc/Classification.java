@@ -114,8 +114,24 @@ public class Classification {
         public abstract Integer toInt();
     }
 
+    /** Why a classification is an ERROR, if known.
+     */
+    @XmlEnum(String.class)
+    public enum ErrorReason {
+        /** The default timeout of the solver or the time limit of a SolverBudget */
+        TIMEOUT,
+        CONFLICT_LIMIT,
+        CNF_SIZE_LIMIT,
+        OUT_OF_MEMORY,
+        /** The classifying thread was interrupted, see SolverBudget.interrupt */
+        INTERRUPTED
+    }
+
     @XmlElement
     private final Result result;
+
+    @XmlElement
+    private final ErrorReason errorReason;
     
     private final Clause precondition1;
     
@@ -127,6 +143,12 @@ public class Classification {
     	return result;
     }
 
+    /** The reason of an ERROR or null.
+     */
+    public ErrorReason getErrorReason() {
+        return errorReason;
+    }
+
     public Clause getPrecondition1() {
         return precondition1;
     }
@@ -156,6 +178,10 @@ public class Classification {
         return new Classification(Result.ERROR, null, null, null);
     }
 
+    public static Classification createError(ErrorReason reason) {
+        return new Classification(Result.ERROR, reason, null, null, null);
+    }
+
     @Deprecated
     public static Classification createLevel1() {
         return new Classification(Result.LEVEL1, null, null, null);
@@ -207,7 +233,12 @@ public class Classification {
     }
     
     private Classification(Result result, Clause precondition1, Clause precondition2, Clause precondition3) {
+        this(result, null, precondition1, precondition2, precondition3);
+    }
+
+    private Classification(Result result, ErrorReason errorReason, Clause precondition1, Clause precondition2, Clause precondition3) {
         this.result = result;
+        this.errorReason = errorReason;
         this.precondition1 = precondition1;
         this.precondition2 = precondition2;
         this.precondition3 = precondition3;
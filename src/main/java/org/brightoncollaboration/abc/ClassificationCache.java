@@ -0,0 +1,133 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of classifications, keyed by a case definition and the
+ * values of an event on the criteria occurring in the case definition (see
+ * CaseDefinition.assignLevel(Event, ClassificationCache)). Events which only
+ * differ in unrelated criteria thus share an entry.
+ *
+ * The least recently used entry is evicted when the cache is full. All
+ * methods are synchronized.
+ */
+public class ClassificationCache {
+
+    /** The projection of an event on the criteria of a case definition.
+     */
+    static final class Key {
+
+        private final CaseDefinition caseDefinition;
+        private final long[] values;
+        private final int hash;
+
+        Key(CaseDefinition caseDefinition, long[] values) {
+            this.caseDefinition = caseDefinition;
+            this.values = values;
+            this.hash = 31 * System.identityHashCode(caseDefinition) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return caseDefinition == other.caseDefinition && Arrays.equals(values, other.values);
+        }
+    }
+
+    private final int maximumSize;
+    private final Map<Key, Classification> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ClassificationCache(int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException(String.format("Invalid cache size %d", maximumSize));
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<Key, Classification>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Classification> eldest) {
+                if (size() > ClassificationCache.this.maximumSize) {
+                    evictions++;
+                    return true;
+                } else
+                    return false;
+            }
+        };
+    }
+
+    synchronized Classification get(Key key) {
+        Classification classification = entries.get(key);
+        if (classification == null)
+            misses++;
+        else
+            hits++;
+        return classification;
+    }
+
+    synchronized void put(Key key, Classification classification) {
+        entries.put(key, classification);
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ClassificationCache [size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                entries.size(), maximumSize, hits, misses, evictions);
+    }
+}
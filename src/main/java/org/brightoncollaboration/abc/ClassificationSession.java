@@ -0,0 +1,240 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.brightoncollaboration.abc.Classification.ErrorReason;
+import org.brightoncollaboration.abc.Classification.Result;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.BudgetExceededException;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.brightoncollaboration.abc.clause.visitor.FillAndSimplify;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Classifies an event which gains symptoms one at a time, e.g. in a triage
+ * dialog.
+ *
+ * The session keeps the level clauses filled with the event and simplified
+ * (see FillAndSimplify) together with their preconditions. A new symptom is
+ * filled into these clauses as a delta, which only visits the subclauses
+ * mentioning its criterion, and only the levels whose clause changed are
+ * passed to the solver again. The preconditions are equivalent to those of
+ * CaseDefinition.assignLevel, but not necessarily the same clauses.
+ *
+ * An unknown literal ?X was filled with TRUE while X was not set, so a level
+ * clause containing ?X is refilled from scratch when X is set. Likewise,
+ * changing the value of a criterion which is already set refills all level
+ * clauses. A session is not thread-safe.
+ */
+public class ClassificationSession {
+
+    private final CaseDefinition caseDefinition;
+    private final SolverBudget budget;
+    private final Event event;
+    private final Clause[] residuals = new Clause[3];
+    private final Clause[] preconditions = new Clause[3]; // null if not known for the residual
+    private final List<Set<Criterion>> unknowns = new ArrayList<Set<Criterion>>(); // Criteria of unknown literals by level
+    private final Map<Clause, Set<Criterion>> mentioned = new IdentityHashMap<Clause, Set<Criterion>>();
+    private Classification classification;
+
+    /** Starts a session for a copy of the event. The satisfiability tests
+     *  are limited by the budget of the case definition or else by the given
+     *  one (which may be null), as in CaseDefinition.assignLevel.
+     */
+    public ClassificationSession(CaseDefinition caseDefinition, Event event, SolverBudget defaultBudget) {
+        this.caseDefinition = caseDefinition;
+        SolverBudget budget = caseDefinition.getSolverBudget();
+        if (budget == null)
+            budget = defaultBudget == null ? SolverBudget.UNLIMITED : defaultBudget;
+        this.budget = budget;
+        this.event = event.copy();
+        for (Clause level : levels()) {
+            Set<Criterion> criteria = new HashSet<Criterion>();
+            collectUnknowns(level, criteria);
+            unknowns.add(criteria);
+        }
+        refill();
+    }
+
+    public ClassificationSession(CaseDefinition caseDefinition, Event event) {
+        this(caseDefinition, event, null);
+    }
+
+    public CaseDefinition getCaseDefinition() {
+        return caseDefinition;
+    }
+
+    /** A copy of the current event.
+     */
+    public Event getEvent() {
+        return event.copy();
+    }
+
+    /** The classification of the current event.
+     */
+    public Classification getClassification() {
+        return classification;
+    }
+
+    /** Adds the symptom to the event and returns the updated classification.
+     */
+    public Classification addSymptom(Criterion criterion, Value value) {
+        Value previous = event.valueOfCriterion(criterion);
+        event.addSymptom(criterion, value);
+        if (previous == value)
+            return classification;
+        if (previous != Value.UNDEFINED) {
+            refill();
+            return classification;
+        }
+        Delta visitor = new Delta(new Event().addSymptom(criterion, value), criterion);
+        Clause[] levels = levels();
+        for (int level = 0; level < 3; level++) {
+            Clause residual = unknowns.get(level).contains(criterion)
+                ? levels[level].acceptVisitor(new FillAndSimplify(event))
+                : residuals[level].acceptVisitor(visitor);
+            if (residual != residuals[level]) {
+                residuals[level] = residual;
+                preconditions[level] = null;
+            }
+        }
+        classification = classify();
+        return classification;
+    }
+
+    private void refill() {
+        mentioned.clear();
+        Clause[] levels = levels();
+        for (int level = 0; level < 3; level++) {
+            residuals[level] = levels[level].acceptVisitor(new FillAndSimplify(event));
+            preconditions[level] = null;
+        }
+        classification = classify();
+    }
+
+    private Clause[] levels() {
+        return new Clause[] { caseDefinition.getLevel1Clause(), caseDefinition.getLevel2Clause(), caseDefinition.getLevel3Clause() };
+    }
+
+    private static void collectUnknowns(Clause clause, Set<Criterion> criteria) {
+        if (clause instanceof CriterionClause) {
+            if (((CriterionClause) clause).getValue() == Value.UNDEFINED)
+                criteria.add(((CriterionClause) clause).getCriterion());
+        } else if (clause instanceof NotClause)
+            collectUnknowns(((NotClause) clause).getClause(), criteria);
+        else if (clause instanceof AndClause)
+            for (Clause sub : ((AndClause) clause).getClauses())
+                collectUnknowns(sub, criteria);
+        else if (clause instanceof NListClause)
+            for (Clause sub : ((NListClause) clause).getClauses())
+                collectUnknowns(sub, criteria);
+    }
+
+    /** Minimizes the residuals without known precondition, see
+     *  Clause.precondition.
+     */
+    private Classification classify() {
+        try {
+            for (int level = 0; level < 3; level++)
+                if (preconditions[level] == null)
+                    preconditions[level] = residuals[level].minimize(budget);
+        } catch (OutOfMemoryError err) {
+            return Classification.createError(ErrorReason.OUT_OF_MEMORY);
+        } catch (BudgetExceededException exc) {
+            return Classification.createError(CaseDefinition.errorReason(exc.getLimit()));
+        } catch (TimeoutException exc) {
+            return Classification.createError(ErrorReason.TIMEOUT);
+        }
+        Result result = CaseDefinition.result(preconditions[0], preconditions[1], preconditions[2]);
+        if (Metrics.isEnabled())
+            Metrics.recordResult(caseDefinition, result);
+        return Classification.create(result, preconditions[0], preconditions[1], preconditions[2]);
+    }
+
+    /** The criteria mentioned in the clause, computed once per clause.
+     */
+    private Set<Criterion> mentioned(Clause clause) {
+        Set<Criterion> res = mentioned.get(clause);
+        if (res == null) {
+            res = new HashSet<Criterion>();
+            if (clause instanceof CriterionClause)
+                res.add(((CriterionClause) clause).getCriterion());
+            else if (clause instanceof NotClause)
+                res.addAll(mentioned(((NotClause) clause).getClause()));
+            else if (clause instanceof AndClause)
+                for (Clause sub : ((AndClause) clause).getClauses())
+                    res.addAll(mentioned(sub));
+            else if (clause instanceof NListClause)
+                for (Clause sub : ((NListClause) clause).getClauses())
+                    res.addAll(mentioned(sub));
+            mentioned.put(clause, res);
+        }
+        return res;
+    }
+
+    /** Fills the value of a single criterion, skipping the subclauses which
+     *  do not mention it.
+     */
+    private class Delta extends FillAndSimplify {
+
+        private final Criterion criterion;
+
+        Delta(Event delta, Criterion criterion) {
+            super(delta);
+            this.criterion = criterion;
+        }
+
+        @Override
+        public Clause visitConstant(ConstantClause c) {
+            return c;
+        }
+
+        @Override
+        public Clause visitCriterion(CriterionClause c) {
+            return c.getCriterion().equals(criterion) ? super.visitCriterion(c) : c;
+        }
+
+        @Override
+        public Clause visitNot(NotClause c) {
+            return mentioned(c).contains(criterion) ? super.visitNot(c) : c;
+        }
+
+        @Override
+        public Clause visitAnd(AndClause c) {
+            return mentioned(c).contains(criterion) ? super.visitAnd(c) : c;
+        }
+
+        @Override
+        public Clause visitNList(NListClause c) {
+            return mentioned(c).contains(criterion) ? super.visitNList(c) : c;
+        }
+    }
+}
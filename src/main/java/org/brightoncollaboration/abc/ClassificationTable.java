@@ -0,0 +1,424 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.brightoncollaboration.abc.Classification.Result;
+import org.brightoncollaboration.abc.clause.BinaryDecisionDiagram;
+import org.brightoncollaboration.abc.clause.BitParallelEvaluator;
+import org.brightoncollaboration.abc.clause.BitParallelEvaluator.Lanes;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.visitor.UnparseClause;
+
+/**
+ * The results of a case definition for every assignment of its occurring
+ * criteria, so that classification is a table lookup. The assignments are
+ * indexed as in Extensions, over the occurring criteria sorted by short name,
+ * and the results are stored in four bits each.
+ *
+ * Optionally, the table also holds the classifications including their
+ * preconditions. The distinct classifications are stored once and indexed in
+ * two bytes per assignment.
+ *
+ * Compilation evaluates blocks of assignments bit-parallel and decides the
+ * remaining levels on binary decision diagrams of the level clauses, so no
+ * SAT solver is involved. A table can be saved and loaded again as long as
+ * the level clauses are unchanged.
+ */
+public class ClassificationTable {
+
+    public static final int MAX_CRITERIA = 20;
+
+    private static final int MAGIC = 0x41424354;
+    private static final int VERSION = 1;
+
+    private final CaseDefinition caseDefinition;
+    private final Criterion[] criteria;
+    private final BinaryDecisionDiagram[] diagrams;
+    private final byte[] results;
+    private final char[] indices;                  // null without preconditions
+    private final Classification[] classifications;
+    private final long[] representatives;          // An assignment for each classification
+
+    private ClassificationTable(CaseDefinition caseDefinition, Criterion[] criteria, BinaryDecisionDiagram[] diagrams,
+            byte[] results, char[] indices, Classification[] classifications, long[] representatives) {
+        this.caseDefinition = caseDefinition;
+        this.criteria = criteria;
+        this.diagrams = diagrams;
+        this.results = results;
+        this.indices = indices;
+        this.classifications = classifications;
+        this.representatives = representatives;
+    }
+
+    public CaseDefinition getCaseDefinition() {
+        return caseDefinition;
+    }
+
+    /** The number of assignments.
+     */
+    public long size() {
+        long res = 1;
+        for (int i = 0; i < criteria.length; i++)
+            res *= 3;
+        return res;
+    }
+
+    public boolean hasPreconditions() {
+        return indices != null;
+    }
+
+    private long index(Event event) {
+        long index = 0;
+        for (Criterion criterion : criteria)
+            index = 3 * index + Extensions.digit(event.valueOfCriterion(criterion));
+        return index;
+    }
+
+    private Result result(long index) {
+        return Result.ofInt(results[(int) (index / 2)] >>> (4 * (int) (index % 2)) & 0xF);
+    }
+
+    public Result getResult(Event event) {
+        return result(index(event));
+    }
+
+    /** Same as CaseDefinition.assignLevel. Without preconditions in the
+     *  table, they are computed on the diagrams.
+     */
+    public Classification assignLevel(Event event) {
+        long index = index(event);
+        if (indices != null)
+            return classifications[indices[(int) index]];
+        return classification(event);
+    }
+
+    private Classification classification(Event event) {
+        Clause precondition1 = caseDefinition.getLevel1Clause().precondition(event, diagrams[0]);
+        Clause precondition2 = caseDefinition.getLevel2Clause().precondition(event, diagrams[1]);
+        Clause precondition3 = caseDefinition.getLevel3Clause().precondition(event, diagrams[2]);
+        return Classification.create(CaseDefinition.result(precondition1, precondition2, precondition3),
+                precondition1, precondition2, precondition3);
+    }
+
+    private static Criterion[] criteria(CaseDefinition caseDefinition) {
+        Criterion[] criteria = caseDefinition.occurringCriteria().toArray(new Criterion[0]);
+        if (criteria.length > MAX_CRITERIA)
+            throw new IllegalArgumentException(String.format("%s has %d criteria, at most %d are supported",
+                    caseDefinition, criteria.length, MAX_CRITERIA));
+        Arrays.sort(criteria);
+        return criteria;
+    }
+
+    private static BinaryDecisionDiagram[] diagrams(CaseDefinition caseDefinition) {
+        return new BinaryDecisionDiagram[] {
+            caseDefinition.getLevel1Clause().toBinaryDecisionDiagram(),
+            caseDefinition.getLevel2Clause().toBinaryDecisionDiagram(),
+            caseDefinition.getLevel3Clause().toBinaryDecisionDiagram()
+        };
+    }
+
+    /** Numbers the distinct classifications. Each worker numbers the
+     *  classifications of its range and the numbers are merged afterwards,
+     *  so the workers share no lock.
+     */
+    private static class Interner {
+
+        private final Map<List<Object>, Character> numbers = new HashMap<List<Object>, Character>();
+        private final List<Classification> classifications = new ArrayList<Classification>();
+        private final List<Long> representatives = new ArrayList<Long>();
+
+        char number(Result result, Clause[] preconditions, long index) {
+            return number(result, preconditions[0], preconditions[1], preconditions[2], index);
+        }
+
+        private char number(Result result, Clause precondition1, Clause precondition2, Clause precondition3, long index) {
+            List<Object> key = Arrays.<Object>asList(result, precondition1, precondition2, precondition3);
+            Character number = numbers.get(key);
+            if (number == null) {
+                if (classifications.size() > Character.MAX_VALUE)
+                    throw new IllegalStateException("Too many distinct classifications for a table with preconditions");
+                number = (char) classifications.size();
+                numbers.put(key, number);
+                classifications.add(Classification.create(result, precondition1, precondition2, precondition3));
+                representatives.add(index);
+            }
+            return number;
+        }
+
+        /** Numbers the classifications of this interner in the other one.
+         *  Returns the new number by the old one, or null if they are equal.
+         */
+        char[] mergeInto(Interner other) {
+            char[] res = new char[classifications.size()];
+            boolean renumbered = false;
+            for (int i = 0; i < res.length; i++) {
+                Classification classification = classifications.get(i);
+                res[i] = other.number(classification.getResult(), classification.getPrecondition1(),
+                        classification.getPrecondition2(), classification.getPrecondition3(), representatives.get(i));
+                renumbered |= res[i] != i;
+            }
+            return renumbered ? res : null;
+        }
+    }
+
+    /** Compiles the table on the given number of threads.
+     */
+    public static ClassificationTable compile(final CaseDefinition caseDefinition, int parallelism, final boolean withPreconditions) throws InterruptedException {
+        final Criterion[] criteria = criteria(caseDefinition);
+        final BinaryDecisionDiagram[] diagrams = diagrams(caseDefinition);
+        final Clause[] levelClauses = { caseDefinition.getLevel1Clause(), caseDefinition.getLevel2Clause(), caseDefinition.getLevel3Clause() };
+        final Extensions extensions = new Extensions(new Event(), Arrays.asList(criteria));
+        long size = extensions.size();
+        if (withPreconditions && size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(String.format("Too many criteria for a table with preconditions: %d", criteria.length));
+        final byte[] results = new byte[(int) ((size + 1) / 2)];
+        final char[] indices = withPreconditions ? new char[(int) size] : null;
+        Interner interner = new Interner();
+
+        // Ranges are aligned to the blocks of the evaluator, which also keeps
+        // threads from sharing a byte of the results
+        long step = (size / (4L * parallelism) / BitParallelEvaluator.LANES + 1) * BitParallelEvaluator.LANES;
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("abc-table-"));
+        List<Future<Interner>> parts = new ArrayList<Future<Interner>>();
+        List<Future<?>> renumberings = new ArrayList<Future<?>>();
+        try {
+            for (long from = 0; from < size; from += step) {
+                final long start = from;
+                final long end = Math.min(from + step, size);
+                parts.add(pool.submit(new Callable<Interner>() {
+                    public Interner call() {
+                        Interner interner = withPreconditions ? new Interner() : null;
+                        Iterator<Event> iterator = extensions.range(start, end).iterator();
+                        List<Event> block = new ArrayList<Event>(BitParallelEvaluator.LANES);
+                        Lanes[] lanes = new Lanes[3];
+                        Clause[] preconditions = new Clause[3];
+                        long index = start;
+                        while (iterator.hasNext()) {
+                            block.clear();
+                            while (block.size() < BitParallelEvaluator.LANES && iterator.hasNext())
+                                block.add(iterator.next());
+                            BitParallelEvaluator evaluator = new BitParallelEvaluator(block);
+                            for (int level = 0; level < 3; level++)
+                                lanes[level] = levelClauses[level].acceptVisitor(evaluator);
+                            for (int lane = 0; lane < block.size(); lane++, index++) {
+                                Event event = block.get(lane);
+                                for (int level = 0; level < 3; level++) {
+                                    if (lanes[level].isTrue(lane))
+                                        preconditions[level] = ConstantClause.TRUE;
+                                    else if (lanes[level].isFalse(lane))
+                                        preconditions[level] = ConstantClause.FALSE;
+                                    else if (withPreconditions)
+                                        preconditions[level] = levelClauses[level].precondition(event, diagrams[level]);
+                                    else if (diagrams[level].isTautology(event))
+                                        preconditions[level] = ConstantClause.TRUE;
+                                    else if (!diagrams[level].isSatisfiable(event))
+                                        preconditions[level] = ConstantClause.FALSE;
+                                    else
+                                        preconditions[level] = levelClauses[level]; // Neither TRUE nor FALSE
+                                }
+                                Result result = CaseDefinition.result(preconditions[0], preconditions[1], preconditions[2]);
+                                results[(int) (index / 2)] |= result.toInt() << (4 * (int) (index % 2));
+                                if (withPreconditions)
+                                    indices[(int) index] = interner.number(result, preconditions, index);
+                            }
+                        }
+                        return interner;
+                    }
+                }));
+            }
+            for (int i = 0; i < parts.size(); i++) {
+                Interner part = parts.get(i).get();
+                if (!withPreconditions)
+                    continue;
+                final char[] numbers = part.mergeInto(interner);
+                if (numbers == null)
+                    continue;
+                final int start = (int) (i * step);
+                final int end = (int) Math.min(start + step, size);
+                renumberings.add(pool.submit(new Runnable() {
+                    public void run() {
+                        for (int index = start; index < end; index++)
+                            indices[index] = numbers[indices[index]];
+                    }
+                }));
+            }
+            for (Future<?> renumbering : renumberings)
+                renumbering.get();
+        } catch (ExecutionException exc) {
+            throw new IllegalStateException("Compiling the classification table failed", exc.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        AbcEngine.log.info(String.format("Compiled classification table for %s: %d assignments", caseDefinition, size));
+        return new ClassificationTable(caseDefinition, criteria, diagrams, results, indices,
+                withPreconditions ? interner.classifications.toArray(new Classification[0]) : null,
+                withPreconditions ? toArray(interner.representatives) : null);
+    }
+
+    private static long[] toArray(List<Long> list) {
+        long[] res = new long[list.size()];
+        for (int i = 0; i < res.length; i++)
+            res[i] = list.get(i);
+        return res;
+    }
+
+    /** Identifies the level clauses of the case definition.
+     */
+    private static String fingerprint(CaseDefinition caseDefinition) {
+        UnparseClause unparse = new UnparseClause();
+        return caseDefinition.getLevel1Clause().acceptVisitor(unparse) + "\n"
+            + caseDefinition.getLevel2Clause().acceptVisitor(unparse) + "\n"
+            + caseDefinition.getLevel3Clause().acceptVisitor(unparse);
+    }
+
+    public void save(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        byte[] fingerprint = fingerprint(caseDefinition).getBytes("UTF-8");
+        data.writeInt(fingerprint.length);
+        data.write(fingerprint);
+        data.writeInt(criteria.length);
+        for (Criterion criterion : criteria)
+            data.writeUTF(criterion.getShortName());
+        data.writeInt(results.length);
+        data.write(results);
+        data.writeBoolean(indices != null);
+        if (indices != null) {
+            data.writeInt(representatives.length);
+            for (long representative : representatives)
+                data.writeLong(representative);
+            data.writeInt(indices.length);
+            for (char index : indices)
+                data.writeChar(index);
+        }
+        data.flush();
+    }
+
+    /** Loads a table of the case definition. The preconditions are recomputed
+     *  from one assignment per classification.
+     *
+     *  @throws IOException if the table is not readable or belongs to
+     *  different level clauses.
+     */
+    public static ClassificationTable load(InputStream in, CaseDefinition caseDefinition) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a classification table");
+        int version = data.readInt();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported classification table version %d", version));
+        byte[] fingerprint = new byte[data.readInt()];
+        data.readFully(fingerprint);
+        if (!new String(fingerprint, "UTF-8").equals(fingerprint(caseDefinition)))
+            throw new IOException(String.format("Classification table does not belong to %s", caseDefinition));
+        Criterion[] criteria = criteria(caseDefinition);
+        if (data.readInt() != criteria.length)
+            throw new IOException("Classification table has different criteria");
+        for (Criterion criterion : criteria)
+            if (!data.readUTF().equals(criterion.getShortName()))
+                throw new IOException("Classification table has different criteria");
+        long size = new Extensions(new Event(), Arrays.asList(criteria)).size();
+        int resultsLength = data.readInt();
+        if (resultsLength != (size + 1) / 2)
+            throw new IOException(String.format("Classification table has %d bytes of results instead of %d", resultsLength, (size + 1) / 2));
+        byte[] results = new byte[resultsLength];
+        data.readFully(results);
+        BinaryDecisionDiagram[] diagrams = diagrams(caseDefinition);
+        if (!data.readBoolean())
+            return new ClassificationTable(caseDefinition, criteria, diagrams, results, null, null, null);
+        int representativesLength = data.readInt();
+        if (representativesLength < 0 || representativesLength > Character.MAX_VALUE + 1)
+            throw new IOException(String.format("Invalid number of classifications %d", representativesLength));
+        long[] representatives = new long[representativesLength];
+        for (int i = 0; i < representatives.length; i++) {
+            representatives[i] = data.readLong();
+            if (representatives[i] < 0 || representatives[i] >= size)
+                throw new IOException(String.format("Invalid assignment %d", representatives[i]));
+        }
+        int indicesLength = data.readInt();
+        if (indicesLength != size)
+            throw new IOException(String.format("Classification table has %d indices instead of %d", indicesLength, size));
+        char[] indices = new char[indicesLength];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = data.readChar();
+            if (indices[i] >= representatives.length)
+                throw new IOException(String.format("Invalid classification index %d", (int) indices[i]));
+        }
+        ClassificationTable table = new ClassificationTable(caseDefinition, criteria, diagrams, results, indices,
+                new Classification[representatives.length], representatives);
+        Extensions extensions = new Extensions(new Event(), Arrays.asList(criteria));
+        for (int i = 0; i < representatives.length; i++)
+            table.classifications[i] = table.classification(extensions.get(representatives[i]));
+        return table;
+    }
+
+    /** Loads the table from the file if it belongs to the case definition and
+     *  compiles and saves it otherwise.
+     */
+    public static ClassificationTable loadOrCompile(File file, CaseDefinition caseDefinition, int parallelism, boolean withPreconditions) throws IOException, InterruptedException {
+        if (file.exists()) {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                ClassificationTable table = load(in, caseDefinition);
+                if (table.hasPreconditions() || !withPreconditions)
+                    return table;
+            } catch (IOException exc) {
+                AbcEngine.log.warn(String.format("Recompiling classification table %s: %s", file, exc.getMessage()));
+            } finally {
+                in.close();
+            }
+        }
+        ClassificationTable table = compile(caseDefinition, parallelism, withPreconditions);
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            table.save(out);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file)))
+            throw new IOException(String.format("Cannot write classification table %s", file));
+        return table;
+    }
+}
@@ -95,6 +95,19 @@ public class CommentedValue {
             return new org.brightoncollaboration.abc.Event(res);
         }
 
+        /** Same as toEvent() but packs the values of the criteria of the
+         *  creator (see PackedEvent). The event only answers for the criteria
+         *  of that creator, not for equally named criteria of other
+         *  creators, so it should be classified by case definitions parsed
+         *  with the same creator.
+         */
+        public org.brightoncollaboration.abc.Event toEvent(Criterion.Creator creator) {
+            PackedEvent res = new PackedEvent(creator);
+            for (Map.Entry<Criterion, CommentedValue> symptom : symptoms.entrySet())
+                res.addSymptom(symptom.getKey(), symptom.getValue().value);
+            return res;
+        }
+
         public static Event fromEvent(String uid, org.brightoncollaboration.abc.Event event) {
             Map<Criterion, CommentedValue> symptoms = new HashMap<Criterion, CommentedValue>();
             for (Criterion criterion : event.getSymptoms().keySet())
@@ -0,0 +1,176 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.brightoncollaboration.abc.Classification.ErrorReason;
+import org.brightoncollaboration.abc.clause.BudgetExceededException;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.brightoncollaboration.abc.clause.visitor.CNFClause;
+import org.brightoncollaboration.abc.clause.visitor.CNFConjunction;
+import org.brightoncollaboration.abc.clause.visitor.CNFLiteral;
+import org.brightoncollaboration.abc.clause.visitor.FillAndSimplify;
+import org.brightoncollaboration.abc.clause.visitor.TseitinNormalForm;
+import org.brightoncollaboration.abc.clause.visitor.VariableIndex;
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * A case definition whose level clauses are encoded once into a single SAT
+ * solver. Each level clause is defined by a selector literal (see
+ * TseitinNormalForm), so the precondition of a level is TRUE if the values of
+ * the event together with the negated selector are unsatisfiable and FALSE if
+ * the values together with the selector are unsatisfiable. The values of an
+ * event are passed as assumptions and nothing is encoded per event.
+ *
+ * The solver is not thread-safe, so assignLevel is synchronized. Use one
+ * compiled case definition per thread for parallel classification.
+ *
+ * Each satisfiability test is limited by a SolverBudget as in
+ * CaseDefinition.assignLevel. The size limit applies to the CNF encoded at
+ * construction.
+ */
+public class CompiledCaseDefinition {
+
+    private final CaseDefinition caseDefinition;
+    private final List<Clause> levelClauses = new ArrayList<Clause>(3);
+    private final int[] selectors = new int[3];
+
+    private final ISolver solver;
+    private final int defaultTimeout;  // In seconds, restored for tests without time limit
+    private final int clauses;
+    private final VariableIndex indices;
+    private final List<Criterion> unknownCriteria = new ArrayList<Criterion>();
+    private final List<Integer> unknownIndices = new ArrayList<Integer>();
+
+    CompiledCaseDefinition(CaseDefinition caseDefinition) {
+        this.caseDefinition = caseDefinition;
+        levelClauses.add(caseDefinition.getLevel1Clause());
+        levelClauses.add(caseDefinition.getLevel2Clause());
+        levelClauses.add(caseDefinition.getLevel3Clause());
+
+        indices = new VariableIndex(caseDefinition.occurringCriteria());
+
+        TseitinNormalForm tseitin = new TseitinNormalForm();
+        for (int level = 0; level < 3; level++)
+            selectors[level] = levelClauses.get(level).acceptVisitor(tseitin).toInt(indices);
+        for (Criterion criterion : indices.getCriteria()) {
+            CNFLiteral unknown = tseitin.getUnknown(criterion);
+            if (unknown != null) {
+                unknownCriteria.add(criterion);
+                unknownIndices.add(unknown.toInt(indices));
+            }
+        }
+
+        CNFConjunction cnf = tseitin.getConjunction();
+        solver = SolverFactory.instance().defaultSolver();
+        defaultTimeout = solver.getTimeout();
+        clauses = cnf.getClauses().size();
+        solver.newVar(indices.size() + cnf.getAuxiliaries());
+        solver.setExpectedNumberOfClauses(cnf.getClauses().size());
+        try {
+            for (CNFClause clause : cnf.getClauses())
+                solver.addClause(new VecInt(clause.toInts(indices)));
+        } catch (ContradictionException exc) {
+            // The definitions of the selectors are always satisfiable
+            throw new RuntimeException(exc);
+        }
+    }
+
+    public CaseDefinition getCaseDefinition() {
+        return caseDefinition;
+    }
+
+    /** Same as CaseDefinition.assignLevel but without encoding the level
+     *  clauses again.
+     */
+    public Classification assignLevel(Event event) {
+        return assignLevel(event, null);
+    }
+
+    /** Same as CaseDefinition.assignLevel(event, defaultBudget) but without
+     *  encoding the level clauses again.
+     */
+    public synchronized Classification assignLevel(Event event, SolverBudget defaultBudget) {
+        SolverBudget budget = caseDefinition.getSolverBudget();
+        if (budget == null)
+            budget = defaultBudget == null ? SolverBudget.UNLIMITED : defaultBudget;
+        try {
+            budget.checkSize(clauses);
+            VecInt assumptions = assumptions(event);
+            Clause precondition1 = precondition(0, event, assumptions, budget);
+            Clause precondition2 = precondition(1, event, assumptions, budget);
+            Clause precondition3 = precondition(2, event, assumptions, budget);
+            return Classification.create(CaseDefinition.result(precondition1, precondition2, precondition3),
+                    precondition1, precondition2, precondition3);
+        } catch (OutOfMemoryError err) {
+            return Classification.createError(ErrorReason.OUT_OF_MEMORY);
+        } catch (BudgetExceededException exc) {
+            return Classification.createError(CaseDefinition.errorReason(exc.getLimit()));
+        } catch (TimeoutException err) {
+            return Classification.createError(ErrorReason.TIMEOUT);
+        }
+    }
+
+    private VecInt assumptions(Event event) {
+        VecInt assumptions = new VecInt(indices.size() + unknownIndices.size() + 1);
+        List<Criterion> criteria = indices.getCriteria();
+        for (int i = 0; i < criteria.size(); i++) {
+            Value value = event.valueOfCriterion(criteria.get(i));
+            if (value != Value.UNDEFINED)
+                assumptions.push(value.toBoolean() ? i + 1 : -(i + 1));
+        }
+        for (int i = 0; i < unknownCriteria.size(); i++) {
+            Value value = event.valueOfCriterion(unknownCriteria.get(i));
+            int index = unknownIndices.get(i);
+            assumptions.push(value == Value.UNDEFINED ? index : -index);
+        }
+        return assumptions;
+    }
+
+    /** Corresponds to Clause.precondition, but the filled and simplified
+     *  clause is only computed if it is neither TRUE nor FALSE.
+     */
+    private Clause precondition(int level, Event event, VecInt assumptions, SolverBudget budget) throws TimeoutException {
+        if (!isSatisfiable(assumptions, -selectors[level], budget))
+            return ConstantClause.TRUE;
+        if (!isSatisfiable(assumptions, selectors[level], budget))
+            return ConstantClause.FALSE;
+        return levelClauses.get(level).acceptVisitor(new FillAndSimplify(event));
+    }
+
+    private boolean isSatisfiable(VecInt assumptions, int selector, SolverBudget budget) throws TimeoutException {
+        assumptions.push(selector);
+        try {
+            // Limits of an earlier budget stay set on the solver otherwise
+            solver.setTimeout(defaultTimeout);
+            return budget.isSatisfiable(solver, assumptions);
+        } finally {
+            assumptions.pop();
+        }
+    }
+}
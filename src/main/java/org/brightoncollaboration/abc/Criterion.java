@@ -25,10 +25,15 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -36,6 +41,7 @@ import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlElementWrapper;
 import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
@@ -134,12 +140,22 @@ public class Criterion implements Comparable<Criterion> {
         protected Map<String, Criterion> criteriaByShortname = new HashMap<String, Criterion>();
         protected Map<Criterion.Tag, Collection<Criterion>> criteriaByTag = new HashMap<Criterion.Tag, Collection<Criterion>>();
 
+        // Indexed by ordinal, grown by doubling and replaced on growth
+        private volatile Criterion[] criteriaByOrdinal = new Criterion[0];
+        private volatile int ordinalBound = 0;
+
+        // Ordinals of the criteria owned by another creator
+        private final Map<Criterion, Integer> borrowedOrdinals = new IdentityHashMap<Criterion, Integer>();
+
         /**
          * 
          * @param criteria
          * @throws AbcConfigurationException Indicates errors initializing the CriterionCreator. This might be caused by multiple criteria
          * having the same shortName or criteria without ID.
          */
+        protected Creator() {
+        }
+
         public Creator(Collection<Criterion> criteria) throws AbcConfigurationException {
             for (Criterion criterion : criteria) {
                 if (criterion.getShortName().isEmpty())
@@ -147,6 +163,7 @@ public class Criterion implements Comparable<Criterion> {
                 if (criteriaByShortname.containsKey(criterion.getShortName()))
                     throw new AbcConfigurationException( String.format("Criterion short name %s not unique.", criterion.getShortName()) );
                 criteriaByShortname.put(criterion.getShortName(), criterion);
+                register(criterion);
                 Collection<Criterion.Tag> tags;
                 if (criterion.getTags().isEmpty())
                     tags = Arrays.asList(Tag.NULL_TAG);
@@ -162,31 +179,60 @@ public class Criterion implements Comparable<Criterion> {
         
         /** Create a CriterionCreator which Creates criteria on demand.
           * They are only given by shortname which will serve as a originalName and a usecaseWording, too.
+          * It is shared by all threads, see ConcurrentCreator.
           */
-        static final Creator FROM_SCRATCH;
-        static {
-            try {
-                FROM_SCRATCH = new Creator(new LinkedList<Criterion>()) {
-                    @Override
-                    public Criterion getByShortName(String shortname) {
-                        if(criteriaByShortname.containsKey(shortname))
-                            return criteriaByShortname.get(shortname);
-                        else {
-                            Criterion crit = new Criterion(shortname, shortname);
-                            criteriaByShortname.put(shortname, crit);
-                            return crit;
-                        }
-                    }
-                };
-            } catch (AbcConfigurationException exc) {
-                exc.printStackTrace();
-                throw new RuntimeException(exc);
-            }
-        }
-        
+        static final Creator FROM_SCRATCH = new ConcurrentCreator();
+
         public static Creator fromScratch() {
             return FROM_SCRATCH;
         }
+
+        /** Assigns the next ordinal of this creator to the criterion and
+         *  enters it into the ordinal table. The criterion keeps the ordinal
+         *  if this creator is its first, otherwise the ordinal is kept here.
+         */
+        protected void register(Criterion criterion) {
+            int ordinal = ordinalBound;
+            Criterion[] table = criteriaByOrdinal;
+            if (ordinal >= table.length)
+                table = Arrays.copyOf(table, Math.max(ordinal + 1, 2 * table.length));
+            table[ordinal] = criterion;
+            if (!criterion.claim(this, ordinal))
+                borrowedOrdinals.put(criterion, ordinal);
+            ordinalBound = ordinal + 1;
+            criteriaByOrdinal = table;
+        }
+
+        /** All ordinals of criteria of this creator are smaller than the bound.
+         */
+        public int getOrdinalBound() {
+            return ordinalBound;
+        }
+
+        /** The criterion with the given ordinal or null if there is none in this
+         *  creator.
+         */
+        public Criterion getByOrdinal(int ordinal) {
+            Criterion[] table = criteriaByOrdinal;
+            return ordinal >= 0 && ordinal < table.length ? table[ordinal] : null;
+        }
+
+        /** Tests whether the criterion is registered in this creator.
+         */
+        public boolean hasOrdinal(Criterion criterion) {
+            return ordinalOf(criterion) >= 0;
+        }
+
+        /** The ordinal of the criterion in this creator, or -1 if this
+         *  creator did not register that very criterion.
+         */
+        public int ordinalOf(Criterion criterion) {
+            int ordinal = criterion.ordinalIn(this);
+            if (ordinal >= 0 || borrowedOrdinals.isEmpty())
+                return ordinal;
+            Integer borrowed = borrowedOrdinals.get(criterion);
+            return borrowed == null ? -1 : borrowed;
+        }
         
         public Collection<Criterion> getCriteria() {
             return criteriaByShortname.values();
@@ -228,6 +274,118 @@ public class Criterion implements Comparable<Criterion> {
         }
     }
 
+    /**
+     * A creator which creates criteria on demand like Creator.fromScratch()
+     * and can be shared by threads without locks.
+     *
+     * The criteria are interned in a ConcurrentHashMap by putIfAbsent, so a
+     * short name yields the same criterion in all threads. Only the thread
+     * whose criterion was put assigns the next ordinal, so the ordinals are
+     * dense. The ordinal table consists of chunks which are created once and
+     * never copied, so lookups by short name and by ordinal read without
+     * locks. A thread which meets a criterion before its creator has
+     * registered it waits for the registration, which follows immediately.
+     * If the registration fails, the criterion is removed again and the
+     * waiting threads try to create it themselves.
+     */
+    public static class ConcurrentCreator extends Creator {
+
+        private static final int CHUNK_BITS = 10;
+        private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+        private static final int MAX_CHUNKS = 1 << 16;
+
+        private final int capacity;
+        private final ConcurrentMap<String, Criterion> byShortName = new ConcurrentHashMap<String, Criterion>();
+        private final AtomicReferenceArray<AtomicReferenceArray<Criterion>> chunks;
+        private final AtomicInteger nextOrdinal = new AtomicInteger();
+
+        public ConcurrentCreator() {
+            this(MAX_CHUNKS << CHUNK_BITS);
+        }
+
+        /** A creator of at most the given number of criteria.
+         */
+        ConcurrentCreator(int capacity) {
+            if (capacity <= 0 || capacity > MAX_CHUNKS << CHUNK_BITS)
+                throw new IllegalArgumentException(String.format("Invalid capacity %d", capacity));
+            this.capacity = capacity;
+            chunks = new AtomicReferenceArray<AtomicReferenceArray<Criterion>>((capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        }
+
+        @Override
+        public Criterion getByShortName(String shortName) {
+            while (true) {
+                Criterion criterion = byShortName.get(shortName);
+                if (criterion == null) {
+                    Criterion created = new Criterion(shortName, shortName);
+                    criterion = byShortName.putIfAbsent(shortName, created);
+                    if (criterion == null) {
+                        boolean registered = false;
+                        try {
+                            register(created);
+                            registered = true;
+                        } finally {
+                            if (!registered)
+                                byShortName.remove(shortName, created);
+                        }
+                        return created;
+                    }
+                }
+                while (!hasOrdinal(criterion) && byShortName.get(shortName) == criterion)
+                    Thread.yield();
+                if (hasOrdinal(criterion))
+                    return criterion;
+            }
+        }
+
+        /** Registers a criterion created here, so this creator owns it. The
+         *  ordinal is only taken if there is room for it.
+         */
+        @Override
+        protected void register(Criterion criterion) {
+            int ordinal;
+            do {
+                ordinal = nextOrdinal.get();
+                if (ordinal >= capacity)
+                    throw new IllegalStateException(String.format("Too many criteria (%d)", ordinal + 1));
+            } while (!nextOrdinal.compareAndSet(ordinal, ordinal + 1));
+            AtomicReferenceArray<Criterion> chunk = chunks.get(ordinal >>> CHUNK_BITS);
+            if (chunk == null) {
+                chunks.compareAndSet(ordinal >>> CHUNK_BITS, null, new AtomicReferenceArray<Criterion>(CHUNK_SIZE));
+                chunk = chunks.get(ordinal >>> CHUNK_BITS);
+            }
+            chunk.set(ordinal & CHUNK_SIZE - 1, criterion);
+            criterion.claim(this, ordinal);
+        }
+
+        @Override
+        public int getOrdinalBound() {
+            return nextOrdinal.get();
+        }
+
+        @Override
+        public Criterion getByOrdinal(int ordinal) {
+            if (ordinal < 0 || ordinal >= capacity)
+                return null;
+            AtomicReferenceArray<Criterion> chunk = chunks.get(ordinal >>> CHUNK_BITS);
+            return chunk == null ? null : chunk.get(ordinal & CHUNK_SIZE - 1);
+        }
+
+        /** A weakly consistent view of the criteria created so far.
+         */
+        @Override
+        public Collection<Criterion> getCriteria() {
+            return Collections.unmodifiableCollection(byShortName.values());
+        }
+
+        /** A weakly consistent view of the short names of the criteria.
+         */
+        @Override
+        public Set<String> getShortNames() {
+            return Collections.unmodifiableSet(byShortName.keySet());
+        }
+    }
+
     private final String shortName;
     
     private final StringI18n wording;
@@ -249,6 +407,13 @@ public class Criterion implements Comparable<Criterion> {
     private final MedDRACoding medDRACoding;
     
     private final Integer orderingWeight;
+
+    // The ordinal is written before the owner and read after it
+    @XmlTransient
+    private volatile Creator owner = null;
+
+    @XmlTransient
+    private int ordinal = -1;
     
     public Criterion(
 		String shortName,
@@ -349,6 +514,31 @@ public class Criterion implements Comparable<Criterion> {
     	return orderingWeight;
     }
 
+    /** The ordinal of this criterion in its owner, the first creator it was
+     *  registered in, or -1 if it was never registered. Other creators
+     *  number the criterion themselves, see Creator.ordinalOf.
+     */
+    public int getOrdinal() {
+        return owner == null ? -1 : ordinal;
+    }
+
+    /** Makes the creator the owner of this criterion under the ordinal,
+     *  unless it already has an owner.
+     */
+    synchronized boolean claim(Creator creator, int ordinal) {
+        if (owner != null)
+            return false;
+        this.ordinal = ordinal;
+        owner = creator;
+        return true;
+    }
+
+    /** The ordinal in the creator if it owns this criterion, or -1.
+     */
+    int ordinalIn(Creator creator) {
+        return owner == creator ? ordinal : -1;
+    }
+
     public int compareTo(Criterion crit) {
         return shortName.compareTo(crit.shortName);
     }
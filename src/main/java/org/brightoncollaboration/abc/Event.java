@@ -20,11 +20,8 @@
 package org.brightoncollaboration.abc;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 public class Event {
@@ -47,6 +44,7 @@ public class Event {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        Map<Criterion, Value> symptoms = getSymptoms();
         result = prime * result
                 + ((symptoms == null) ? 0 : symptoms.hashCode());
         return result;
@@ -60,11 +58,12 @@ public class Event {
             return false;
         if (!(obj instanceof Event))
             return false;
-        Event other = (Event) obj;
+        Map<Criterion, Value> symptoms = getSymptoms();
+        Map<Criterion, Value> otherSymptoms = ((Event) obj).getSymptoms();
         if (symptoms == null) {
-            if (other.symptoms != null)
+            if (otherSymptoms != null)
                 return false;
-        } else if (!symptoms.equals(other.symptoms))
+        } else if (!symptoms.equals(otherSymptoms))
             return false;
         return true;
     }
@@ -75,44 +74,44 @@ public class Event {
     }
 
     public Value valueOfCriterion(Criterion crit) {
-        if (symptoms.containsKey(crit))
-            return symptoms.get(crit);
-        else
-            return Value.UNDEFINED;
+        Value value = symptoms.get(crit);
+        return value == null ? Value.UNDEFINED : value;
     }
 
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
         sb.append("Event:");
-        for( Criterion c: symptoms.keySet() )
-            sb.append(String.format(" %s=%s", c.getShortName(), symptoms.get(c).toString()));
+        for( Map.Entry<Criterion, Value> symptom: getSymptoms().entrySet() )
+            sb.append(String.format(" %s=%s", symptom.getKey().getShortName(), symptom.getValue().toString()));
         return sb.toString();
     }
 
+    /** Returns a copy of this event.
+     */
+    public Event copy() {
+        return new Event(new HashMap<Criterion, Value>(symptoms));
+    }
+
     /** Returns a new event adding the given symptom.
      */
     public Event extension(Criterion criterion, Value value) {
-        Map<Criterion, Value> newSymptoms = new HashMap<Criterion, Value>(symptoms);
-        newSymptoms.put(criterion, value);
-        return new Event(newSymptoms);
+        return copy().addSymptom(criterion, value);
     }
 
     /** Returns the collection of all possible extensions by the given criteria.
      */
     public Collection<Event> extensions(Collection<Criterion> criteria) {
-        return extensions(new LinkedList<Criterion>(criteria), 0);
+        Collection<Event> res = new HashSet<Event>();
+        for (Event event : lazyExtensions(criteria))
+            res.add(event);
+        return res;
     }
 
-    private Collection<Event> extensions(List<Criterion> criteria, int ix) {
-        if (ix < criteria.size()) {
-            Collection<Event> res = new HashSet<Event>();
-            Criterion criterion = criteria.get(ix);
-            res.addAll(extension(criterion, Value.POSITIVE).extensions(criteria, ix+1));
-            res.addAll(extension(criterion, Value.NEGATIVE).extensions(criteria, ix+1));
-            res.addAll(extension(criterion, Value.UNDEFINED).extensions(criteria, ix+1));
-            return res;
-        } else
-            return Collections.singleton(this);
+    /** Enumerates the extensions by the given criteria one by one without
+     *  storing them, see Extensions.
+     */
+    public Extensions lazyExtensions(Collection<Criterion> criteria) {
+        return new Extensions(this, criteria);
     }
 }
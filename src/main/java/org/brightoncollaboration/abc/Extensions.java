@@ -0,0 +1,168 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The extensions of an event by all combinations of values of some criteria,
+ * enumerated lazily. The extension with index i assigns the j-th criterion
+ * the j-th digit of i in base 3 (the last criterion is the least significant
+ * digit), where 0 is positive, 1 is negative and 2 is undefined.
+ *
+ * An Extensions covers a range of indices and can be split into disjoint
+ * ranges to enumerate them in parallel. Only one event is held per iterator.
+ */
+public class Extensions implements Iterable<Event> {
+
+    private static final Value[] DIGITS = { Value.POSITIVE, Value.NEGATIVE, Value.UNDEFINED };
+
+    /** 3^39 is the largest power of 3 which fits into a long.
+     */
+    public static final int MAX_CRITERIA = 39;
+
+    private final Event base;
+    private final Criterion[] criteria;
+    private final long start;
+    private final long end;
+
+    public Extensions(Event base, Collection<Criterion> criteria) {
+        this(base, new LinkedHashSet<Criterion>(criteria).toArray(new Criterion[0]), 0, -1);
+    }
+
+    private Extensions(Event base, Criterion[] criteria, long start, long end) {
+        if (criteria.length > MAX_CRITERIA)
+            throw new IllegalArgumentException(String.format("Cannot enumerate extensions by %d criteria", criteria.length));
+        this.base = base;
+        this.criteria = criteria;
+        this.start = start;
+        this.end = end < 0 ? power(criteria.length) : end;
+    }
+
+    private static long power(int n) {
+        long res = 1;
+        for (int i = 0; i < n; i++)
+            res *= 3;
+        return res;
+    }
+
+    /** The number of extensions in this range.
+     */
+    public long size() {
+        return end - start;
+    }
+
+    /** The extension with the given index (relative to the whole enumeration).
+     */
+    public Event get(long index) {
+        if (index < 0 || index >= power(criteria.length))
+            throw new IndexOutOfBoundsException(Long.toString(index));
+        Event res = base.copy();
+        for (int j = criteria.length - 1; j >= 0; j--) {
+            res.addSymptom(criteria[j], DIGITS[(int) (index % 3)]);
+            index /= 3;
+        }
+        return res;
+    }
+
+    /** The extensions with indices from (inclusive) to (exclusive).
+     */
+    public Extensions range(long from, long to) {
+        if (from < 0 || from > to || to > power(criteria.length))
+            throw new IndexOutOfBoundsException(String.format("%d to %d", from, to));
+        return new Extensions(base, criteria, from, to);
+    }
+
+    /** The digit of the value in the indices of extensions.
+     */
+    static int digit(Value value) {
+        switch (value) {
+        case POSITIVE:
+            return 0;
+        case NEGATIVE:
+            return 1;
+        default:
+            return 2;
+        }
+    }
+
+    /** Splits this range into at most the given number of disjoint ranges of
+     *  about the same size, in order.
+     */
+    public List<Extensions> split(int parts) {
+        if (parts <= 0)
+            throw new IllegalArgumentException(String.format("Invalid number of parts %d", parts));
+        List<Extensions> res = new ArrayList<Extensions>(parts);
+        long size = size();
+        // size * part overflows for MAX_CRITERIA criteria
+        for (int part = 0; part < parts; part++) {
+            long from = start + size / parts * part + Math.min(part, size % parts);
+            long to = start + size / parts * (part + 1) + Math.min(part + 1, size % parts);
+            if (from < to)
+                res.add(new Extensions(base, criteria, from, to));
+        }
+        return res;
+    }
+
+    /** Enumerates the range by incrementing a base 3 counter instead of
+     *  decoding each index.
+     */
+    public Iterator<Event> iterator() {
+        return new Iterator<Event>() {
+
+            private long index = start;
+            private final int[] digits = digits(start);
+
+            public boolean hasNext() {
+                return index < end;
+            }
+
+            public Event next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Event res = base.copy();
+                for (int j = 0; j < criteria.length; j++)
+                    res.addSymptom(criteria[j], DIGITS[digits[j]]);
+                index++;
+                for (int j = criteria.length - 1; j >= 0 && ++digits[j] == 3; j--)
+                    digits[j] = 0;
+                return res;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int[] digits(long index) {
+        int[] res = new int[criteria.length];
+        for (int j = criteria.length - 1; j >= 0; j--) {
+            res[j] = (int) (index % 3);
+            index /= 3;
+        }
+        return res;
+    }
+}
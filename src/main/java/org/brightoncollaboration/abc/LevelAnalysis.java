@@ -0,0 +1,238 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.Relation;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.brightoncollaboration.abc.clause.visitor.CNFEncoding;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Relations between the level clauses of a case definition which are proven
+ * once by the SAT solver: which level implies which (e.g. LEVEL1 ⊨ LEVEL2)
+ * and which levels are disjoint. Relations which could not be decided are
+ * not assumed.
+ *
+ * The relations carry over to the preconditions of any event: if Li ⊨ Lj,
+ * a TRUE precondition of Li makes that of Lj TRUE and a FALSE precondition of
+ * Lj makes that of Li FALSE. If Li and Lj are disjoint, a TRUE precondition
+ * of one makes the other FALSE. So preconditions(e, budget) computes only the
+ * preconditions which do not follow and gives the same result as computing
+ * all three.
+ *
+ * Levels with unknown literals (?X) are not analyzed, because their negation
+ * cannot be expressed for the solver.
+ *
+ * Each proof is limited by the solver budget of the case definition or else
+ * by DEFAULT_BUDGET. A proof which exceeds it counts as not proven.
+ */
+public class LevelAnalysis {
+
+    /** Limits each proof of an analysis when the case definition has no
+     *  budget of its own.
+     */
+    public static final SolverBudget DEFAULT_BUDGET = new SolverBudget(1000, 0, 0);
+
+    private static final int LEVELS = 3;
+
+    // Levels are computed weakest first, so that events which fail the case
+    // definition take one computation, and then strongest first
+    private static final int[] ORDER = { 2, 0, 1 };
+
+    private final Clause[] clauses;
+    private final boolean[] analyzed = new boolean[LEVELS];
+    private final boolean[] satisfiable = new boolean[LEVELS];
+    private final boolean[][] implies = new boolean[LEVELS][LEVELS];
+    private final boolean[][] disjoint = new boolean[LEVELS][LEVELS];
+
+    LevelAnalysis(CaseDefinition caseDefinition) {
+        clauses = new Clause[] { caseDefinition.getLevel1Clause(), caseDefinition.getLevel2Clause(), caseDefinition.getLevel3Clause() };
+        SolverBudget budget = caseDefinition.getSolverBudget();
+        if (budget == null)
+            budget = DEFAULT_BUDGET;
+        for (int i = 0; i < LEVELS; i++)
+            analyzed[i] = !clauses[i].acceptVisitor(new ContainsUnknown());
+        for (int i = 0; i < LEVELS; i++) {
+            satisfiable[i] = !analyzed[i] || !proves(Clause.not(clauses[i]), budget);
+            for (int j = 0; j < LEVELS; j++)
+                if (i != j && analyzed[i] && analyzed[j]) {
+                    implies[i][j] = proves(Clause.nlist(Relation.AT_LEAST, 1, Clause.not(clauses[i]), clauses[j]), budget);
+                    disjoint[i][j] = proves(Clause.not(Clause.and(clauses[i], clauses[j])), budget);
+                }
+        }
+    }
+
+    /** Restores an analysis of the case definition from toBits, see
+     *  AbcSnapshot.
+     */
+    LevelAnalysis(CaseDefinition caseDefinition, int bits) {
+        clauses = new Clause[] { caseDefinition.getLevel1Clause(), caseDefinition.getLevel2Clause(), caseDefinition.getLevel3Clause() };
+        int bit = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            analyzed[i] = (bits >>> bit++ & 1) != 0;
+            satisfiable[i] = (bits >>> bit++ & 1) != 0;
+            for (int j = 0; j < LEVELS; j++) {
+                implies[i][j] = (bits >>> bit++ & 1) != 0;
+                disjoint[i][j] = (bits >>> bit++ & 1) != 0;
+            }
+        }
+    }
+
+    /** The relations in 24 bits.
+     */
+    int toBits() {
+        int bits = 0, bit = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            bits |= (analyzed[i] ? 1 : 0) << bit++;
+            bits |= (satisfiable[i] ? 1 : 0) << bit++;
+            for (int j = 0; j < LEVELS; j++) {
+                bits |= (implies[i][j] ? 1 : 0) << bit++;
+                bits |= (disjoint[i][j] ? 1 : 0) << bit++;
+            }
+        }
+        return bits;
+    }
+
+    private static boolean proves(Clause clause, SolverBudget budget) {
+        try {
+            return clause.isTautology(CNFEncoding.AUTOMATIC, budget);
+        } catch (TimeoutException exc) {
+            return false;
+        }
+    }
+
+    /** Tests whether LEVEL(i+1) ⊨ LEVEL(j+1), levels counted from 0.
+     */
+    public boolean implies(int i, int j) {
+        return i == j || implies[i][j];
+    }
+
+    public boolean disjoint(int i, int j) {
+        return disjoint[i][j];
+    }
+
+    /** Tests whether relations of LEVEL(i+1) were analyzed at all.
+     */
+    public boolean analyzed(int i) {
+        return analyzed[i];
+    }
+
+    public boolean satisfiable(int i) {
+        return satisfiable[i];
+    }
+
+    /** Tests whether LEVEL1 ⊨ LEVEL2 ⊨ LEVEL3, as expected.
+     */
+    public boolean isNested() {
+        return implies[0][1] && implies[1][2];
+    }
+
+    /** Descriptions of deviations from the expected nesting.
+     */
+    public List<String> getProblems() {
+        List<String> res = new ArrayList<String>();
+        for (int i = 0; i < LEVELS; i++)
+            if (!analyzed[i])
+                res.add(String.format("LEVEL%d contains unknown literals and is not analyzed", i + 1));
+            else if (!satisfiable[i])
+                res.add(String.format("LEVEL%d is not satisfiable", i + 1));
+        for (int i = 0; i + 1 < LEVELS; i++)
+            if (analyzed[i] && analyzed[i + 1] && !implies[i][i + 1])
+                res.add(String.format("LEVEL%d does not imply LEVEL%d", i + 1, i + 2));
+        return Collections.unmodifiableList(res);
+    }
+
+    /** The preconditions of the three levels for the event, computing only
+     *  those which do not follow from the others.
+     */
+    Clause[] preconditions(Event event, SolverBudget budget) throws TimeoutException {
+        Clause[] res = new Clause[LEVELS];
+        for (int i : ORDER) {
+            if (res[i] != null)
+                continue;
+            res[i] = clauses[i].precondition(event, budget);
+            for (int j = 0; j < LEVELS; j++) {
+                if (res[j] != null)
+                    continue;
+                if (res[i].isTrue() && implies[i][j])
+                    res[j] = ConstantClause.TRUE;
+                else if (res[i].isTrue() && disjoint[i][j])
+                    res[j] = ConstantClause.FALSE;
+                else if (res[i].isFalse() && implies[j][i])
+                    res[j] = ConstantClause.FALSE;
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < LEVELS; i++)
+            for (int j = 0; j < LEVELS; j++) {
+                if (i != j && implies[i][j])
+                    sb.append(String.format("%sLEVEL%d ⊨ LEVEL%d", sb.length() == 0 ? "" : ", ", i + 1, j + 1));
+                if (i < j && disjoint[i][j])
+                    sb.append(String.format("%sLEVEL%d ∧ LEVEL%d ⊨ ⊥", sb.length() == 0 ? "" : ", ", i + 1, j + 1));
+            }
+        return sb.length() == 0 ? "no relations" : sb.toString();
+    }
+
+    private static class ContainsUnknown implements Visitor<Boolean> {
+
+        public Boolean visitConstant(ConstantClause c) {
+            return false;
+        }
+
+        public Boolean visitCriterion(CriterionClause c) {
+            return c.getValue() == Value.UNDEFINED;
+        }
+
+        public Boolean visitNot(NotClause c) {
+            return c.getClause().acceptVisitor(this);
+        }
+
+        public Boolean visitAnd(AndClause c) {
+            return any(c.getClauses());
+        }
+
+        public Boolean visitNList(NListClause c) {
+            return any(c.getClauses());
+        }
+
+        private boolean any(List<Clause> clauses) {
+            for (Clause clause : clauses)
+                if (clause.acceptVisitor(this))
+                    return true;
+            return false;
+        }
+    }
+}
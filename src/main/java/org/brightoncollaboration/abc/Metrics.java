@@ -0,0 +1,305 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.brightoncollaboration.abc.Classification.Result;
+
+/**
+ * Counters and latency histograms of the stages of a classification, the
+ * sizes of the CNFs given to the solver and the distribution of the results
+ * per case definition. The results are counted by each case definition
+ * itself, so equally named definitions are counted apart. The metrics are global and disabled by default; when
+ * disabled, recording costs a single volatile read (see isEnabled). They are
+ * exposed over JMX by AbcEngine.registerMetrics.
+ */
+public final class Metrics {
+
+    public enum Stage {
+        /** Filling in the event and simplifying, see FillAndSimplify */
+        FILL,
+        /** The negation normal form for the solver */
+        NNF,
+        /** The conversion of the NNF to CNF */
+        CNF,
+        /** Setting up and running the solver */
+        SOLVE,
+        /** Clause.precondition as a whole */
+        PRECONDITION,
+        /** CaseDefinition.assignLevel as a whole */
+        ASSIGN_LEVEL
+    }
+
+    /** A histogram of non-negative values in buckets of powers of two. The
+     *  bucket i holds values of bit length i.
+     */
+    public static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            for (long m = max.get(); value > m && !max.compareAndSet(m, value); m = max.get())
+                ;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) sum.get() / n;
+        }
+
+        /** An upper bound of the given quantile (between 0 and 1), precise
+         *  up to a factor of two.
+         */
+        public long getQuantile(double quantile) {
+            long n = count.get();
+            long rank = (long) Math.ceil(quantile * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0)
+                    return i == 0 ? 0 : Math.min((1L << i) - 1, max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++)
+                buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    private static volatile boolean enabled = false;
+
+    private static final Histogram[] stages = new Histogram[Stage.values().length];
+    private static final Histogram cnfClauses = new Histogram();
+    private static final Histogram cnfVariables = new Histogram();
+    /** The case definitions with recorded results, each once, held weakly */
+    private static final Queue<WeakReference<CaseDefinition>> recorded = new ConcurrentLinkedQueue<WeakReference<CaseDefinition>>();
+
+    static {
+        for (int i = 0; i < stages.length; i++)
+            stages[i] = new Histogram();
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /** Records the duration of a stage. Callers check isEnabled before
+     *  taking the time.
+     */
+    public static void record(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    public static void recordCnf(long clauses, long variables) {
+        cnfClauses.record(clauses);
+        cnfVariables.record(variables);
+    }
+
+    static void recordResult(CaseDefinition caseDefinition, Result result) {
+        if (!caseDefinition.resultsRecorded.get() && caseDefinition.resultsRecorded.compareAndSet(false, true))
+            recorded.add(new WeakReference<CaseDefinition>(caseDefinition));
+        caseDefinition.resultCounts.incrementAndGet(result.ordinal());
+    }
+
+    /** The case definitions with recorded results which are still reachable.
+     */
+    private static List<CaseDefinition> recordedCaseDefinitions() {
+        List<CaseDefinition> res = new ArrayList<CaseDefinition>();
+        for (Iterator<WeakReference<CaseDefinition>> iterator = recorded.iterator(); iterator.hasNext(); ) {
+            CaseDefinition caseDefinition = iterator.next().get();
+            if (caseDefinition == null)
+                iterator.remove();
+            else
+                res.add(caseDefinition);
+        }
+        return res;
+    }
+
+    private static String defaultName(CaseDefinition caseDefinition) {
+        return caseDefinition.getName() == null ? "" : caseDefinition.getName().defaultTranslation();
+    }
+
+    public static Histogram getHistogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public static Histogram getCnfClauses() {
+        return cnfClauses;
+    }
+
+    public static Histogram getCnfVariables() {
+        return cnfVariables;
+    }
+
+    /** The number of classifications per result of the case definition.
+     */
+    public static Map<Result, Long> getResults(CaseDefinition caseDefinition) {
+        Map<Result, Long> res = new LinkedHashMap<Result, Long>();
+        for (Result result : Result.values())
+            res.put(result, caseDefinition.resultCounts.get(result.ordinal()));
+        return res;
+    }
+
+    /** The number of classifications per result of all case definitions with
+     *  the given default name.
+     */
+    public static Map<Result, Long> getResults(String name) {
+        long[] counts = new long[Result.values().length];
+        for (CaseDefinition caseDefinition : recordedCaseDefinitions())
+            if (defaultName(caseDefinition).equals(name))
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] += caseDefinition.resultCounts.get(i);
+        Map<Result, Long> res = new LinkedHashMap<Result, Long>();
+        for (Result result : Result.values())
+            res.put(result, counts[result.ordinal()]);
+        return res;
+    }
+
+    public static void reset() {
+        for (Histogram histogram : stages)
+            histogram.reset();
+        cnfClauses.reset();
+        cnfVariables.reset();
+        for (CaseDefinition caseDefinition : recordedCaseDefinitions()) {
+            for (int i = 0; i < caseDefinition.resultCounts.length(); i++)
+                caseDefinition.resultCounts.set(i, 0);
+            caseDefinition.resultsRecorded.set(false);
+        }
+        recorded.clear();
+    }
+
+    static MetricsMXBean mxBean() {
+        return new MetricsMXBean() {
+
+            public boolean isEnabled() {
+                return Metrics.isEnabled();
+            }
+
+            public void setEnabled(boolean enabled) {
+                Metrics.setEnabled(enabled);
+            }
+
+            public Map<String, Long> getStageCounts() {
+                Map<String, Long> res = new LinkedHashMap<String, Long>();
+                for (Stage stage : Stage.values())
+                    res.put(stage.name(), getHistogram(stage).getCount());
+                return res;
+            }
+
+            public Map<String, Double> getStageMeanNanos() {
+                Map<String, Double> res = new LinkedHashMap<String, Double>();
+                for (Stage stage : Stage.values())
+                    res.put(stage.name(), getHistogram(stage).getMean());
+                return res;
+            }
+
+            public Map<String, Long> getStageMedianNanos() {
+                return quantiles(0.5);
+            }
+
+            public Map<String, Long> getStage99thPercentileNanos() {
+                return quantiles(0.99);
+            }
+
+            public Map<String, Long> getStageMaxNanos() {
+                Map<String, Long> res = new LinkedHashMap<String, Long>();
+                for (Stage stage : Stage.values())
+                    res.put(stage.name(), getHistogram(stage).getMax());
+                return res;
+            }
+
+            private Map<String, Long> quantiles(double quantile) {
+                Map<String, Long> res = new LinkedHashMap<String, Long>();
+                for (Stage stage : Stage.values())
+                    res.put(stage.name(), getHistogram(stage).getQuantile(quantile));
+                return res;
+            }
+
+            public double getMeanCnfClauses() {
+                return cnfClauses.getMean();
+            }
+
+            public long getMaxCnfClauses() {
+                return cnfClauses.getMax();
+            }
+
+            public double getMeanCnfVariables() {
+                return cnfVariables.getMean();
+            }
+
+            public long getMaxCnfVariables() {
+                return cnfVariables.getMax();
+            }
+
+            public Map<String, Map<String, Long>> getResultDistribution() {
+                Map<String, Map<String, Long>> res = new LinkedHashMap<String, Map<String, Long>>();
+                for (CaseDefinition caseDefinition : recordedCaseDefinitions()) {
+                    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+                    for (Map.Entry<Result, Long> entry : getResults(caseDefinition).entrySet())
+                        counts.put(entry.getKey().name(), entry.getValue());
+                    String name = defaultName(caseDefinition);
+                    if (res.containsKey(name))
+                        name += "@" + Integer.toHexString(System.identityHashCode(caseDefinition));
+                    res.put(name, counts);
+                }
+                return res;
+            }
+
+            public void reset() {
+                Metrics.reset();
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the Metrics, registered by AbcEngine.registerMetrics.
+ * Latencies are in nanoseconds and keyed by the names of Metrics.Stage.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanNanos();
+
+    Map<String, Long> getStageMedianNanos();
+
+    Map<String, Long> getStage99thPercentileNanos();
+
+    Map<String, Long> getStageMaxNanos();
+
+    double getMeanCnfClauses();
+
+    long getMaxCnfClauses();
+
+    double getMeanCnfVariables();
+
+    long getMaxCnfVariables();
+
+    /** The number of classifications per case definition and result. The
+     *  case definitions are keyed by their default names; equally named
+     *  ones get their identity hash code appended.
+     */
+    Map<String, Map<String, Long>> getResultDistribution();
+
+    void reset();
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An event which stores the values of the criteria of a creator in two bits
+ * per criterion, indexed by the ordinal of the criterion (see
+ * Criterion.Creator). Looking up a value is an array access instead of
+ * hashing the short name. Criteria which are not registered in the creator
+ * are kept in a map as in Event.
+ *
+ * Unlike Event, criteria are told apart by identity: a value added for a
+ * criterion of the creator is not found for an equal (same short name)
+ * criterion of another creator, which yields UNDEFINED. So the event should
+ * be queried with the criteria of its creator, as the case definitions of
+ * an AbcData with that creator do.
+ *
+ * The map returned by getSymptoms() is a copy. To visit the symptoms
+ * without copying, iterate the ordinals with nextOrdinal and the other
+ * criteria with getUnpackedSymptoms.
+ */
+public class PackedEvent extends Event {
+
+    private static final int BITS = 2;
+    private static final int PER_WORD = 64 / BITS;
+    private static final Value[] VALUES = new Value[4];
+    static {
+        for (Value value : Value.values())
+            VALUES[value.toInteger()] = value;
+    }
+
+    private final Criterion.Creator creator;
+    private long[] words;
+
+    public PackedEvent(Criterion.Creator creator) {
+        this(creator, new long[(creator.getOrdinalBound() + PER_WORD - 1) / PER_WORD], new HashMap<Criterion, Value>());
+    }
+
+    private PackedEvent(Criterion.Creator creator, long[] words, Map<Criterion, Value> others) {
+        super(others);
+        this.creator = creator;
+        this.words = words;
+    }
+
+    /** Packs the symptoms of the event for the criteria of the creator.
+     */
+    public static PackedEvent copyOf(Event event, Criterion.Creator creator) {
+        if (event instanceof PackedEvent && ((PackedEvent) event).creator == creator)
+            return ((PackedEvent) event).copy();
+        PackedEvent res = new PackedEvent(creator);
+        for (Map.Entry<Criterion, Value> symptom : event.getSymptoms().entrySet())
+            res.addSymptom(symptom.getKey(), symptom.getValue());
+        return res;
+    }
+
+    public Criterion.Creator getCreator() {
+        return creator;
+    }
+
+    @Override
+    public PackedEvent copy() {
+        return new PackedEvent(creator, words.clone(), new HashMap<Criterion, Value>(super.getSymptoms()));
+    }
+
+    private int code(int ordinal) {
+        int word = ordinal / PER_WORD;
+        if (word >= words.length)
+            return 0;
+        return (int) (words[word] >>> (BITS * (ordinal % PER_WORD))) & 3;
+    }
+
+    @Override
+    public Event addSymptom(Criterion criterion, Value value) {
+        int ordinal = creator.ordinalOf(criterion);
+        if (ordinal < 0)
+            return super.addSymptom(criterion, value);
+        int word = ordinal / PER_WORD;
+        if (word >= words.length)
+            words = Arrays.copyOf(words, Math.max(word + 1, 2 * words.length));
+        int shift = BITS * (ordinal % PER_WORD);
+        words[word] = words[word] & ~(3L << shift) | (long) value.toInteger() << shift;
+        Map<Criterion, Value> others = super.getSymptoms();
+        if (!others.isEmpty())
+            others.remove(criterion);
+        return this;
+    }
+
+    /** The value of the criterion, which is UNDEFINED for a criterion of
+     *  another creator even if an equal one of the creator was added (see
+     *  above).
+     */
+    @Override
+    public Value valueOfCriterion(Criterion crit) {
+        int ordinal = creator.ordinalOf(crit);
+        if (ordinal >= 0) {
+            int code = code(ordinal);
+            if (code != 0)
+                return VALUES[code];
+        }
+        // The criterion may have been added before it was registered
+        return super.getSymptoms().isEmpty() ? Value.UNDEFINED : super.valueOfCriterion(crit);
+    }
+
+    /** The first ordinal from the given one on (inclusive) for which a
+     *  value was added, or -1 if there is none. Words without values are
+     *  skipped, as in BitSet.nextSetBit:
+     *
+     *  for (int o = event.nextOrdinal(0); o >= 0; o = event.nextOrdinal(o + 1))
+     *      ... event.valueOfOrdinal(o) ...
+     */
+    public int nextOrdinal(int fromOrdinal) {
+        if (fromOrdinal < 0)
+            throw new IndexOutOfBoundsException(String.format("fromOrdinal < 0: %d", fromOrdinal));
+        int word = fromOrdinal / PER_WORD;
+        if (word >= words.length)
+            return -1;
+        long bits = words[word] & -1L << BITS * (fromOrdinal % PER_WORD);
+        while (bits == 0) {
+            if (++word == words.length)
+                return -1;
+            bits = words[word];
+        }
+        return word * PER_WORD + Long.numberOfTrailingZeros(bits) / BITS;
+    }
+
+    /** The value of the criterion with the given ordinal or null if no value
+     *  was added for it.
+     */
+    public Value valueOfOrdinal(int ordinal) {
+        return VALUES[code(ordinal)];
+    }
+
+    /** The symptoms of the criteria which were not registered in the creator
+     *  when they were added (not a copy).
+     */
+    public Map<Criterion, Value> getUnpackedSymptoms() {
+        return Collections.unmodifiableMap(super.getSymptoms());
+    }
+
+    @Override
+    public Map<Criterion, Value> getSymptoms() {
+        Map<Criterion, Value> res = new HashMap<Criterion, Value>(super.getSymptoms());
+        for (int ordinal = nextOrdinal(0); ordinal >= 0; ordinal = nextOrdinal(ordinal + 1))
+            res.put(creator.getByOrdinal(ordinal), valueOfOrdinal(ordinal));
+        return Collections.unmodifiableMap(res);
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.Relation;
+import org.brightoncollaboration.abc.tools.StringI18n;
+
+/**
+ * A single pass parser for the language of CaseDefinitionParser (see
+ * AbcParser.scala), which needs neither backtracking nor the Scala runtime.
+ * The lexical syntax is that of the Scala StdLexical: identifiers, numbers,
+ * strings in single or double quotes, the delimiters ( ) , ! ? : and
+ * block and line comments as in Java.
+ *
+ * A clause is a constant, a criterion, a prefix clause (NOT t, AND t, ..., OR
+ * t, ..., ATLEAST/ATMOST/EXACTLY n FROM t, ...) or an infix clause (t AND t
+ * ... or t OR t ...), where the terms t are constants, criteria and
+ * parenthesized clauses. As in CaseDefinitionParser, a parenthesized clause is
+ * only a term.
+ *
+ * Parse errors carry the offset of the offending token (see position) and
+ * the messages of CaseDefinitionParser. Criteria which are unknown to the
+ * creator are errors, too. A parser instance is not thread-safe, but the
+ * static methods are.
+ */
+public class RecursiveDescentParser {
+
+    private enum Kind { IDENTIFIER, KEYWORD, NUMBER, STRING, DELIMITER, END }
+
+    private enum Keyword {
+        TRUE, NOTAPPLICABLE, AND, OR, NOT, CASEDEFINITION, LEVEL1, LEVEL2, LEVEL3,
+        EXACTLY, ATMOST, ATLEAST, OF, FROM
+    }
+
+    private static final Map<String, Keyword> KEYWORDS = new HashMap<String, Keyword>();
+    static {
+        for (Keyword keyword : Keyword.values())
+            KEYWORDS.put(keyword.name(), keyword);
+    }
+
+    private static final String TERM_EXPECTED = "Only constants, criteria and parenthesize clauses allowed here";
+    private static final String UPPER_CASE_EXPECTED = "Criteria have to start with an upper case letter";
+    private static final String INFIX_EXPECTED = "Not a valid infix operator (... AND ... AND ...)";
+    private static final String NAME_EXPECTED = "The name of a case definition must be enclosed in double quotation marks";
+
+    private final String input;
+    private final Criterion.Creator cc;
+    private final Map<String, Criterion> criteria = new HashMap<String, Criterion>();
+
+    private int offset = 0;     // Of the scanner, after the current token
+    private Kind kind;          // The current token
+    private String text;
+    private Keyword keyword;    // If the kind is KEYWORD
+    private char delimiter;
+    private int start;
+
+    public RecursiveDescentParser(String input, Criterion.Creator cc) throws ParseException {
+        this.input = input;
+        this.cc = cc;
+        next();
+    }
+
+    /** Parses the whole input as a clause.
+     */
+    public Clause parseClause() throws ParseException {
+        Clause res = clause();
+        end();
+        return res;
+    }
+
+    /** Parses the whole input as a case definition.
+     */
+    public CaseDefinition parseCaseDefinition() throws ParseException {
+        keyword(Keyword.CASEDEFINITION);
+        StringI18n name = name();
+        Clause level1 = level(Keyword.LEVEL1);
+        Clause level2 = level(Keyword.LEVEL2);
+        Clause level3 = level(Keyword.LEVEL3);
+        end();
+        return new CaseDefinition(name, level1, level2, level3);
+    }
+
+    public static Clause parseClause(String str, Criterion.Creator cc) throws ParseException {
+        return new RecursiveDescentParser(str, cc).parseClause();
+    }
+
+    public static CaseDefinition parseCaseDefinition(String str, Criterion.Creator cc) throws ParseException {
+        return new RecursiveDescentParser(str, cc).parseCaseDefinition();
+    }
+
+    /** Reads the file in the default charset, as AbcParser.parseCaseDefinition
+     *  does, and parses it.
+     */
+    public static CaseDefinition parseCaseDefinition(File file, Criterion.Creator cc) throws IOException, ParseException {
+        String str = read(file);
+        try {
+            return parseCaseDefinition(str, cc);
+        } catch (ParseException exc) {
+            throw new ParseException(String.format("%s:%s: %s", file, position(str, exc.getErrorOffset()), exc.getMessage()), exc.getErrorOffset());
+        }
+    }
+
+    /** Parses the files on the given number of threads. The case definitions
+     *  are returned in the order of the files. The first error in this order
+     *  is thrown, its message prefixed by the file and the position.
+     */
+    public static Map<File, CaseDefinition> parseCaseDefinitions(List<File> files, final Criterion.Creator cc, int parallelism) throws IOException, ParseException, InterruptedException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format("Invalid parallelism %d", parallelism));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, files.size())), new DaemonThreadFactory("abc-parse-"));
+        try {
+            List<Future<CaseDefinition>> futures = new ArrayList<Future<CaseDefinition>>(files.size());
+            for (final File file : files)
+                futures.add(executor.submit(new Callable<CaseDefinition>() {
+                    public CaseDefinition call() throws IOException, ParseException {
+                        return parseCaseDefinition(file, cc);
+                    }
+                }));
+            Map<File, CaseDefinition> res = new LinkedHashMap<File, CaseDefinition>();
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    res.put(files.get(i), futures.get(i).get());
+                } catch (ExecutionException exc) {
+                    if (exc.getCause() instanceof IOException)
+                        throw (IOException) exc.getCause();
+                    if (exc.getCause() instanceof ParseException)
+                        throw (ParseException) exc.getCause();
+                    if (exc.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) exc.getCause();
+                    throw new IllegalStateException("Parsing failed", exc.getCause());
+                }
+            }
+            return res;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** The line and column (both from 1) of the offset in the string.
+     */
+    public static String position(String str, int offset) {
+        int line = 1, column = 1;
+        for (int i = 0; i < offset && i < str.length(); i++)
+            if (str.charAt(i) == '\n') {
+                line++;
+                column = 1;
+            } else
+                column++;
+        return String.format("%d:%d", line, column);
+    }
+
+    private static String read(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), Charset.defaultCharset());
+        try {
+            StringBuilder sb = new StringBuilder((int) Math.min(file.length(), Integer.MAX_VALUE));
+            char[] buffer = new char[8192];
+            for (int n = reader.read(buffer); n != -1; n = reader.read(buffer))
+                sb.append(buffer, 0, n);
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Grammar
+
+    private Clause level(Keyword level) throws ParseException {
+        keyword(level);
+        delimiter('(');
+        Clause res = clause();
+        delimiter(')');
+        return res;
+    }
+
+    private StringI18n name() throws ParseException {
+        if (kind == Kind.STRING) {
+            StringI18n res = StringI18n.singleton(text);
+            next();
+            return res;
+        }
+        if (kind != Kind.IDENTIFIER)
+            throw error(NAME_EXPECTED);
+        Map<String, String> translations = new HashMap<String, String>();
+        while (kind == Kind.IDENTIFIER) {
+            String language = text;
+            next();
+            delimiter(':');
+            if (kind != Kind.STRING)
+                throw expected("string literal");
+            translations.put(language, text);
+            next();
+        }
+        return new StringI18n(translations);
+    }
+
+    private Clause clause() throws ParseException {
+        if (kind == Kind.KEYWORD) {
+            if (keyword == Keyword.NOT) {
+                next();
+                return Clause.not(term());
+            }
+            if (keyword == Keyword.AND) {
+                next();
+                return Clause.and(terms());
+            }
+            if (keyword == Keyword.OR) {
+                next();
+                return Clause.nlist(Relation.AT_LEAST, 1, terms());
+            }
+            Relation relation = relation();
+            if (relation != null) {
+                next();
+                int number = number();
+                keyword(Keyword.FROM);
+                return Clause.nlist(relation, number, terms());
+            }
+        }
+        boolean parenthesized = kind == Kind.DELIMITER && delimiter == '(';
+        Clause first = term();
+        if (kind == Kind.KEYWORD && (keyword == Keyword.AND || keyword == Keyword.OR)) {
+            Keyword operator = keyword;
+            List<Clause> clauses = new ArrayList<Clause>();
+            clauses.add(first);
+            while (kind == Kind.KEYWORD && keyword == operator) {
+                next();
+                clauses.add(term());
+            }
+            Clause[] array = clauses.toArray(new Clause[clauses.size()]);
+            return operator == Keyword.AND ? Clause.and(array) : Clause.nlist(Relation.AT_LEAST, 1, array);
+        }
+        if (parenthesized)
+            throw error(INFIX_EXPECTED);
+        return first;
+    }
+
+    private Relation relation() {
+        if (keyword == Keyword.ATLEAST)
+            return Relation.AT_LEAST;
+        if (keyword == Keyword.ATMOST)
+            return Relation.AT_MOST;
+        if (keyword == Keyword.EXACTLY)
+            return Relation.EXACTLY;
+        return null;
+    }
+
+    /** Terms separated by commas, possibly none.
+     */
+    private Clause[] terms() throws ParseException {
+        if (!startsTerm())
+            return new Clause[0];
+        List<Clause> res = new ArrayList<Clause>();
+        res.add(term());
+        while (kind == Kind.DELIMITER && delimiter == ',') {
+            next();
+            res.add(term());
+        }
+        return res.toArray(new Clause[res.size()]);
+    }
+
+    private boolean startsTerm() {
+        switch (kind) {
+        case KEYWORD:
+            return keyword == Keyword.TRUE || keyword == Keyword.NOTAPPLICABLE;
+        case IDENTIFIER:
+            return Character.isUpperCase(text.charAt(0));
+        case DELIMITER:
+            return delimiter == '!' || delimiter == '?' || delimiter == '(';
+        default:
+            return false;
+        }
+    }
+
+    private Clause term() throws ParseException {
+        switch (kind) {
+        case KEYWORD:
+            if (keyword == Keyword.TRUE) {
+                next();
+                return Clause.tru();
+            }
+            if (keyword == Keyword.NOTAPPLICABLE) {
+                next();
+                return Clause.fals();
+            }
+            break;
+        case IDENTIFIER:
+            if (Character.isUpperCase(text.charAt(0)))
+                return criterion(Value.POSITIVE);
+            break;
+        case DELIMITER:
+            if (delimiter == '!' || delimiter == '?') {
+                Value value = delimiter == '!' ? Value.NEGATIVE : Value.UNDEFINED;
+                next();
+                if (kind != Kind.IDENTIFIER || !Character.isUpperCase(text.charAt(0)))
+                    throw error(UPPER_CASE_EXPECTED);
+                return criterion(value);
+            }
+            if (delimiter == '(') {
+                next();
+                Clause res = clause();
+                delimiter(')');
+                return res;
+            }
+            break;
+        default:
+            break;
+        }
+        throw error(TERM_EXPECTED);
+    }
+
+    private Clause criterion(Value value) throws ParseException {
+        Criterion criterion = criteria.get(text);
+        if (criterion == null) {
+            criterion = cc.getByShortName(text);
+            if (criterion == null)
+                throw error(String.format("Unknown criterion %s", text));
+            criteria.put(text, criterion);
+        }
+        next();
+        return Clause.criterion(criterion, value);
+    }
+
+    private int number() throws ParseException {
+        if (kind != Kind.NUMBER)
+            throw expected("number");
+        try {
+            int res = Integer.parseInt(text);
+            next();
+            return res;
+        } catch (NumberFormatException exc) {
+            throw error(String.format("Number %s out of range", text));
+        }
+    }
+
+    private void keyword(Keyword expected) throws ParseException {
+        if (kind != Kind.KEYWORD || keyword != expected)
+            throw expected(expected.name());
+        next();
+    }
+
+    private void delimiter(char c) throws ParseException {
+        if (kind != Kind.DELIMITER || delimiter != c)
+            throw expected(String.valueOf(c));
+        next();
+    }
+
+    private void end() throws ParseException {
+        if (kind != Kind.END)
+            throw error("end of input expected");
+    }
+
+    private ParseException expected(String what) {
+        return error(String.format("`%s' expected but %s found", what, kind == Kind.END ? "end of input" : "`" + input.substring(start, offset) + "'"));
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message, start);
+    }
+
+    // Scanner
+
+    /** Scans the next token.
+     */
+    private void next() throws ParseException {
+        skipWhitespace();
+        start = offset;
+        keyword = null;
+        if (offset == input.length()) {
+            kind = Kind.END;
+            text = null;
+            return;
+        }
+        char c = input.charAt(offset);
+        if (Character.isLetter(c) || c == '_') {
+            do
+                offset++;
+            while (offset < input.length() && isIdentifierPart(input.charAt(offset)));
+            text = input.substring(start, offset);
+            keyword = KEYWORDS.get(text);
+            kind = keyword != null ? Kind.KEYWORD : Kind.IDENTIFIER;
+        } else if (Character.isDigit(c)) {
+            do
+                offset++;
+            while (offset < input.length() && Character.isDigit(input.charAt(offset)));
+            kind = Kind.NUMBER;
+            text = input.substring(start, offset);
+        } else if (c == '"' || c == '\'') {
+            int end = offset + 1;
+            while (end < input.length() && input.charAt(end) != c && input.charAt(end) != '\n')
+                end++;
+            if (end == input.length() || input.charAt(end) != c) {
+                offset = start;
+                throw new ParseException("unclosed string literal", start);
+            }
+            kind = Kind.STRING;
+            text = input.substring(offset + 1, end);
+            offset = end + 1;
+        } else if (c == '(' || c == ')' || c == ',' || c == '!' || c == '?' || c == ':') {
+            kind = Kind.DELIMITER;
+            delimiter = c;
+            text = null;
+            offset++;
+        } else
+            throw new ParseException(String.format("illegal character %s", c), start);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetter(c) || Character.isDigit(c) || c == '_';
+    }
+
+    private void skipWhitespace() throws ParseException {
+        while (offset < input.length()) {
+            char c = input.charAt(offset);
+            if (c <= ' ')
+                offset++;
+            else if (c == '/' && input.startsWith("/*", offset)) {
+                int end = input.indexOf("*/", offset + 2);
+                if (end < 0)
+                    throw new ParseException("unclosed comment", offset);
+                offset = end + 2;
+            } else if (c == '/' && input.startsWith("//", offset)) {
+                int end = input.indexOf('\n', offset + 2);
+                offset = end < 0 ? input.length() : end + 1;
+            } else
+                break;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The result of validating an AbcData (see AbcData.validationReport): the
+ * criteria occurring in each case definition which are missing from the
+ * criterion creator and the criteria of the creator which occur in no case
+ * definition.
+ *
+ * The case definitions are checked in parallel, each against a hash set of
+ * the criteria of the creator, so the validation takes linear time in the
+ * size of the data. The levels are not analyzed here, see
+ * CaseDefinition.analyzeLevels.
+ */
+public class ValidationReport {
+
+    private final Map<String, Set<Criterion>> missingCriteria;
+    private final Set<Criterion> irrelevantCriteria;
+
+    private ValidationReport(Map<String, Set<Criterion>> missingCriteria, Set<Criterion> irrelevantCriteria) {
+        this.missingCriteria = missingCriteria;
+        this.irrelevantCriteria = irrelevantCriteria;
+    }
+
+    /** The missing criteria by the names of the case definitions in which
+     *  they occur. Only case definitions with missing criteria are included.
+     */
+    public Map<String, Set<Criterion>> getMissingCriteria() {
+        return Collections.unmodifiableMap(missingCriteria);
+    }
+
+    /** The criteria of the creator which occur in no case definition.
+     */
+    public Set<Criterion> getIrrelevantCriteria() {
+        return Collections.unmodifiableSet(irrelevantCriteria);
+    }
+
+    /** Whether no criteria are missing.
+     */
+    public boolean isValid() {
+        return missingCriteria.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("missing criteria: %s, irrelevant criteria: %s",
+                missingCriteria, irrelevantCriteria);
+    }
+
+    private static class Definition {
+        final Set<Criterion> occurring;
+        final Set<Criterion> missing;
+        Definition(Set<Criterion> occurring, Set<Criterion> missing) {
+            this.occurring = occurring;
+            this.missing = missing;
+        }
+    }
+
+    /** Validates the case definitions of the data on the given number of
+     *  threads.
+     */
+    static ValidationReport validate(AbcData data, int parallelism) throws InterruptedException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException(String.format("Invalid parallelism %d", parallelism));
+        Criterion.Creator creator = data.getCriterionCreator();
+        final boolean fromScratch = creator == Criterion.Creator.FROM_SCRATCH;
+        Collection<Criterion> criteria = creator.getCriteria();
+        final Set<Criterion> known = new HashSet<Criterion>(criteria);
+
+        Map<String, Future<Definition>> futures = new LinkedHashMap<String, Future<Definition>>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("abc-validation-"));
+        try {
+            for (Map.Entry<String, CaseDefinition> entry : data.getCaseDefinitions().entrySet()) {
+                final CaseDefinition caseDefinition = entry.getValue();
+                futures.put(entry.getKey(), executor.submit(new Callable<Definition>() {
+                    public Definition call() {
+                        Set<Criterion> occurring = new HashSet<Criterion>(caseDefinition.occurringCriteria());
+                        Set<Criterion> missing = new LinkedHashSet<Criterion>();
+                        if (!fromScratch)
+                            for (Criterion criterion : occurring)
+                                if (!known.contains(criterion))
+                                    missing.add(criterion);
+                        return new Definition(occurring, missing);
+                    }
+                }));
+            }
+
+            Map<String, Set<Criterion>> missing = new LinkedHashMap<String, Set<Criterion>>();
+            Set<Criterion> occurring = new HashSet<Criterion>();
+            for (Map.Entry<String, Future<Definition>> entry : futures.entrySet()) {
+                Definition definition;
+                try {
+                    definition = entry.getValue().get();
+                } catch (ExecutionException exc) {
+                    throw new IllegalStateException(String.format("Validation of %s failed", entry.getKey()), exc.getCause());
+                }
+                if (!definition.missing.isEmpty())
+                    missing.put(entry.getKey(), definition.missing);
+                occurring.addAll(definition.occurring);
+            }
+            Set<Criterion> irrelevant = new LinkedHashSet<Criterion>();
+            for (Criterion criterion : criteria)
+                if (!occurring.contains(criterion))
+                    irrelevant.add(criterion);
+            return new ValidationReport(missing, irrelevant);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -51,7 +51,7 @@ public class AndClause extends Clause {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         final int prime = 33;
         int result = 1;
         result = prime * result + ((clauses == null) ? 0 : clauses.hashCode());
@@ -59,9 +59,7 @@ public class AndClause extends Clause {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
+    protected boolean equalsStructurally(Clause obj) {
         if (!(obj instanceof AndClause))
             return false;
         AndClause other = (AndClause) obj;
@@ -0,0 +1,346 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+
+/**
+ * A reduced ordered binary decision diagram (ROBDD) of a clause.
+ *
+ * The variables are the criteria of the clause in the order of their first
+ * occurrence. A criterion clause ?c is represented by a separate variable
+ * "c is unknown", which is placed right where it occurs first.
+ *
+ * Conditioning on an event and deciding tautology and satisfiability of the
+ * conditioned diagram is a single traversal of the reachable nodes (see
+ * isTautology and isSatisfiable). The diagram is immutable after compilation
+ * and can be shared between threads.
+ */
+public class BinaryDecisionDiagram {
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+
+    private final Criterion[] criteria;   // Indexed by variable
+    private final boolean[] unknowns;     // Indexed by variable, true for "criterion is unknown"
+    private final int[] variable;         // Indexed by node
+    private final int[] low;
+    private final int[] high;
+    private final int root;
+
+    private BinaryDecisionDiagram(Criterion[] criteria, boolean[] unknowns, int[] variable, int[] low, int[] high, int root) {
+        this.criteria = criteria;
+        this.unknowns = unknowns;
+        this.variable = variable;
+        this.low = low;
+        this.high = high;
+        this.root = root;
+    }
+
+    public static BinaryDecisionDiagram compile(Clause clause) {
+        Builder builder = new Builder();
+        int root = clause.acceptVisitor(builder);
+        return builder.build(root);
+    }
+
+    /** The number of nodes including the terminals.
+     */
+    public int getNodeCount() {
+        return variable.length;
+    }
+
+    public int getVariableCount() {
+        return criteria.length;
+    }
+
+    /** Tests whether the clause holds for every extension of the event.
+     */
+    public boolean isTautology(Event event) {
+        return !reaches(event, FALSE);
+    }
+
+    /** Tests whether the clause holds for some extension of the event.
+     */
+    public boolean isSatisfiable(Event event) {
+        return reaches(event, TRUE);
+    }
+
+    /** Follows the branches of known criteria and both branches of unknown
+     *  criteria until the terminal is found.
+     */
+    private boolean reaches(Event event, int terminal) {
+        int[] values = values(event);
+        boolean[] visited = new boolean[variable.length];
+        int[] stack = new int[variable.length];
+        int size = 0;
+        stack[size++] = root;
+        visited[root] = true;
+        while (size > 0) {
+            int node = stack[--size];
+            if (node == terminal)
+                return true;
+            if (node == TRUE || node == FALSE)
+                continue;
+            int value = values[variable[node]];
+            if (value != 1 && !visited[low[node]]) {
+                visited[low[node]] = true;
+                stack[size++] = low[node];
+            }
+            if (value != 0 && !visited[high[node]]) {
+                visited[high[node]] = true;
+                stack[size++] = high[node];
+            }
+        }
+        return false;
+    }
+
+    /** 1 for true, 0 for false and -1 for free variables.
+     */
+    private int[] values(Event event) {
+        int[] values = new int[criteria.length];
+        for (int var = 0; var < criteria.length; var++) {
+            Value value = event.valueOfCriterion(criteria[var]);
+            if (unknowns[var])
+                values[var] = value == Value.UNDEFINED ? 1 : 0;
+            else if (value == Value.UNDEFINED)
+                values[var] = -1;
+            else
+                values[var] = value.toBoolean() ? 1 : 0;
+        }
+        return values;
+    }
+
+    /**
+     * Builds the diagram bottom up with a unique table and a memoized
+     * if-then-else operation. Not thread-safe, use compile.
+     */
+    static class Builder implements Visitor<Integer> {
+
+        private final List<Criterion> criteria = new ArrayList<Criterion>();
+        private final List<Boolean> unknowns = new ArrayList<Boolean>();
+        private final Map<Criterion, Integer> variables = new HashMap<Criterion, Integer>();
+        private final Map<Criterion, Integer> unknownVariables = new HashMap<Criterion, Integer>();
+
+        private final List<int[]> nodes = new ArrayList<int[]>(); // {variable, low, high}
+        private final Map<Triple, Integer> unique = new HashMap<Triple, Integer>();
+        private final Map<Triple, Integer> computed = new HashMap<Triple, Integer>();
+
+        Builder() {
+            nodes.add(new int[] {Integer.MAX_VALUE, FALSE, FALSE});
+            nodes.add(new int[] {Integer.MAX_VALUE, TRUE, TRUE});
+        }
+
+        public Integer visitConstant(ConstantClause c) {
+            return c.getValue() ? TRUE : FALSE;
+        }
+
+        public Integer visitCriterion(CriterionClause c) {
+            if (c.getValue() == Value.UNDEFINED)
+                return node(variable(unknownVariables, c.getCriterion(), true), FALSE, TRUE);
+            int var = variable(variables, c.getCriterion(), false);
+            if (c.getValue().toBoolean())
+                return node(var, FALSE, TRUE);
+            else
+                return node(var, TRUE, FALSE);
+        }
+
+        public Integer visitNot(NotClause c) {
+            return not(c.getClause().acceptVisitor(this));
+        }
+
+        public Integer visitAnd(AndClause c) {
+            int result = TRUE;
+            for (Clause subClause : c.getClauses())
+                result = ite(result, subClause.acceptVisitor(this), FALSE);
+            return result;
+        }
+
+        public Integer visitNList(NListClause c) {
+            List<Integer> subNodes = new ArrayList<Integer>();
+            for (Clause subClause : c.getClauses())
+                subNodes.add(subClause.acceptVisitor(this));
+            int number = c.getNumber();
+            switch (c.getRelation()) {
+                case AT_LEAST:
+                    return atLeast(number, subNodes);
+                case AT_MOST:
+                    return not(atLeast(number + 1, subNodes));
+                case EXACTLY:
+                    return ite(atLeast(number, subNodes), not(atLeast(number + 1, subNodes)), FALSE);
+                default:
+                    return null; // Should be recognized as impossible by the compiler
+            }
+        }
+
+        /** Counts from the last subclause: counter[j] is "at least j of the
+         *  subclauses from i on" after processing the i-th subclause.
+         */
+        private int atLeast(int number, List<Integer> subNodes) {
+            if (number <= 0)
+                return TRUE;
+            if (number > subNodes.size())
+                return FALSE;
+            int[] counter = new int[number + 1];
+            counter[0] = TRUE;
+            for (int j = 1; j <= number; j++)
+                counter[j] = FALSE;
+            for (int i = subNodes.size() - 1; i >= 0; i--)
+                for (int j = number; j >= 1; j--)
+                    counter[j] = ite(subNodes.get(i), counter[j - 1], counter[j]);
+            return counter[number];
+        }
+
+        private int not(int f) {
+            return ite(f, FALSE, TRUE);
+        }
+
+        private int variable(Map<Criterion, Integer> variables, Criterion criterion, boolean unknown) {
+            if (!variables.containsKey(criterion)) {
+                variables.put(criterion, criteria.size());
+                criteria.add(criterion);
+                unknowns.add(unknown);
+            }
+            return variables.get(criterion);
+        }
+
+        private int node(int var, int low, int high) {
+            if (low == high)
+                return low;
+            Triple key = new Triple(var, low, high);
+            Integer node = unique.get(key);
+            if (node == null) {
+                node = nodes.size();
+                nodes.add(new int[] {var, low, high});
+                unique.put(key, node);
+            }
+            return node;
+        }
+
+        private int top(int f) {
+            return nodes.get(f)[0];
+        }
+
+        private int cofactor(int f, int var, boolean value) {
+            int[] node = nodes.get(f);
+            if (node[0] != var)
+                return f;
+            return value ? node[2] : node[1];
+        }
+
+        private int ite(int f, int g, int h) {
+            if (f == TRUE)
+                return g;
+            if (f == FALSE)
+                return h;
+            if (g == h)
+                return g;
+            if (g == TRUE && h == FALSE)
+                return f;
+            Triple key = new Triple(f, g, h);
+            Integer result = computed.get(key);
+            if (result == null) {
+                int var = Math.min(top(f), Math.min(top(g), top(h)));
+                int low = ite(cofactor(f, var, false), cofactor(g, var, false), cofactor(h, var, false));
+                int high = ite(cofactor(f, var, true), cofactor(g, var, true), cofactor(h, var, true));
+                result = node(var, low, high);
+                computed.put(key, result);
+            }
+            return result;
+        }
+
+        /** Copies the nodes reachable from root into a compact diagram.
+         */
+        BinaryDecisionDiagram build(int root) {
+            Map<Integer, Integer> renumbering = new HashMap<Integer, Integer>();
+            renumbering.put(FALSE, FALSE);
+            renumbering.put(TRUE, TRUE);
+            List<Integer> order = new ArrayList<Integer>();
+            order.add(FALSE);
+            order.add(TRUE);
+            collect(root, renumbering, order);
+
+            int size = order.size();
+            int[] variable = new int[size];
+            int[] low = new int[size];
+            int[] high = new int[size];
+            for (int i = 0; i < size; i++) {
+                int[] node = nodes.get(order.get(i));
+                variable[i] = node[0];
+                low[i] = renumbering.get(node[1]);
+                high[i] = renumbering.get(node[2]);
+            }
+            boolean[] unknownArray = new boolean[unknowns.size()];
+            for (int var = 0; var < unknownArray.length; var++)
+                unknownArray[var] = unknowns.get(var);
+            return new BinaryDecisionDiagram(criteria.toArray(new Criterion[criteria.size()]), unknownArray,
+                    variable, low, high, renumbering.get(root));
+        }
+
+        private void collect(int node, Map<Integer, Integer> renumbering, List<Integer> order) {
+            if (renumbering.containsKey(node))
+                return;
+            renumbering.put(node, order.size());
+            order.add(node);
+            collect(nodes.get(node)[1], renumbering, order);
+            collect(nodes.get(node)[2], renumbering, order);
+        }
+    }
+
+    private static final class Triple {
+
+        private final int first;
+        private final int second;
+        private final int third;
+
+        Triple(int first, int second, int third) {
+            this.first = first;
+            this.second = second;
+            this.third = third;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + first;
+            result = prime * result + second;
+            result = prime * result + third;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Triple))
+                return false;
+            Triple other = (Triple) obj;
+            return first == other.first && second == other.second && third == other.third;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+
+/**
+ * Evaluates clauses three-valued on a block of up to 64 events at once. Each
+ * event is a lane, i.e. a bit of a long. A clause evaluates to the lanes in
+ * which it is true and the lanes in which it is false for all extensions of
+ * the event (see Lanes). In these lanes the precondition of the clause is
+ * TRUE or FALSE, respectively.
+ *
+ * The remaining lanes are undecided and need the precondition of the clause.
+ * The values of the criteria are collected once per block.
+ */
+public class BitParallelEvaluator implements Visitor<BitParallelEvaluator.Lanes> {
+
+    public static final int LANES = 64;
+
+    /** The lanes in which a clause is true and in which it is false.
+     */
+    public static final class Lanes {
+
+        private final long trues;
+        private final long falses;
+
+        Lanes(long trues, long falses) {
+            this.trues = trues;
+            this.falses = falses;
+        }
+
+        public long getTrue() {
+            return trues;
+        }
+
+        public long getFalse() {
+            return falses;
+        }
+
+        public long getDecided() {
+            return trues | falses;
+        }
+
+        public boolean isTrue(int lane) {
+            return (trues >>> lane & 1) != 0;
+        }
+
+        public boolean isFalse(int lane) {
+            return (falses >>> lane & 1) != 0;
+        }
+
+        Lanes not() {
+            return new Lanes(falses, trues);
+        }
+    }
+
+    private final List<? extends Event> events;
+    private final long all;
+    private final Map<Criterion, long[]> values = new HashMap<Criterion, long[]>();
+
+    public BitParallelEvaluator(List<? extends Event> events) {
+        if (events.size() > LANES)
+            throw new IllegalArgumentException(String.format("At most %d events, got %d", LANES, events.size()));
+        this.events = events;
+        this.all = events.size() == LANES ? -1L : (1L << events.size()) - 1;
+    }
+
+    public int size() {
+        return events.size();
+    }
+
+    /** The lanes of all events.
+     */
+    public long getAll() {
+        return all;
+    }
+
+    /** The lanes in which the criterion is positive and in which it is
+     *  negative.
+     */
+    private long[] values(Criterion criterion) {
+        long[] res = values.get(criterion);
+        if (res == null) {
+            res = new long[2];
+            for (int lane = 0; lane < events.size(); lane++) {
+                Value value = events.get(lane).valueOfCriterion(criterion);
+                if (value == Value.POSITIVE)
+                    res[0] |= 1L << lane;
+                else if (value == Value.NEGATIVE)
+                    res[1] |= 1L << lane;
+            }
+            values.put(criterion, res);
+        }
+        return res;
+    }
+
+    public Lanes visitConstant(ConstantClause constantClause) {
+        return constantClause.getValue() ? new Lanes(all, 0) : new Lanes(0, all);
+    }
+
+    public Lanes visitCriterion(CriterionClause criterionClause) {
+        long[] values = values(criterionClause.getCriterion());
+        switch (criterionClause.getValue()) {
+        case POSITIVE:
+            return new Lanes(values[0], values[1]);
+        case NEGATIVE:
+            return new Lanes(values[1], values[0]);
+        case UNDEFINED:
+            return new Lanes(all & ~(values[0] | values[1]), values[0] | values[1]);
+        default:
+            return null; // Should be recognized as impossible by the compiler
+        }
+    }
+
+    public Lanes visitNot(NotClause notClause) {
+        return notClause.getClause().acceptVisitor(this).not();
+    }
+
+    public Lanes visitAnd(AndClause andClause) {
+        long trues = all, falses = 0;
+        for (Clause clause : andClause.getClauses()) {
+            Lanes lanes = clause.acceptVisitor(this);
+            trues &= lanes.trues;
+            falses |= lanes.falses;
+        }
+        return new Lanes(trues, falses);
+    }
+
+    /** With t true and f false of n clauses, ATLEAST k is true if t >= k and
+     *  false if f > n-k, ATMOST k is true if f >= n-k and false if t > k, and
+     *  EXACTLY k is true if both t >= k and f >= n-k and false if t > k or
+     *  f > n-k.
+     */
+    public Lanes visitNList(NListClause nListClause) {
+        List<Clause> clauses = nListClause.getClauses();
+        int n = clauses.size(), k = nListClause.getNumber();
+        long[] trues = new long[n], falses = new long[n];
+        for (int i = 0; i < n; i++) {
+            Lanes lanes = clauses.get(i).acceptVisitor(this);
+            trues[i] = lanes.trues;
+            falses[i] = lanes.falses;
+        }
+        switch (nListClause.getRelation()) {
+        case AT_LEAST:
+            return new Lanes(atLeast(trues, k), atLeast(falses, n - k + 1));
+        case AT_MOST:
+            return new Lanes(atLeast(falses, n - k), atLeast(trues, k + 1));
+        case EXACTLY:
+            return new Lanes(atLeast(trues, k) & atLeast(falses, n - k),
+                    atLeast(trues, k + 1) | atLeast(falses, n - k + 1));
+        default:
+            return null; // Should be recognized as impossible by the compiler
+        }
+    }
+
+    /** The lanes in which at least number of the masks are set, by a
+     *  sequential counter: counts[j] holds the lanes with at least j+1 set
+     *  masks so far.
+     */
+    private long atLeast(long[] masks, int number) {
+        if (number <= 0)
+            return all;
+        if (number > masks.length)
+            return 0;
+        long[] counts = new long[number];
+        for (long mask : masks)
+            for (int j = number - 1; j >= 0; j--)
+                counts[j] |= (j == 0 ? mask : counts[j - 1] & mask);
+        return counts[number - 1];
+    }
+}
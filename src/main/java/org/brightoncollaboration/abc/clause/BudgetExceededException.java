@@ -0,0 +1,43 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.clause;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Thrown by Clause.isSatisfiable when a limit of its SolverBudget is
+ * exceeded or its thread is interrupted.
+ */
+public class BudgetExceededException extends TimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Limit { TIME, CONFLICTS, CNF_SIZE, INTERRUPTED }
+
+    private final Limit limit;
+
+    public BudgetExceededException(Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+}
@@ -21,26 +21,27 @@ package org.brightoncollaboration.abc.clause;
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 
 import org.brightoncollaboration.abc.Criterion;
 import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Metrics;
 import org.brightoncollaboration.abc.Value;
 import org.brightoncollaboration.abc.clause.visitor.CNFClause;
 import org.brightoncollaboration.abc.clause.visitor.CNFConjunction;
+import org.brightoncollaboration.abc.clause.visitor.CNFEncoding;
 import org.brightoncollaboration.abc.clause.visitor.ClauseSimplifier;
-import org.brightoncollaboration.abc.clause.visitor.ConjunctiveNormalForm;
 import org.brightoncollaboration.abc.clause.visitor.CriterionCollector;
+import org.brightoncollaboration.abc.clause.visitor.FillAndSimplify;
 import org.brightoncollaboration.abc.clause.visitor.FillEvent;
 import org.brightoncollaboration.abc.clause.visitor.NegationNormalForm;
 import org.brightoncollaboration.abc.clause.visitor.ToStringVisitor;
 import org.brightoncollaboration.abc.clause.visitor.UnparseClause;
+import org.brightoncollaboration.abc.clause.visitor.VariableIndex;
 import org.brightoncollaboration.abc.clause.visitor.Visitor;
 import org.sat4j.core.VecInt;
 import org.sat4j.minisat.SolverFactory;
@@ -50,13 +51,43 @@ import org.sat4j.specs.TimeoutException;
 @XmlAccessorType(XmlAccessType.FIELD)
 public abstract class Clause {
 
+    private transient int hash;
+
+    /** Set by ClauseFactory. Interned clauses are only equal when identical.
+     */
+    transient boolean interned;
+
     public abstract <T> T acceptVisitor(Visitor<T> visitor);
 
+    /** Clauses are immutable, so the hash code is computed once.
+     */
     @Override
-    public abstract int hashCode();
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    protected abstract int computeHashCode();
 
     @Override
-    public abstract boolean equals(Object obj);
+    public final boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Clause))
+            return false;
+        Clause other = (Clause) obj;
+        if (interned && other.interned)
+            return false;
+        if (hashCode() != other.hashCode())
+            return false;
+        return equalsStructurally(other);
+    }
+
+    protected abstract boolean equalsStructurally(Clause obj);
 
     public boolean isTrue() {
         return equals(ConstantClause.TRUE);
@@ -84,7 +115,39 @@ public abstract class Clause {
      *  p |= this)
      */
     public Clause precondition(Event e) throws TimeoutException {
-        return fillEvent(e).simplify().minimize();
+        return precondition(e, SolverBudget.UNLIMITED);
+    }
+
+    /** Same as precondition(e) with each satisfiability test limited by the
+     *  budget.
+     */
+    public Clause precondition(Event e, SolverBudget budget) throws TimeoutException {
+        if (!Metrics.isEnabled())
+            return fillAndSimplify(e).minimize(budget);
+        long start = System.nanoTime();
+        Clause simplified = fillAndSimplify(e);
+        Metrics.record(Metrics.Stage.FILL, System.nanoTime() - start);
+        Clause res = simplified.minimize(budget);
+        Metrics.record(Metrics.Stage.PRECONDITION, System.nanoTime() - start);
+        return res;
+    }
+
+    /** Same as precondition(e) but decides tautology and satisfiability on the
+     *  given diagram of this clause instead of using a SAT solver.
+     */
+    public Clause precondition(Event e, BinaryDecisionDiagram diagram) {
+        if (diagram.isTautology(e))
+            return ConstantClause.TRUE;
+        if (!diagram.isSatisfiable(e))
+            return ConstantClause.FALSE;
+        return fillAndSimplify(e);
+    }
+
+    /** Compiles this into a binary decision diagram, which can be used for
+     *  precondition(e, diagram) of many events.
+     */
+    public BinaryDecisionDiagram toBinaryDecisionDiagram() {
+        return BinaryDecisionDiagram.compile(this);
     }
 
     /** Fills information from an event by substituting criteria clauses by true
@@ -94,6 +157,12 @@ public abstract class Clause {
         return acceptVisitor(new FillEvent(e));
     }
 
+    /** Same as fillEvent(e).simplify() in a single pass, see FillAndSimplify.
+     */
+    Clause fillAndSimplify(Event e) {
+        return acceptVisitor(new FillAndSimplify(e));
+    }
+
     /** Applies local simplifications.
      */
     Clause simplify() {
@@ -105,9 +174,16 @@ public abstract class Clause {
      *  It is reasonable to simplify before minimize.
      */
     Clause minimize() throws TimeoutException {
-        if (isTautology())   //     (|= clause)
+        return minimize(SolverBudget.UNLIMITED);
+    }
+
+    /** Same as minimize() with each satisfiability test limited by the
+     *  budget.
+     */
+    public Clause minimize(SolverBudget budget) throws TimeoutException {
+        if (isTautology(CNFEncoding.AUTOMATIC, budget))   //     (|= clause)
             return ConstantClause.TRUE;
-        if (isSatisfiable()) //  ∃p (p |= this)
+        if (isSatisfiable(CNFEncoding.AUTOMATIC, budget)) //  ∃p (p |= this)
             return this;
         else               // ¬∃p (p |= this)
             return ConstantClause.FALSE;
@@ -116,6 +192,18 @@ public abstract class Clause {
     /** Tests whether this is satisfiable.
      */
     public boolean isSatisfiable() throws TimeoutException {
+        return isSatisfiable(CNFEncoding.AUTOMATIC);
+    }
+
+    /** Tests whether this is satisfiable using the given conversion to CNF.
+     */
+    public boolean isSatisfiable(CNFEncoding encoding) throws TimeoutException {
+        return isSatisfiable(encoding, SolverBudget.UNLIMITED);
+    }
+
+    /** Tests whether this is satisfiable within the budget, see SolverBudget.
+     */
+    public boolean isSatisfiable(CNFEncoding encoding, SolverBudget budget) throws TimeoutException {
 
         // The following is necessary because sat4j complains about clauses without variables
         if(isTrue())
@@ -123,16 +211,24 @@ public abstract class Clause {
         if(isFalse())
             return false;
 
-        CNFConjunction cnf = toCNFConjunction();
+        boolean metrics = Metrics.isEnabled();
+        long start = metrics ? System.nanoTime() : 0;
+        Clause nnf = acceptVisitor(new NegationNormalForm());
+        long nnfTime = metrics ? System.nanoTime() : 0;
+        if (metrics)
+            Metrics.record(Metrics.Stage.NNF, nnfTime - start);
+        if (budget.getMaxClauses() != 0)
+            budget.checkSize(encoding.estimateSize(nnf));
+        CNFConjunction cnf = encoding.encode(nnf);
+        long cnfTime = metrics ? System.nanoTime() : 0;
+        if (metrics)
+            Metrics.record(Metrics.Stage.CNF, cnfTime - nnfTime);
 
         ISolver solver = SolverFactory.instance().defaultSolver();
         solver.setExpectedNumberOfClauses(cnf.getClauses().size());
 
-        Map<Criterion, Integer> indices = new HashMap<Criterion, Integer>();
-        int index = 1;
-        for (Criterion criterion : getOccuringCriteria())
-            indices.put(criterion, index++);
-        solver.newVar(index);
+        VariableIndex indices = new VariableIndex(getOccuringCriteria());
+        solver.newVar(indices.size() + cnf.getAuxiliaries());
 
         try {
             for (CNFClause clause : cnf.getClauses())
@@ -141,16 +237,34 @@ public abstract class Clause {
             return false;
         }
 
-        return solver.isSatisfiable();
+        if (!metrics)
+            return budget.isSatisfiable(solver);
+        Metrics.recordCnf(cnf.getClauses().size(), indices.size() + cnf.getAuxiliaries());
+        try {
+            return budget.isSatisfiable(solver);
+        } finally {
+            Metrics.record(Metrics.Stage.SOLVE, System.nanoTime() - cnfTime);
+        }
     }
 
     CNFConjunction toCNFConjunction() {
-        return acceptVisitor(new NegationNormalForm())
-              .acceptVisitor(new ConjunctiveNormalForm());
+        return toCNFConjunction(CNFEncoding.DISTRIBUTIVE);
+    }
+
+    CNFConjunction toCNFConjunction(CNFEncoding encoding) {
+        return encoding.encode(acceptVisitor(new NegationNormalForm()));
     }
 
     public boolean isTautology() throws TimeoutException {
-        return !new NotClause(this).isSatisfiable();
+        return isTautology(CNFEncoding.AUTOMATIC);
+    }
+
+    public boolean isTautology(CNFEncoding encoding) throws TimeoutException {
+        return isTautology(encoding, SolverBudget.UNLIMITED);
+    }
+
+    public boolean isTautology(CNFEncoding encoding, SolverBudget budget) throws TimeoutException {
+        return !new NotClause(this).isSatisfiable(encoding, budget);
     }
    
     public static <T> List<T> visitClauseList(Visitor<T> visitor, List<? extends Clause> clauses) {
@@ -163,15 +277,15 @@ public abstract class Clause {
     public static List<Clause> negateList(List<? extends Clause> clauses) {
         List<Clause> newClauses = new LinkedList<Clause>();
         for (Clause c : clauses)
-            newClauses.add(new NotClause(c));
+            newClauses.add(ClauseFactory.not(c));
         return newClauses;
     }
 
-    // static shortcuts for the construction of clauses
+    // static shortcuts for the construction of (interned) clauses
     public static Clause tru() { return ConstantClause.TRUE; }
     public static Clause fals() { return ConstantClause.FALSE; }
-    public static Clause criterion(Criterion criterion, Value value) { return new CriterionClause(criterion, value); }
-    public static Clause not(Clause c) { return new NotClause(c); }
-    public static Clause and(Clause... cs) { return new AndClause(Arrays.asList(cs)); }
-    public static Clause nlist(Relation rel, int n, Clause... cs) { return new NListClause(rel, n, Arrays.asList(cs)); }
+    public static Clause criterion(Criterion criterion, Value value) { return ClauseFactory.criterion(criterion, value); }
+    public static Clause not(Clause c) { return ClauseFactory.not(ClauseFactory.intern(c)); }
+    public static Clause and(Clause... cs) { return ClauseFactory.and(ClauseFactory.internAll(Arrays.asList(cs))); }
+    public static Clause nlist(Relation rel, int n, Clause... cs) { return ClauseFactory.nlist(rel, n, ClauseFactory.internAll(Arrays.asList(cs))); }
 }
@@ -0,0 +1,207 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+
+/**
+ * Creates hash-consed clauses: structurally equal clauses created by the
+ * factory are identical, so their equality is an identity check and equal
+ * subtrees are shared. Subtrees are only shared if the subclauses are interned
+ * too, which holds when clauses are built bottom up through the factory (see
+ * intern otherwise).
+ *
+ * The table holds the clauses weakly in a ConcurrentHashMap, so it can be
+ * used from several threads and looking up a clause which is interned
+ * already, as the visitors do for every event, takes no lock. The entries of
+ * collected clauses are removed on the next lookup.
+ */
+public final class ClauseFactory {
+
+    /** A key of the table: either the weakly held clause of an entry or a
+     *  clause to look up. Keys are compared structurally, regardless of
+     *  whether their clauses are interned.
+     */
+    private interface Key {
+        Clause clause();
+    }
+
+    private static final class WeakKey extends WeakReference<Clause> implements Key {
+        private final int hash;
+        WeakKey(Clause clause) {
+            super(clause, collected);
+            this.hash = clause.hashCode();
+        }
+        public Clause clause() {
+            return get();
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || equalKeys(this, obj);
+        }
+    }
+
+    private static final class Probe implements Key {
+        private final Clause clause;
+        Probe(Clause clause) {
+            this.clause = clause;
+        }
+        public Clause clause() {
+            return clause;
+        }
+        @Override
+        public int hashCode() {
+            return clause.hashCode();
+        }
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || equalKeys(this, obj);
+        }
+    }
+
+    private static boolean equalKeys(Key key, Object obj) {
+        if (!(obj instanceof Key))
+            return false;
+        Clause clause = key.clause();
+        Clause other = ((Key) obj).clause();
+        if (clause == null || other == null)
+            return false;
+        return clause == other || clause.hashCode() == other.hashCode() && clause.equalsStructurally(other);
+    }
+
+    private static final ReferenceQueue<Clause> collected = new ReferenceQueue<Clause>();
+
+    private static final ConcurrentMap<Key, WeakKey> table = new ConcurrentHashMap<Key, WeakKey>();
+
+    static {
+        lookup(ConstantClause.TRUE);
+        lookup(ConstantClause.FALSE);
+    }
+
+    private ClauseFactory() {
+    }
+
+    public static Clause constant(boolean value) {
+        return value ? ConstantClause.TRUE : ConstantClause.FALSE;
+    }
+
+    public static Clause criterion(Criterion criterion, Value value) {
+        return lookup(new CriterionClause(criterion, value));
+    }
+
+    public static Clause not(Clause clause) {
+        return lookup(new NotClause(clause));
+    }
+
+    public static Clause and(List<Clause> clauses) {
+        return lookup(new AndClause(copy(clauses)));
+    }
+
+    public static Clause nlist(Relation relation, int number, List<Clause> clauses) {
+        return lookup(new NListClause(relation, number, copy(clauses)));
+    }
+
+    /** Returns the interned clause equal to the given clause, which might have
+     *  been created by its constructors.
+     */
+    public static Clause intern(Clause clause) {
+        if (clause.interned)
+            return clause;
+        return clause.acceptVisitor(INTERN);
+    }
+
+    public static List<Clause> internAll(List<? extends Clause> clauses) {
+        List<Clause> res = new ArrayList<Clause>(clauses.size());
+        for (Clause clause : clauses)
+            res.add(intern(clause));
+        return res;
+    }
+
+    private static List<Clause> copy(List<Clause> clauses) {
+        return Collections.unmodifiableList(new ArrayList<Clause>(clauses));
+    }
+
+    private static Clause lookup(Clause clause) {
+        expungeCollected();
+        WeakKey found = table.get(new Probe(clause));
+        Clause canonical = found == null ? null : found.get();
+        if (canonical != null)
+            return canonical;
+        // The clause is marked before it is published; only its creator sees
+        // the mark if another thread wins
+        clause.interned = true;
+        WeakKey key = new WeakKey(clause);
+        while (true) {
+            found = table.putIfAbsent(key, key);
+            if (found == null)
+                return clause;
+            canonical = found.get();
+            if (canonical != null) {
+                clause.interned = false;
+                return canonical;
+            }
+            table.remove(found, found);
+        }
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends Clause> reference;
+        while ((reference = collected.poll()) != null)
+            table.remove(reference, reference);
+    }
+
+    private static final Visitor<Clause> INTERN = new Visitor<Clause>() {
+
+        public Clause visitConstant(ConstantClause c) {
+            return lookup(c);
+        }
+
+        public Clause visitCriterion(CriterionClause c) {
+            return lookup(c);
+        }
+
+        public Clause visitNot(NotClause c) {
+            return not(intern(c.getClause()));
+        }
+
+        public Clause visitAnd(AndClause c) {
+            return and(internAll(c.getClauses()));
+        }
+
+        public Clause visitNList(NListClause c) {
+            return nlist(c.getRelation(), c.getNumber(), internAll(c.getClauses()));
+        }
+    };
+}
@@ -36,8 +36,8 @@ public class ConstantClause extends Clause {
 		this.value = value;
 	}
 	
-	public static ConstantClause TRUE = new ConstantClause(true);
-	public static ConstantClause FALSE = new ConstantClause(false);
+	public static final ConstantClause TRUE = new ConstantClause(true);
+	public static final ConstantClause FALSE = new ConstantClause(false);
 	
 	public boolean getValue() {
 		return value;
@@ -49,7 +49,7 @@ public class ConstantClause extends Clause {
 	}
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         final int prime = 37;
         int result = 2;
         result = prime * result + ((value == null) ? 0 : value.hashCode());
@@ -57,9 +57,7 @@ public class ConstantClause extends Clause {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
+    protected boolean equalsStructurally(Clause obj) {
         if (!(obj instanceof ConstantClause))
             return false;
         ConstantClause other = (ConstantClause) obj;
@@ -57,26 +57,25 @@ public class CriterionClause extends Clause {
         return visitor.visitCriterion(this);
     }
 
+    /** Criteria are compared by identity: equal criteria of different
+     *  creators differ in wording, tags and ordinals, so clauses of different
+     *  creators are not interned to each other (see ClauseFactory).
+     */
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         final int prime = 41;
         int result = 3;
-        result = prime * result + ((criterion == null) ? 0 : criterion.hashCode());
+        result = prime * result + System.identityHashCode(criterion);
         result = prime * result + ((value == null) ? 0 : value.hashCode());
         return result;
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
+    protected boolean equalsStructurally(Clause obj) {
         if (!(obj instanceof CriterionClause))
             return false;
         CriterionClause other = (CriterionClause) obj;
-        if (criterion == null) {
-            if (other.criterion != null)
-                return false;
-        } else if (!criterion.equals(other.criterion))
+        if (criterion != other.criterion)
             return false;
         if (value == null) {
             if (other.value != null)
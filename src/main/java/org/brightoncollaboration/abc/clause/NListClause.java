@@ -64,7 +64,7 @@ public class NListClause extends Clause {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         final int prime = 43;
         int result = 4;
         result = prime * result + ((clauses == null) ? 0 : clauses.hashCode());
@@ -74,9 +74,7 @@ public class NListClause extends Clause {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
+    protected boolean equalsStructurally(Clause obj) {
         if (!(obj instanceof NListClause))
             return false;
         NListClause other = (NListClause) obj;
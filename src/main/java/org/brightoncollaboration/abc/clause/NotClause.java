@@ -48,7 +48,7 @@ public class NotClause extends Clause {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         final int prime = 47;
         int result = 5;
         result = prime * result + ((clause == null) ? 0 : clause.hashCode());
@@ -56,9 +56,7 @@ public class NotClause extends Clause {
     }
 
     @Override
-    public boolean equals(Object obj) {
-        if (this == obj)
-            return true;
+    protected boolean equalsStructurally(Clause obj) {
         if (!(obj instanceof NotClause))
             return false;
         NotClause other = (NotClause) obj;
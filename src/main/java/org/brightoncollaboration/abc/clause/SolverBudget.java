@@ -0,0 +1,192 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.clause;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * Limits on a single satisfiability test of Clause.isSatisfiable: the wall
+ * clock time of the solver, the number of its conflicts and the number of
+ * clauses of the CNF, which is estimated before the conversion (see
+ * CNFEncoding.estimateSize). A limit of 0 means no limit. Exceeding a limit
+ * throws a BudgetExceededException, which is a TimeoutException.
+ *
+ * Without a time limit, the default timeout of sat4j applies. A test in an
+ * interrupted thread is stopped, see interrupt.
+ */
+public class SolverBudget {
+
+    public static final SolverBudget UNLIMITED = new SolverBudget(0, 0, 0);
+
+    // Expires the solvers when there is also a limit of conflicts, because
+    // sat4j only supports one kind of timeout at once
+    private static final Timer TIMER = new Timer("SolverBudget", true);
+
+    // The solvers by the threads running them, see interrupt
+    private static final ConcurrentMap<Thread, ISolver> RUNNING = new ConcurrentHashMap<Thread, ISolver>();
+
+    // How often an interrupted solver is expired again, see interrupt
+    private static final long INTERRUPT_PERIOD_MILLIS = 10;
+
+    private final long timeoutMillis;
+    private final int maxConflicts;
+    private final long maxClauses;
+
+    public SolverBudget(long timeoutMillis, int maxConflicts, long maxClauses) {
+        if (timeoutMillis < 0 || maxConflicts < 0 || maxClauses < 0)
+            throw new IllegalArgumentException("Negative solver budget");
+        this.timeoutMillis = timeoutMillis;
+        this.maxConflicts = maxConflicts;
+        this.maxClauses = maxClauses;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public int getMaxConflicts() {
+        return maxConflicts;
+    }
+
+    public long getMaxClauses() {
+        return maxClauses;
+    }
+
+    /** Throws if a CNF of the estimated number of clauses exceeds the budget.
+     */
+    public void checkSize(long clauses) throws BudgetExceededException {
+        if (maxClauses != 0 && clauses > maxClauses)
+            throw new BudgetExceededException(BudgetExceededException.Limit.CNF_SIZE,
+                    String.format("CNF of %d clauses exceeds %d", clauses, maxClauses));
+    }
+
+    /** Runs the solver within the time and conflict limits. The solver is
+     *  registered for its thread meanwhile, so that interrupt(thread) can
+     *  stop it.
+     */
+    boolean isSatisfiable(ISolver solver) throws TimeoutException {
+        return isSatisfiable(solver, null);
+    }
+
+    /** Same as isSatisfiable(solver) under the given assumptions (null for
+     *  none), for solvers which are kept across tests (see
+     *  CompiledCaseDefinition). The limits of the budget are set on the
+     *  solver for this test.
+     */
+    public boolean isSatisfiable(ISolver solver, IVecInt assumptions) throws TimeoutException {
+        Thread thread = Thread.currentThread();
+        RUNNING.put(thread, solver);
+        try {
+            if (thread.isInterrupted())
+                throw interrupted();
+            return solve(solver, assumptions);
+        } catch (BudgetExceededException exc) {
+            if (thread.isInterrupted())
+                throw interrupted();
+            throw exc;
+        } finally {
+            RUNNING.remove(thread);
+        }
+    }
+
+    private static boolean search(ISolver solver, IVecInt assumptions) throws TimeoutException {
+        return assumptions == null ? solver.isSatisfiable() : solver.isSatisfiable(assumptions);
+    }
+
+    private boolean solve(final ISolver solver, IVecInt assumptions) throws TimeoutException {
+        if (maxConflicts == 0) {
+            if (timeoutMillis != 0)
+                solver.setTimeoutMs(timeoutMillis);
+            try {
+                return search(solver, assumptions);
+            } catch (TimeoutException exc) {
+                throw new BudgetExceededException(BudgetExceededException.Limit.TIME,
+                        String.format("Solver exceeded %d ms", timeoutMillis != 0 ? timeoutMillis : solver.getTimeout() * 1000L));
+            }
+        }
+        solver.setTimeoutOnConflicts(maxConflicts);
+        final boolean[] expired = { false };
+        TimerTask task = null;
+        if (timeoutMillis != 0) {
+            task = new TimerTask() {
+                public void run() {
+                    synchronized (expired) {
+                        expired[0] = true;
+                    }
+                    solver.expireTimeout();
+                }
+            };
+            TIMER.schedule(task, timeoutMillis);
+        }
+        try {
+            return search(solver, assumptions);
+        } catch (TimeoutException exc) {
+            synchronized (expired) {
+                if (expired[0])
+                    throw new BudgetExceededException(BudgetExceededException.Limit.TIME,
+                            String.format("Solver exceeded %d ms", timeoutMillis));
+            }
+            throw new BudgetExceededException(BudgetExceededException.Limit.CONFLICTS,
+                    String.format("Solver exceeded %d conflicts", maxConflicts));
+        } finally {
+            if (task != null)
+                task.cancel();
+        }
+    }
+
+    private static BudgetExceededException interrupted() {
+        return new BudgetExceededException(BudgetExceededException.Limit.INTERRUPTED, "Solver interrupted");
+    }
+
+    /** Stops the solver currently running in the given thread, which must
+     *  have been interrupted before. The satisfiability test then throws a
+     *  BudgetExceededException with limit INTERRUPTED, as do all further
+     *  tests in the thread while it is interrupted.
+     *
+     *  The solver is registered before it starts, and sat4j resets an
+     *  expired timeout when the search starts. So the solver is expired
+     *  again periodically until it is no longer registered.
+     */
+    public static void interrupt(final Thread thread) {
+        final ISolver solver = RUNNING.get(thread);
+        if (solver == null)
+            return;
+        solver.expireTimeout();
+        TIMER.schedule(new TimerTask() {
+            public void run() {
+                if (RUNNING.get(thread) == solver)
+                    solver.expireTimeout();
+                else
+                    cancel();
+            }
+        }, INTERRUPT_PERIOD_MILLIS, INTERRUPT_PERIOD_MILLIS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SolverBudget(timeout=%dms, conflicts=%d, clauses=%d)", timeoutMillis, maxConflicts, maxClauses);
+    }
+}
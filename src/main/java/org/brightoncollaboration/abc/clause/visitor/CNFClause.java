@@ -21,10 +21,8 @@ package org.brightoncollaboration.abc.clause.visitor;
 
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import org.brightoncollaboration.abc.Criterion;
 
 /** Represents a disjunction of CNFLiterals.
  */
@@ -60,7 +58,7 @@ public class CNFClause {
             return false;
     }
 
-    public int[] toInts(Map<Criterion, Integer> indices) {
+    public int[] toInts(VariableIndex indices) {
         int[] result = new int[literals.size()];
         int index = 0;
         for (CNFLiteral literal : literals)
@@ -27,13 +27,21 @@ import java.util.Set;
  */
 public class CNFConjunction {
     private Set<CNFClause> clauses;
+    private int auxiliaries;
     
     public CNFConjunction() {
     	this.clauses = new HashSet<CNFClause>();
     }
 
     public CNFConjunction(Set<CNFClause> clauses) {
+        this(clauses, 0);
+    }
+
+    /** @param auxiliaries the number of auxiliary variables used in clauses
+     */
+    public CNFConjunction(Set<CNFClause> clauses, int auxiliaries) {
         this.clauses = clauses;
+        this.auxiliaries = auxiliaries;
     }
 
     public static CNFConjunction singleton(CNFClause clause) {
@@ -48,6 +56,10 @@ public class CNFConjunction {
         this.clauses = clauses;
     }
 
+    public int getAuxiliaries() {
+        return auxiliaries;
+    }
+
     @Override
     public int hashCode() {
         return clauses.hashCode();
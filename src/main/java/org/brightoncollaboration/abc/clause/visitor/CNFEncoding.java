@@ -0,0 +1,82 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause.visitor;
+
+import org.brightoncollaboration.abc.clause.Clause;
+
+/**
+ * The available conversions of a clause in NNF to CNF.
+ */
+public enum CNFEncoding {
+
+    /** Distributes disjunctions over conjunctions, see ConjunctiveNormalForm.
+     *  The result is equivalent but might grow exponentially.
+     */
+    DISTRIBUTIVE {
+        public CNFConjunction encode(Clause clause) {
+            return clause.acceptVisitor(new ConjunctiveNormalForm());
+        }
+
+        public long estimateSize(Clause clause) {
+            return clause.acceptVisitor(new CNFSizeEstimator());
+        }
+    },
+    /** Introduces auxiliary variables, see TseitinNormalForm. The result is
+     *  only equisatisfiable.
+     */
+    TSEITIN {
+        public CNFConjunction encode(Clause clause) {
+            return TseitinNormalForm.convert(clause);
+        }
+
+        public long estimateSize(Clause clause) {
+            CNFSizeEstimator estimator = new CNFSizeEstimator();
+            clause.acceptVisitor(estimator);
+            return estimator.getTseitinSize();
+        }
+    },
+    /** Uses TSEITIN if the result of DISTRIBUTIVE would be larger.
+     */
+    AUTOMATIC {
+        public CNFConjunction encode(Clause clause) {
+            CNFSizeEstimator estimator = new CNFSizeEstimator();
+            long distributiveSize = clause.acceptVisitor(estimator);
+            if (distributiveSize > estimator.getTseitinSize())
+                return TSEITIN.encode(clause);
+            else
+                return DISTRIBUTIVE.encode(clause);
+        }
+
+        public long estimateSize(Clause clause) {
+            CNFSizeEstimator estimator = new CNFSizeEstimator();
+            long distributiveSize = clause.acceptVisitor(estimator);
+            return Math.min(distributiveSize, estimator.getTseitinSize());
+        }
+    };
+
+    /** Converts a clause in NNF to CNF.
+     */
+    public abstract CNFConjunction encode(Clause clause);
+
+    /** Estimates the number of clauses of encode(clause) without computing
+     *  it, see CNFSizeEstimator.
+     */
+    public abstract long estimateSize(Clause clause);
+}
@@ -19,20 +19,33 @@
 
 package org.brightoncollaboration.abc.clause.visitor;
 
-import java.util.Map;
-
 import org.brightoncollaboration.abc.Criterion;
 
+/** A possibly negated variable of a CNF. Variables are either criteria or
+ *  auxiliary variables which are introduced by an encoding (see
+ *  TseitinNormalForm) and which are numbered from 1.
+ */
 public class CNFLiteral {
 
     private final Criterion criterion;
+    private final int auxiliary;
     private final boolean positive;
 
     public CNFLiteral(Criterion criterion, boolean positive) {
+        this(criterion, 0, positive);
+    }
+
+    private CNFLiteral(Criterion criterion, int auxiliary, boolean positive) {
         this.criterion = criterion;
+        this.auxiliary = auxiliary;
         this.positive = positive;
     }
 
+    public static CNFLiteral auxiliary(int auxiliary, boolean positive) {
+        assert auxiliary > 0;
+        return new CNFLiteral(null, auxiliary, positive);
+    }
+
     public boolean getPositive() {
         return positive;
     }
@@ -41,32 +54,52 @@ public class CNFLiteral {
         return criterion;
     }
 
+    public boolean isAuxiliary() {
+        return criterion == null;
+    }
+
+    public int getAuxiliary() {
+        return auxiliary;
+    }
+
+    public CNFLiteral negate() {
+        return new CNFLiteral(criterion, auxiliary, !positive);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if(obj.getClass() == CNFLiteral.class) {
             CNFLiteral literal = (CNFLiteral) obj;
-            return positive == literal.positive && criterion.equals(literal.criterion);
+            if (positive != literal.positive || auxiliary != literal.auxiliary)
+                return false;
+            return criterion == null ? literal.criterion == null : criterion.equals(literal.criterion);
         } else
             return false;
     }
 
     @Override
     public int hashCode() {
-        return 2 * criterion.hashCode() + (positive ? 0 : 1);
+        int variable = criterion == null ? 31 * auxiliary : criterion.hashCode();
+        return 2 * variable + (positive ? 0 : 1);
     }
 
     @Override
     public String toString() {
+        String name = criterion == null ? "#" + auxiliary : criterion.getShortName();
         if (positive)
-            return criterion.getShortName();
+            return name;
         else
-            return "-" + criterion.getShortName();
+            return "-" + name;
     }
 
-    public int toInt(Map<Criterion, Integer> indices) {
+    /** The auxiliary variables are numbered after the criteria in indices.
+     */
+    public int toInt(VariableIndex indices) {
+        int index = criterion == null ? indices.size() + auxiliary : indices.get(criterion);
+        assert index != 0 : criterion;
         if (positive)
-            return indices.get(criterion);
+            return index;
         else
-            return -indices.get(criterion);
+            return -index;
     }
 }
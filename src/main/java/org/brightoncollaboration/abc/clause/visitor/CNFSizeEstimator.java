@@ -0,0 +1,153 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause.visitor;
+
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+
+/**
+ * Estimates the number of clauses of the CNF of a clause in NNF without
+ * computing it. The visitor yields the estimation for ConjunctiveNormalForm
+ * and accumulates the one for TseitinNormalForm, which is available by
+ * getTseitinSize() after the visit.
+ *
+ * All numbers saturate at Long.MAX_VALUE.
+ */
+public class CNFSizeEstimator implements Visitor<Long> {
+
+    private long tseitinSize = 1; // The unit clause of the root literal
+
+    public long getTseitinSize() {
+        return tseitinSize;
+    }
+
+    public Long visitConstant(ConstantClause c) {
+        tseitinSize = sum(tseitinSize, 1);
+        return c.getValue() ? 0L : 1L;
+    }
+
+    public Long visitCriterion(CriterionClause c) {
+        return 1L;
+    }
+
+    public Long visitNot(NotClause c) {
+        throw new Error("Clause must be in NNF before estimating the CNF");
+    }
+
+    public Long visitAnd(AndClause c) {
+        long size = 0;
+        for (Clause subClause : c.getClauses())
+            size = sum(size, subClause.acceptVisitor(this));
+        tseitinSize = sum(tseitinSize, c.getClauses().size() + 1);
+        return size;
+    }
+
+    /** The distributive conversion of (n ≤ c_1, ..., c_m) is the disjunction of
+     *  all conjunctions of n subclauses, ie a product of sums.
+     */
+    public Long visitNList(NListClause c) {
+        int size = c.getClauses().size();
+        int number = c.getNumber();
+        long sum = 0;
+        long product = 1;
+        for (Clause subClause : c.getClauses()) {
+            long subSize = subClause.acceptVisitor(this);
+            sum = sum(sum, subSize);
+            product = product(product, subSize);
+        }
+        long average = size == 0 ? 0 : (sum + size - 1) / size;
+        switch (c.getRelation()) {
+            case AT_LEAST:
+                tseitinSize = sum(tseitinSize, atLeastTseitin(number, size));
+                return atLeastDistributive(number, size, average, product);
+            case AT_MOST:
+                tseitinSize = sum(tseitinSize, atLeastTseitin(size - number, size));
+                return atLeastDistributive(size - number, size, average, product);
+            case EXACTLY:
+                tseitinSize = sum(tseitinSize, sum(sum(atLeastTseitin(number, size), atLeastTseitin(size - number, size)), 3));
+                if (number < 0 || number > size)
+                    return 1L;
+                return power(sum, binomial(size, number));
+            default:
+                return null; // Should be recognized as impossible by the compiler
+        }
+    }
+
+    private static long atLeastDistributive(int number, int size, long average, long product) {
+        if (number <= 0)
+            return 0;
+        if (number > size)
+            return 1;
+        if (number == 1)
+            return product;
+        return power(product(number, average), binomial(size, number));
+    }
+
+    /** Four clauses per cell of the sequential counter.
+     */
+    private static long atLeastTseitin(int number, int size) {
+        if (number <= 0 || number > size)
+            return 1;
+        if (number == 1 || number == size)
+            return size + 1;
+        return product(4L * number, size - number + 1);
+    }
+
+    static long binomial(int n, int k) {
+        if (k < 0 || k > n)
+            return 0;
+        k = Math.min(k, n - k);
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            if (result > Long.MAX_VALUE / (n - k + i))
+                return Long.MAX_VALUE;
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    static long sum(long a, long b) {
+        long result = a + b;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    static long product(long a, long b) {
+        if (a == 0 || b == 0)
+            return 0;
+        if (a > Long.MAX_VALUE / b)
+            return Long.MAX_VALUE;
+        return a * b;
+    }
+
+    static long power(long base, long exponent) {
+        if (exponent == 0 || base == 1)
+            return 1;
+        if (base == 0)
+            return 0;
+        long result = 1;
+        for (long i = 0; i < exponent && result != Long.MAX_VALUE; i++)
+            result = product(result, base);
+        return result;
+    }
+}
@@ -25,6 +25,7 @@ import java.util.List;
 import org.brightoncollaboration.abc.Value;
 import org.brightoncollaboration.abc.clause.AndClause;
 import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ClauseFactory;
 import org.brightoncollaboration.abc.clause.ConstantClause;
 import org.brightoncollaboration.abc.clause.CriterionClause;
 import org.brightoncollaboration.abc.clause.NListClause;
@@ -59,10 +60,10 @@ public class ClauseSimplifier implements Visitor<Clause> {
         if (subClause instanceof CriterionClause) {
             CriterionClause criterionClause = (CriterionClause) subClause;
             if (criterionClause.getValue() != Value.UNDEFINED)
-                return new CriterionClause(criterionClause.getCriterion(), criterionClause.getValue().invert());
+                return ClauseFactory.criterion(criterionClause.getCriterion(), criterionClause.getValue().invert());
         }
 
-        return new NotClause(subClause);
+        return ClauseFactory.not(subClause);
     }
 
     public Clause visitAnd(AndClause andClause) {
@@ -86,7 +87,7 @@ public class ClauseSimplifier implements Visitor<Clause> {
         else if (size == 1)
             return newClauses.get(0);
         else
-            return new AndClause(newClauses);
+            return ClauseFactory.and(newClauses);
     }
 
     public Clause visitNList(NListClause nListClause) {
@@ -116,9 +117,9 @@ public class ClauseSimplifier implements Visitor<Clause> {
                  *   n = c₁, …, c_n ⇒ c₁ ∧ … ∧ c_n
                  */
                 if (newNumber == newClauses.size() && (rel == Relation.AT_LEAST || rel == Relation.EXACTLY)) {
-                    return new AndClause(newClauses).acceptVisitor(this);
+                    return ClauseFactory.and(newClauses).acceptVisitor(this);
                 } else
-                    return new NListClause(rel, newNumber, newClauses);
+                    return ClauseFactory.nlist(rel, newNumber, newClauses);
             } else
                 return ConstantClause.FALSE;
         }
@@ -159,14 +159,21 @@ public class ConjunctiveNormalForm implements Visitor<CNFConjunction> {
     }
     
     private CNFConjunction exactly(int number, List<Clause> clauses) {
+    	// Subsets of positions, such that equal subclauses are told apart
+    	List<Integer> positions = new LinkedList<Integer>();
+    	for (int i = 0; i < clauses.size(); i++)
+    		positions.add(i);
+
     	List<Clause> subClauses = new LinkedList<Clause>();
-    	for (List<Clause> psi : powerSetN(number, clauses)) {
+    	for (List<Integer> psi : powerSetN(number, positions)) {
     		
-    		List<Clause> phiMinusPsi = new LinkedList<Clause>(clauses);
-    		phiMinusPsi.removeAll(psi);
+    		List<Clause> psiClauses = new LinkedList<Clause>();
+    		List<Clause> phiMinusPsi = new LinkedList<Clause>();
+    		for (int i = 0; i < clauses.size(); i++)
+    			(psi.contains(i) ? psiClauses : phiMinusPsi).add(clauses.get(i));
     		
     		List<Clause> conjunction = new LinkedList<Clause>();
-    		conjunction.addAll(psi);
+    		conjunction.addAll(psiClauses);
     		conjunction.addAll(visitClauseList(new NegationNormalForm(), negateList(phiMinusPsi)));
     		
     		subClauses.add(new AndClause(conjunction));
@@ -188,7 +195,11 @@ public class ConjunctiveNormalForm implements Visitor<CNFConjunction> {
 
         List<List<T>> result = new LinkedList<List<T>>();
 
-        if (number == 1) {
+        if (number == 0) {
+
+            result.add(new LinkedList<T>()); // The empty subset
+
+        } else if (number == 1) {
 
             while (iterator.hasNext()) {
                 List<T> singleton = new LinkedList<T>();
@@ -0,0 +1,177 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.clause.visitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ClauseFactory;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.Relation;
+
+/**
+ * Fills criteria with the information from an event and simplifies in a
+ * single pass. The result is the same interned clause as that of FillEvent
+ * followed by ClauseSimplifier, but
+ *
+ * - an AND stops at the first subclause reducing to FALSE and an NLIST as
+ *   soon as the relation is decided, whatever the remaining subclauses
+ *   reduce to, and
+ * - a subclause which is not changed is returned itself, so no lists or
+ *   clauses are built for the unchanged parts of the clause.
+ */
+public class FillAndSimplify implements Visitor<Clause> {
+
+    private final Event event;
+
+    public FillAndSimplify(Event event) {
+        this.event = event;
+    }
+
+    public Clause visitConstant(ConstantClause c) {
+        return c;
+    }
+
+    public Clause visitCriterion(CriterionClause c) {
+        Value value = event.valueOfCriterion(c.getCriterion());
+        if (c.getValue() == value)
+            return ConstantClause.TRUE;
+        else if (value == Value.UNDEFINED)
+            return c;
+        else
+            return ConstantClause.FALSE;
+    }
+
+    public Clause visitNot(NotClause c) {
+        Clause sub = c.getClause().acceptVisitor(this);
+        if (sub == ConstantClause.TRUE)
+            return ConstantClause.FALSE;
+        if (sub == ConstantClause.FALSE)
+            return ConstantClause.TRUE;
+        if (sub instanceof CriterionClause) {
+            CriterionClause criterionClause = (CriterionClause) sub;
+            if (criterionClause.getValue() != Value.UNDEFINED)
+                return ClauseFactory.criterion(criterionClause.getCriterion(), criterionClause.getValue().invert());
+        }
+        if (sub == c.getClause())
+            return ClauseFactory.intern(c);
+        return ClauseFactory.not(sub);
+    }
+
+    public Clause visitAnd(AndClause c) {
+        List<Clause> clauses = c.getClauses();
+        List<Clause> newClauses = null; // Only built when some subclause changes
+        for (int i = 0; i < clauses.size(); i++) {
+            Clause sub = clauses.get(i);
+            Clause d = sub.acceptVisitor(this);
+            if (d == ConstantClause.FALSE)
+                return ConstantClause.FALSE;
+            if (newClauses == null) {
+                if (d == sub && d != ConstantClause.TRUE && !(d instanceof AndClause))
+                    continue;
+                newClauses = new ArrayList<Clause>(clauses.subList(0, i));
+            }
+            if (d instanceof AndClause)
+                newClauses.addAll(((AndClause) d).getClauses());
+            else if (d != ConstantClause.TRUE)
+                newClauses.add(d);
+        }
+        List<Clause> res = newClauses == null ? clauses : newClauses;
+        if (res.size() == 0)
+            return ConstantClause.TRUE;
+        else if (res.size() == 1)
+            return res.get(0);
+        else if (newClauses == null)
+            return ClauseFactory.intern(c);
+        else
+            return ClauseFactory.and(newClauses);
+    }
+
+    public Clause visitNList(NListClause c) {
+        List<Clause> clauses = c.getClauses();
+        Relation rel = c.getRelation();
+        int number = c.getNumber();
+        int topCount = 0; // Number of subclauses reducing to TRUE
+        List<Clause> newClauses = null; // Simplified, nontrivial subclauses, only built when some subclause changes
+        int restCount = 0; // Number of simplified, nontrivial subclauses
+        for (int i = 0; i < clauses.size(); i++) {
+            Clause sub = clauses.get(i);
+            Clause d = sub.acceptVisitor(this);
+            boolean trivial = d == ConstantClause.TRUE || d == ConstantClause.FALSE;
+            if (newClauses == null && (d != sub || trivial))
+                newClauses = new ArrayList<Clause>(clauses.subList(0, i));
+            if (d == ConstantClause.TRUE)
+                topCount++;
+            else if (d != ConstantClause.FALSE) {
+                restCount++;
+                if (newClauses != null)
+                    newClauses.add(d);
+            }
+            Clause decided = decided(rel, number, topCount, restCount, clauses.size() - i - 1);
+            if (decided != null)
+                return decided;
+        }
+        if (clauses.isEmpty()) {
+            Clause decided = decided(rel, number, 0, 0, 0);
+            if (decided != null)
+                return decided;
+        }
+        int newNumber = number - topCount;
+        if (newNumber == restCount && (rel == Relation.AT_LEAST || rel == Relation.EXACTLY))
+            return ClauseFactory.and(newClauses == null ? clauses : newClauses).acceptVisitor(new ClauseSimplifier());
+        if (newClauses == null)
+            return ClauseFactory.intern(c);
+        return ClauseFactory.nlist(rel, newNumber, newClauses);
+    }
+
+    /** TRUE or FALSE if the relation holds or fails whatever the remaining
+     *  subclauses reduce to (see Relation.satisfies and possible), null
+     *  otherwise.
+     */
+    private static Clause decided(Relation rel, int number, int tops, int rest, int remaining) {
+        switch (rel) {
+        case AT_LEAST:
+            if (number <= tops)
+                return ConstantClause.TRUE;
+            if (number - tops > rest + remaining)
+                return ConstantClause.FALSE;
+            break;
+        case EXACTLY:
+            if (remaining == 0 && rest == 0 && tops == number)
+                return ConstantClause.TRUE;
+            if (tops > number || number - tops > rest + remaining)
+                return ConstantClause.FALSE;
+            break;
+        case AT_MOST:
+            if (tops + rest + remaining <= number)
+                return ConstantClause.TRUE;
+            if (tops > number)
+                return ConstantClause.FALSE;
+            break;
+        }
+        return null;
+    }
+}
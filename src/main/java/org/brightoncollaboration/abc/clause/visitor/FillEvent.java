@@ -27,6 +27,7 @@ import org.brightoncollaboration.abc.Event;
 import org.brightoncollaboration.abc.Value;
 import org.brightoncollaboration.abc.clause.AndClause;
 import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ClauseFactory;
 import org.brightoncollaboration.abc.clause.ConstantClause;
 import org.brightoncollaboration.abc.clause.CriterionClause;
 import org.brightoncollaboration.abc.clause.NListClause;
@@ -58,16 +59,16 @@ public class FillEvent implements Visitor<Clause> {
     }
 
     public Clause visitNot(NotClause notClause) {
-        return new NotClause(notClause.getClause().acceptVisitor(this));
+        return ClauseFactory.not(notClause.getClause().acceptVisitor(this));
     }
 
     public Clause visitAnd(AndClause andClause) {
         List<Clause> newClauses = visitClauseList(this, andClause.getClauses());
-        return new AndClause(newClauses);
+        return ClauseFactory.and(newClauses);
     }
 
     public Clause visitNList(NListClause nListClause) {
         List<Clause> newClauses = visitClauseList(this, nListClause.getClauses());
-        return new NListClause(nListClause.getRelation(), nListClause.getNumber(), newClauses);
+        return ClauseFactory.nlist(nListClause.getRelation(), nListClause.getNumber(), newClauses);
     }
 }
@@ -27,6 +27,7 @@ import java.util.List;
 
 import org.brightoncollaboration.abc.clause.AndClause;
 import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ClauseFactory;
 import org.brightoncollaboration.abc.clause.ConstantClause;
 import org.brightoncollaboration.abc.clause.CriterionClause;
 import org.brightoncollaboration.abc.clause.NListClause;
@@ -48,7 +49,7 @@ class NegateOneVisitor implements Visitor<Clause> {
     }
 
     public Clause visitCriterion(CriterionClause c) {
-        return new CriterionClause(c.getCriterion(), c.getValue().invert());
+        return ClauseFactory.criterion(c.getCriterion(), c.getValue().invert());
     }
 
     public Clause visitNot(NotClause c) {
@@ -59,7 +60,7 @@ class NegateOneVisitor implements Visitor<Clause> {
     public Clause visitAnd(AndClause c) {
         List<Clause> negations = negateList(c.getClauses());
         List<Clause> subClauses = visitClauseList(new NegationNormalForm(), negations);
-        return new NListClause(Relation.AT_LEAST, 1, subClauses);
+        return ClauseFactory.nlist(Relation.AT_LEAST, 1, subClauses);
     }
 
     public Clause visitNList(NListClause c) {
@@ -79,22 +80,22 @@ class NegateOneVisitor implements Visitor<Clause> {
         	if (number == 1) {
         		List<Clause> negations = negateList(c.getClauses());
         		List<Clause> subClauses = visitClauseList(new NegationNormalForm(), negations);
-        		return new AndClause(subClauses);
+        		return ClauseFactory.and(subClauses);
         	} else
-        		return new NListClause(Relation.AT_MOST, number - 1, newClauses);
+        		return ClauseFactory.nlist(Relation.AT_MOST, number - 1, newClauses);
         }
         else if (rel == Relation.AT_MOST)
-            return new NListClause(Relation.AT_LEAST, number + 1, newClauses);
+            return ClauseFactory.nlist(Relation.AT_LEAST, number + 1, newClauses);
         else {
             assert(rel == Relation.EXACTLY);
             if (number == 0)
-                return new NListClause(Relation.AT_LEAST, 1, newClauses);
+                return ClauseFactory.nlist(Relation.AT_LEAST, 1, newClauses);
             else {
                 List<Clause> orSubClauses =
                         Arrays.asList(
-                                (Clause) new NListClause(Relation.AT_LEAST, number + 1, newClauses),
-                                (Clause) new NListClause(Relation.AT_MOST, number - 1, newClauses));
-                return new NListClause(Relation.AT_LEAST, 1, orSubClauses);
+                                ClauseFactory.nlist(Relation.AT_LEAST, number + 1, newClauses),
+                                ClauseFactory.nlist(Relation.AT_MOST, number - 1, newClauses));
+                return ClauseFactory.nlist(Relation.AT_LEAST, 1, orSubClauses);
             }
         } 
     }
@@ -119,12 +120,12 @@ public class NegationNormalForm implements Visitor<Clause> {
 
     public Clause visitAnd(AndClause c) {
         List<Clause> newClauses = visitClauseList(this, c.getClauses());
-        return new AndClause(newClauses);
+        return ClauseFactory.and(newClauses);
     }
 
     public Clause visitNList(NListClause c) {
         List<Clause> newClauses = visitClauseList(this, c.getClauses());
-        return new NListClause(c.getRelation(), c.getNumber(), newClauses);
+        return ClauseFactory.nlist(c.getRelation(), c.getNumber(), newClauses);
     }
 
 }
@@ -0,0 +1,236 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause.visitor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+
+/**
+ * Visitor of org.brightoncollaboration.abc.clause.Clause for the conversion to
+ * an equisatisfiable Conjunctive Normal Form in the style of Tseitin.
+ *
+ * Every subclause is represented by an auxiliary variable x which is defined
+ * by clauses x ↔ subclause over the representatives of its subclauses. In
+ * contrast to ConjunctiveNormalForm the size of the result stays linear in the
+ * size of the clause for conjunctions and disjunctions, and nlists are encoded
+ * by sequential counters of polynomial size.
+ *
+ * Since the definitions are equivalences, negations need no NNF and a
+ * criterion clause ?c is represented by an auxiliary variable which stands for
+ * "c is unknown" (see getUnknown).
+ *
+ * The visitor returns the literal representing the visited clause and
+ * collects the defining clauses of all visited clauses (see getConjunction).
+ */
+public class TseitinNormalForm implements Visitor<CNFLiteral> {
+
+    private final Set<CNFClause> clauses = new HashSet<CNFClause>();
+    private final Map<Criterion, CNFLiteral> unknowns = new HashMap<Criterion, CNFLiteral>();
+    private int auxiliaries = 0;
+
+    /** Converts a clause to an equisatisfiable CNF.
+     */
+    public static CNFConjunction convert(Clause clause) {
+        TseitinNormalForm tseitin = new TseitinNormalForm();
+        tseitin.add(clause.acceptVisitor(tseitin));
+        return tseitin.getConjunction();
+    }
+
+    /** The definitions of all visited clauses. The literals returned by the
+     *  visits are not asserted.
+     */
+    public CNFConjunction getConjunction() {
+        return new CNFConjunction(clauses, auxiliaries);
+    }
+
+    /** The auxiliary variable representing ?criterion or null, if that
+     *  criterion clause did not occur.
+     */
+    public CNFLiteral getUnknown(Criterion criterion) {
+        return unknowns.get(criterion);
+    }
+
+    public CNFLiteral visitConstant(ConstantClause c) {
+        return constant(c.getValue());
+    }
+
+    public CNFLiteral visitCriterion(CriterionClause c) {
+        if (c.getValue() == Value.UNDEFINED) {
+            if (!unknowns.containsKey(c.getCriterion()))
+                unknowns.put(c.getCriterion(), fresh());
+            return unknowns.get(c.getCriterion());
+        }
+        return new CNFLiteral(c.getCriterion(), c.getValue().toBoolean());
+    }
+
+    public CNFLiteral visitNot(NotClause c) {
+        return c.getClause().acceptVisitor(this).negate();
+    }
+
+    public CNFLiteral visitAnd(AndClause c) {
+        List<CNFLiteral> literals = visitClauses(c.getClauses());
+        if (literals.size() == 1)
+            return literals.get(0);
+        return atLeast(literals.size(), literals);
+    }
+
+    public CNFLiteral visitNList(NListClause c) {
+        List<CNFLiteral> literals = visitClauses(c.getClauses());
+        int number = c.getNumber();
+        switch (c.getRelation()) {
+            case AT_LEAST:
+                return atLeast(number, literals);
+            case AT_MOST:
+                return atLeast(literals.size() - number, negate(literals));
+            case EXACTLY:
+                CNFLiteral x = fresh();
+                CNFLiteral atLeast = atLeast(number, literals);
+                CNFLiteral atMost = atLeast(literals.size() - number, negate(literals));
+                add(x.negate(), atLeast);
+                add(x.negate(), atMost);
+                add(x, atLeast.negate(), atMost.negate());
+                return x;
+            default:
+                return null; // Should be recognized as impossible by the compiler
+        }
+    }
+
+    /**
+     * Introduces x ↔ (at least number of literals) by a sequential counter:
+     * after the i-th literal, counter[j] represents "at least j of the first i
+     * literals hold", defined by counter'[j] ↔ counter[j] ∨ (counter[j-1] ∧ l_i).
+     * Counters which cannot reach number anymore are omitted, so the encoding
+     * needs O(number · (size - number + 1)) clauses and auxiliary variables.
+     */
+    private CNFLiteral atLeast(int number, List<CNFLiteral> literals) {
+        if (number <= 0)
+            return constant(true);
+        if (number > literals.size())
+            return constant(false);
+
+        if (number == 1)
+            return or(literals);
+        if (number == literals.size())
+            return and(literals);
+
+        int size = literals.size();
+        CNFLiteral[] counter = new CNFLiteral[number + 1]; // null for counters that are false yet
+        int seen = 0;
+        for (CNFLiteral literal : literals) {
+            seen++;
+            CNFLiteral[] next = new CNFLiteral[number + 1];
+            for (int j = Math.max(1, number - (size - seen)); j <= Math.min(seen, number); j++)
+                next[j] = count(counter[j], j == 1 ? null : counter[j - 1], literal);
+            counter = next;
+        }
+        return counter[number];
+    }
+
+    private CNFLiteral and(List<CNFLiteral> literals) {
+        CNFLiteral x = fresh();
+        List<CNFLiteral> clause = negate(literals);
+        clause.add(x);
+        add(clause);
+        for (CNFLiteral literal : literals)
+            add(x.negate(), literal);
+        return x;
+    }
+
+    private CNFLiteral or(List<CNFLiteral> literals) {
+        CNFLiteral x = fresh();
+        List<CNFLiteral> clause = new LinkedList<CNFLiteral>(literals);
+        clause.add(x.negate());
+        add(clause);
+        for (CNFLiteral literal : literals)
+            add(x, literal.negate());
+        return x;
+    }
+
+    /**
+     * Introduces x ↔ stay ∨ (carry ∧ literal), where stay == null stands for
+     * FALSE and carry == null for TRUE.
+     */
+    private CNFLiteral count(CNFLiteral stay, CNFLiteral carry, CNFLiteral literal) {
+        if (stay == null && carry == null)
+            return literal;
+        CNFLiteral x = fresh();
+        if (stay == null) {
+            add(x.negate(), carry);
+            add(x.negate(), literal);
+            add(x, carry.negate(), literal.negate());
+        } else if (carry == null) {
+            add(x.negate(), stay, literal);
+            add(x, stay.negate());
+            add(x, literal.negate());
+        } else {
+            add(x.negate(), stay, carry);
+            add(x.negate(), stay, literal);
+            add(x, stay.negate());
+            add(x, carry.negate(), literal.negate());
+        }
+        return x;
+    }
+
+    private CNFLiteral constant(boolean value) {
+        CNFLiteral x = fresh();
+        add(value ? x : x.negate());
+        return x;
+    }
+
+    private CNFLiteral fresh() {
+        return CNFLiteral.auxiliary(++auxiliaries, true);
+    }
+
+    private List<CNFLiteral> visitClauses(List<Clause> subClauses) {
+        List<CNFLiteral> literals = new LinkedList<CNFLiteral>();
+        for (Clause subClause : subClauses)
+            literals.add(subClause.acceptVisitor(this));
+        return literals;
+    }
+
+    private static List<CNFLiteral> negate(List<CNFLiteral> literals) {
+        List<CNFLiteral> negations = new LinkedList<CNFLiteral>();
+        for (CNFLiteral literal : literals)
+            negations.add(literal.negate());
+        return negations;
+    }
+
+    private void add(CNFLiteral... literals) {
+        add(Arrays.asList(literals));
+    }
+
+    private void add(List<CNFLiteral> literals) {
+        clauses.add(new CNFClause(new HashSet<CNFLiteral>(literals)));
+    }
+}
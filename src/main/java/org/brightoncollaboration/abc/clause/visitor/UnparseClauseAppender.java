@@ -0,0 +1,107 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.clause.visitor;
+
+import java.util.List;
+
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+
+/** Appends the same string as UnparseClause to a StringBuilder, without
+ *  building intermediate strings for the subclauses.
+ */
+public class UnparseClauseAppender implements Visitor<StringBuilder> {
+
+    private final StringBuilder sb;
+
+    public UnparseClauseAppender(StringBuilder sb) {
+        this.sb = sb;
+    }
+
+    public static StringBuilder append(StringBuilder sb, Clause c) {
+        return c.acceptVisitor(new UnparseClauseAppender(sb));
+    }
+
+    private void term(Clause c) {
+        if (c instanceof ConstantClause || c instanceof CriterionClause)
+            c.acceptVisitor(this);
+        else {
+            sb.append('(');
+            c.acceptVisitor(this);
+            sb.append(')');
+        }
+    }
+
+    private void terms(List<Clause> clauses, String sep, String empty) {
+        if (clauses.isEmpty()) {
+            sb.append(empty);
+            return;
+        }
+        term(clauses.get(0));
+        for (int i = 1; i < clauses.size(); i++) {
+            sb.append(sep);
+            term(clauses.get(i));
+        }
+    }
+
+    public StringBuilder visitConstant(ConstantClause c) {
+        return sb.append(c.getValue() ? "TRUE" : "NOTAPPLICABLE");
+    }
+
+    public StringBuilder visitCriterion(CriterionClause c) {
+        if (c.getValue() == Value.NEGATIVE)
+            sb.append('!');
+        else if (c.getValue() == Value.UNDEFINED)
+            sb.append('?');
+        return sb.append(c.getCriterion().getShortName());
+    }
+
+    public StringBuilder visitNot(NotClause c) {
+        sb.append("NOT ");
+        term(c.getClause());
+        return sb;
+    }
+
+    public StringBuilder visitAnd(AndClause c) {
+        terms(c.getClauses(), " AND ", "(AND)");
+        return sb;
+    }
+
+    public StringBuilder visitNList(NListClause c) {
+        switch (c.getRelation()) {
+        case AT_LEAST:
+            sb.append("ATLEAST ");
+            break;
+        case EXACTLY:
+            sb.append("EXACTLY ");
+            break;
+        case AT_MOST:
+            sb.append("ATMOST ");
+            break;
+        }
+        sb.append(c.getNumber()).append(" FROM ");
+        terms(c.getClauses(), ", ", "()");
+        return sb;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.Criterion;
+
+/** Numbers criteria as solver variables from 1, in the order they are added.
+ *  Criteria are looked up by their ordinal (see Criterion.Creator) and only
+ *  criteria without an ordinal or with the ordinal of another criterion are
+ *  hashed.
+ */
+public class VariableIndex {
+
+    private Criterion[] criteriaByOrdinal = new Criterion[16];
+    private int[] variablesByOrdinal = new int[16];
+    private Map<Criterion, Integer> others = null;
+    private final List<Criterion> criteria = new ArrayList<Criterion>();
+
+    public VariableIndex() {
+    }
+
+    public VariableIndex(Iterable<Criterion> criteria) {
+        for (Criterion criterion : criteria)
+            add(criterion);
+    }
+
+    /** Returns the variable of the criterion, adding it if necessary.
+     */
+    public int add(Criterion criterion) {
+        int variable = get(criterion);
+        if (variable != 0)
+            return variable;
+        criteria.add(criterion);
+        variable = criteria.size();
+        int ordinal = criterion.getOrdinal();
+        if (ordinal >= criteriaByOrdinal.length) {
+            int length = Math.max(ordinal + 1, 2 * criteriaByOrdinal.length);
+            criteriaByOrdinal = Arrays.copyOf(criteriaByOrdinal, length);
+            variablesByOrdinal = Arrays.copyOf(variablesByOrdinal, length);
+        }
+        if (ordinal >= 0 && criteriaByOrdinal[ordinal] == null) {
+            criteriaByOrdinal[ordinal] = criterion;
+            variablesByOrdinal[ordinal] = variable;
+        } else {
+            if (others == null)
+                others = new HashMap<Criterion, Integer>();
+            others.put(criterion, variable);
+        }
+        return variable;
+    }
+
+    /** The variable of the criterion or 0 if it was not added.
+     */
+    public int get(Criterion criterion) {
+        int ordinal = criterion.getOrdinal();
+        if (ordinal >= 0 && ordinal < criteriaByOrdinal.length && criteriaByOrdinal[ordinal] == criterion)
+            return variablesByOrdinal[ordinal];
+        if (others == null)
+            return 0;
+        Integer variable = others.get(criterion);
+        return variable == null ? 0 : variable;
+    }
+
+    /** The number of criteria, which is also the largest variable.
+     */
+    public int size() {
+        return criteria.size();
+    }
+
+    /** The criteria in the order of their variables.
+     */
+    public List<Criterion> getCriteria() {
+        return Collections.unmodifiableList(criteria);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.tools;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.brightoncollaboration.abc.BatchClassifier;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.visitor.UnparseClauseAppender;
+import org.brightoncollaboration.abc.clause.visitor.Visitor;
+
+/**
+ * Writes one record per event and case definition with the result, the
+ * unparsed preconditions and the missing criteria, i.e. the criteria
+ * occurring in the preconditions, in the order of their first occurrence.
+ *
+ * The records are written straight from the classification, without the
+ * object graph of the XML binding. A writer is a StreamingClassifier.Sink
+ * and writes BatchClassifier results, too. It is not thread-safe.
+ */
+public abstract class ClassificationWriter implements StreamingClassifier.Sink, Flushable, Closeable {
+
+    private final List<String> names;
+    private final StringBuilder unparsed = new StringBuilder();
+    private final Set<Criterion> missing = new LinkedHashSet<Criterion>();
+    private final MissingCriteria collector = new MissingCriteria();
+
+    /** @param caseDefinitionNames the names of the case definitions in the
+     *  order of the classifications of each event.
+     */
+    protected ClassificationWriter(List<String> caseDefinitionNames) {
+        this.names = caseDefinitionNames;
+    }
+
+    public List<String> getCaseDefinitionNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public abstract void write(String uid, String caseDefinitionName, Classification classification) throws IOException;
+
+    public void write(CommentedValue.Event event, List<Classification> classifications) throws IOException {
+        if (classifications.size() != names.size())
+            throw new IllegalArgumentException(String.format("%d classifications for %d case definitions", classifications.size(), names.size()));
+        for (int j = 0; j < classifications.size(); j++)
+            write(event.getUid(), names.get(j), classifications.get(j));
+    }
+
+    /** Writes all classifications of the result, whose case definitions must
+     *  be named by getCaseDefinitionNames.
+     */
+    public void write(BatchClassifier.Result result) throws IOException {
+        for (int i = 0; i < result.size(); i++)
+            write(result.getEvents().get(i), result.getClassifications(i));
+    }
+
+    /** The unparsed clause (see Clause.unparse) or null. The returned
+     *  sequence is reused by the next call.
+     */
+    protected CharSequence unparse(Clause clause) {
+        if (clause == null)
+            return null;
+        unparsed.setLength(0);
+        return UnparseClauseAppender.append(unparsed, clause);
+    }
+
+    /** The criteria occurring in the preconditions of the classification.
+     *  The returned collection is reused by the next call.
+     */
+    protected Collection<Criterion> missingCriteria(Classification classification) {
+        missing.clear();
+        for (Clause precondition : preconditions(classification))
+            if (precondition != null)
+                precondition.acceptVisitor(collector);
+        return missing;
+    }
+
+    protected static Clause[] preconditions(Classification classification) {
+        return new Clause[] { classification.getPrecondition1(), classification.getPrecondition2(), classification.getPrecondition3() };
+    }
+
+    private class MissingCriteria implements Visitor<Void> {
+        public Void visitConstant(ConstantClause c) {
+            return null;
+        }
+        public Void visitCriterion(CriterionClause c) {
+            missing.add(c.getCriterion());
+            return null;
+        }
+        public Void visitNot(NotClause c) {
+            return c.getClause().acceptVisitor(this);
+        }
+        public Void visitAnd(AndClause c) {
+            for (Clause clause : c.getClauses())
+                clause.acceptVisitor(this);
+            return null;
+        }
+        public Void visitNList(NListClause c) {
+            for (Clause clause : c.getClauses())
+                clause.acceptVisitor(this);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.clause.Clause;
+
+import com.csvreader.CsvWriter;
+
+/**
+ * Writes the classifications as CSV with a header row and one record per
+ * event and case definition. The missing criteria are separated by spaces
+ * in a single column, the error reason is empty unless known.
+ */
+public class CsvClassificationWriter extends ClassificationWriter {
+
+    public static final String[] HEADERS = {
+        CsvEventReader.DEFAULT_UID_COLUMN, "caseDefinition", "result", "level", "errorReason",
+        "precondition1", "precondition2", "precondition3", "missingCriteria"
+    };
+
+    private final CsvWriter csv;
+    private final StringBuilder criteria = new StringBuilder();
+
+    public CsvClassificationWriter(Writer writer, List<String> caseDefinitionNames) throws IOException {
+        super(caseDefinitionNames);
+        csv = new CsvWriter(writer, ',');
+        csv.writeRecord(HEADERS);
+    }
+
+    @Override
+    public void write(String uid, String caseDefinitionName, Classification classification) throws IOException {
+        csv.write(uid);
+        csv.write(caseDefinitionName);
+        csv.write(classification.getResult().name());
+        csv.write(classification.getResult().toInt().toString());
+        csv.write(classification.getErrorReason() == null ? "" : classification.getErrorReason().name());
+        for (Clause precondition : preconditions(classification)) {
+            CharSequence unparsed = unparse(precondition);
+            csv.write(unparsed == null ? "" : unparsed.toString());
+        }
+        criteria.setLength(0);
+        for (Criterion criterion : missingCriteria(classification)) {
+            if (criteria.length() > 0)
+                criteria.append(' ');
+            criteria.append(criterion.getShortName());
+        }
+        csv.write(criteria.toString());
+        csv.endRecord();
+    }
+
+    public void flush() throws IOException {
+        csv.flush();
+    }
+
+    public void close() {
+        csv.close();
+    }
+}
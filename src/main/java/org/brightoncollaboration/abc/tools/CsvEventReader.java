@@ -0,0 +1,94 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.tools;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.UserDataException;
+import org.brightoncollaboration.abc.Value;
+
+import com.csvreader.CsvReader;
+
+/**
+ * Reads events from CSV with a header row. The column with the uid header
+ * gives the uid of the event (the record number if there is none) and every
+ * other column which names a criterion gives its values. The headers are
+ * resolved once. The cells are mapped by the literals (see Value.literals),
+ * empty cells are left out of the event.
+ */
+public class CsvEventReader implements EventReader {
+
+    public static final String DEFAULT_UID_COLUMN = "uid";
+
+    private final CsvReader csv;
+    private final Map<String, Value> literals;
+    private final int uidColumn;
+    private final Criterion[] criteria; // Indexed by column, null if the column is not a criterion
+
+    public CsvEventReader(Reader reader, Criterion.Creator creator, Map<String, Value> literals) throws IOException, UserDataException {
+        this(reader, ',', DEFAULT_UID_COLUMN, creator, literals);
+    }
+
+    public CsvEventReader(Reader reader, char delimiter, String uidHeader, Criterion.Creator creator, Map<String, Value> literals) throws IOException, UserDataException {
+        this.csv = new CsvReader(reader, delimiter);
+        this.literals = literals;
+        if (!csv.readHeaders())
+            throw new UserDataException("Missing header row in CSV input");
+        String[] headers = csv.getHeaders();
+        int uidColumn = -1;
+        criteria = new Criterion[headers.length];
+        for (int column = 0; column < headers.length; column++) {
+            String header = headers[column].trim();
+            if (header.equals(uidHeader))
+                uidColumn = column;
+            else
+                criteria[column] = creator.getByShortName(header);
+        }
+        this.uidColumn = uidColumn;
+    }
+
+    public CommentedValue.Event read() throws IOException, UserDataException {
+        if (!csv.readRecord())
+            return null;
+        String uid = uidColumn >= 0 ? csv.get(uidColumn) : Long.toString(csv.getCurrentRecord() + 1);
+        CommentedValue.Event event = new CommentedValue.Event(uid);
+        for (int column = 0; column < criteria.length; column++) {
+            if (criteria[column] == null)
+                continue;
+            String cell = csv.get(column).trim();
+            if (cell.length() == 0)
+                continue;
+            Value value = literals.get(cell);
+            if (value == null)
+                throw new UserDataException("Invalid value \"%s\" for criterion %s in record %d",
+                        cell, criteria[column].getShortName(), csv.getCurrentRecord() + 1);
+            event.addSymptom(criteria[column], new CommentedValue(value));
+        }
+        return event;
+    }
+
+    public void close() {
+        csv.close();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.UserDataException;
+
+/**
+ * Reads events one by one from some input, see StreamingClassifier.
+ */
+public interface EventReader extends Closeable {
+
+    /** The next event or null at the end of the input.
+     */
+    CommentedValue.Event read() throws IOException, UserDataException;
+}
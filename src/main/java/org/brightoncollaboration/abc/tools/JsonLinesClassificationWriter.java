@@ -0,0 +1,110 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.clause.Clause;
+
+/**
+ * Writes the classifications as JSON Lines, one object per line with the
+ * members uid, caseDefinition, result, level, errorReason (only for errors
+ * with a known reason), preconditions (an array of three strings or nulls)
+ * and missingCriteria (an array of short names).
+ */
+public class JsonLinesClassificationWriter extends ClassificationWriter {
+
+    private final Writer writer;
+
+    public JsonLinesClassificationWriter(Writer writer, List<String> caseDefinitionNames) {
+        super(caseDefinitionNames);
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(String uid, String caseDefinitionName, Classification classification) throws IOException {
+        writer.write("{\"uid\":");
+        string(uid);
+        writer.write(",\"caseDefinition\":");
+        string(caseDefinitionName);
+        writer.write(",\"result\":\"");
+        writer.write(classification.getResult().name());
+        writer.write("\",\"level\":");
+        writer.write(classification.getResult().toInt().toString());
+        if (classification.getErrorReason() != null) {
+            writer.write(",\"errorReason\":\"");
+            writer.write(classification.getErrorReason().name());
+            writer.write('"');
+        }
+        writer.write(",\"preconditions\":[");
+        Clause[] preconditions = preconditions(classification);
+        for (int i = 0; i < preconditions.length; i++) {
+            if (i > 0)
+                writer.write(',');
+            string(unparse(preconditions[i]));
+        }
+        writer.write("],\"missingCriteria\":[");
+        boolean first = true;
+        for (Criterion criterion : missingCriteria(classification)) {
+            if (!first)
+                writer.write(',');
+            string(criterion.getShortName());
+            first = false;
+        }
+        writer.write("]}\n");
+    }
+
+    private void string(CharSequence str) throws IOException {
+        if (str == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+            case '"': writer.write("\\\""); break;
+            case '\\': writer.write("\\\\"); break;
+            case '\b': writer.write("\\b"); break;
+            case '\f': writer.write("\\f"); break;
+            case '\n': writer.write("\\n"); break;
+            case '\r': writer.write("\\r"); break;
+            case '\t': writer.write("\\t"); break;
+            default:
+                if (c < 0x20)
+                    writer.write(String.format("\\u%04x", (int) c));
+                else
+                    writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.UserDataException;
+import org.brightoncollaboration.abc.Value;
+
+/**
+ * Reads events from JSON Lines, i.e. one flat JSON object per line. The
+ * member with the uid key gives the uid of the event (the line number if
+ * there is none) and every other member whose key names a criterion gives its
+ * value. Keys are resolved once. String, number and boolean values are mapped
+ * by the literals (see Value.literals), null values are left out of the
+ * event. Blank lines are skipped.
+ */
+public class JsonLinesEventReader implements EventReader {
+
+    public static final String DEFAULT_UID_KEY = "uid";
+
+    private final BufferedReader reader;
+    private final Criterion.Creator creator;
+    private final Map<String, Value> literals;
+    private final String uidKey;
+    private final Map<String, Criterion> criteria = new HashMap<String, Criterion>(); // null for keys which are no criteria
+
+    private int lineNumber = 0;
+    private String line;
+    private int pos;
+
+    public JsonLinesEventReader(Reader reader, Criterion.Creator creator, Map<String, Value> literals) {
+        this(reader, DEFAULT_UID_KEY, creator, literals);
+    }
+
+    public JsonLinesEventReader(Reader reader, String uidKey, Criterion.Creator creator, Map<String, Value> literals) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.creator = creator;
+        this.literals = literals;
+        this.uidKey = uidKey;
+    }
+
+    public CommentedValue.Event read() throws IOException, UserDataException {
+        do {
+            line = reader.readLine();
+            if (line == null)
+                return null;
+            lineNumber++;
+            pos = 0;
+            skipWhitespace();
+        } while (pos == line.length());
+
+        String uid = Integer.toString(lineNumber);
+        Map<Criterion, CommentedValue> symptoms = new HashMap<Criterion, CommentedValue>();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}')
+            pos++;
+        else {
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                String literal = value();
+                if (key.equals(uidKey)) {
+                    if (literal != null)
+                        uid = literal;
+                } else if (literal != null) {
+                    Criterion criterion = criterion(key);
+                    if (criterion != null) {
+                        Value value = literals.get(literal);
+                        if (value == null)
+                            throw error("Invalid value \"%s\" for criterion %s", literal, key);
+                        symptoms.put(criterion, new CommentedValue(value));
+                    }
+                }
+                skipWhitespace();
+                if (peek() == ',')
+                    pos++;
+                else {
+                    expect('}');
+                    break;
+                }
+            }
+        }
+        skipWhitespace();
+        if (pos != line.length())
+            throw error("Unexpected input after object");
+        return new CommentedValue.Event(uid, symptoms);
+    }
+
+    private Criterion criterion(String key) {
+        if (!criteria.containsKey(key))
+            criteria.put(key, creator.getByShortName(key));
+        return criteria.get(key);
+    }
+
+    /** A string, number or boolean as a literal, or null.
+     */
+    private String value() throws UserDataException {
+        if (peek() == '"')
+            return string();
+        int start = pos;
+        while (pos < line.length() && ",}] \t".indexOf(line.charAt(pos)) < 0)
+            pos++;
+        String literal = line.substring(start, pos);
+        if (literal.length() == 0 || literal.startsWith("{") || literal.startsWith("["))
+            throw error("Expected a string, number, boolean or null");
+        return literal.equals("null") ? null : literal;
+    }
+
+    private String string() throws UserDataException {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= line.length())
+                throw error("Unterminated string");
+            char c = line.charAt(pos++);
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= line.length())
+                throw error("Unterminated string");
+            char escaped = line.charAt(pos++);
+            switch (escaped) {
+            case 'b': sb.append('\b'); break;
+            case 'f': sb.append('\f'); break;
+            case 'n': sb.append('\n'); break;
+            case 'r': sb.append('\r'); break;
+            case 't': sb.append('\t'); break;
+            case 'u':
+                if (pos + 4 > line.length())
+                    throw error("Invalid unicode escape");
+                try {
+                    sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                } catch (NumberFormatException exc) {
+                    throw error("Invalid unicode escape");
+                }
+                pos += 4;
+                break;
+            default: sb.append(escaped);
+            }
+        }
+    }
+
+    private char peek() {
+        return pos < line.length() ? line.charAt(pos) : 0;
+    }
+
+    private void expect(char c) throws UserDataException {
+        if (peek() != c)
+            throw error("Expected '%c'", c);
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos)))
+            pos++;
+    }
+
+    private UserDataException error(String msg, Object... args) {
+        return new UserDataException("%s in line %d, column %d", String.format(msg, args), lineNumber, pos + 1);
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.tools;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+import org.brightoncollaboration.abc.AbcData;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.DaemonThreadFactory;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.UserDataException;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+
+import com.csvreader.CsvWriter;
+
+/**
+ * Classifies the events of an EventReader against all case definitions of
+ * the data and passes the results to a Sink in the order of the input.
+ *
+ * A reader thread cuts the input into batches and submits them to the
+ * workers. The pending batches are queued in input order with a bounded
+ * capacity, and the calling thread writes them as they complete. The reader
+ * blocks when the queue is full, so at most capacity + 1 batches are held in
+ * memory, independently of the size of the input.
+ */
+public class StreamingClassifier {
+
+    static final Logger log = Logger.getLogger(StreamingClassifier.class);
+
+    /** Receives the classifications of each event, one per case definition
+     *  in the order of getCaseDefinitionNames().
+     */
+    public interface Sink {
+        void write(CommentedValue.Event event, List<Classification> classifications) throws IOException;
+    }
+
+    /** Writes one CSV record per event with its uid and the level for each
+     *  case definition (see Classification.Result.toInt).
+     */
+    public static class CsvSink implements Sink {
+
+        private final CsvWriter csv;
+
+        public CsvSink(Writer writer, List<String> caseDefinitionNames) throws IOException {
+            csv = new CsvWriter(writer, ',');
+            csv.write(CsvEventReader.DEFAULT_UID_COLUMN);
+            for (String name : caseDefinitionNames)
+                csv.write(name);
+            csv.endRecord();
+        }
+
+        public void write(CommentedValue.Event event, List<Classification> classifications) throws IOException {
+            csv.write(event.getUid());
+            for (Classification classification : classifications)
+                csv.write(classification.getResult().toInt().toString());
+            csv.endRecord();
+        }
+
+        public void flush() throws IOException {
+            csv.flush();
+        }
+    }
+
+    private static class Batch {
+        final List<CommentedValue.Event> events;
+        final Classification[][] classifications; // Indexed by event and case definition
+        Batch(List<CommentedValue.Event> events, Classification[][] classifications) {
+            this.events = events;
+            this.classifications = classifications;
+        }
+    }
+
+    private static final Future<Batch> END = new FutureTask<Batch>(new Callable<Batch>() {
+        public Batch call() {
+            return null;
+        }
+    });
+
+    private final Criterion.Creator creator;
+    private final List<String> names = new ArrayList<String>();
+    private final List<CaseDefinition> caseDefinitions = new ArrayList<CaseDefinition>();
+    private final int workers;
+    private final int batchSize;
+    private final int capacity;
+    private volatile SolverBudget solverBudget = null;
+
+    public StreamingClassifier(AbcData data, int workers, int batchSize, int capacity) {
+        if (workers <= 0 || batchSize <= 0 || capacity <= 0)
+            throw new IllegalArgumentException(String.format("Invalid workers %d, batch size %d or capacity %d", workers, batchSize, capacity));
+        this.creator = data.getCriterionCreator();
+        for (Map.Entry<String, CaseDefinition> entry : new TreeMap<String, CaseDefinition>(data.getCaseDefinitions()).entrySet()) {
+            names.add(entry.getKey());
+            caseDefinitions.add(entry.getValue());
+        }
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    /** Limits the satisfiability tests of the case definitions without
+     *  their own budget (see CaseDefinition.assignLevel(event,
+     *  defaultBudget)), null for no limits.
+     */
+    public void setSolverBudget(SolverBudget solverBudget) {
+        this.solverBudget = solverBudget;
+    }
+
+    public SolverBudget getSolverBudget() {
+        return solverBudget;
+    }
+
+    /** The names of the case definitions in the order of the classifications
+     *  passed to the sink.
+     */
+    public List<String> getCaseDefinitionNames() {
+        return Collections.unmodifiableList(names);
+    }
+
+    /** Classifies all events of the reader and returns their number. The
+     *  reader is not closed.
+     */
+    public long classify(final EventReader reader, Sink sink) throws IOException, UserDataException, InterruptedException {
+        long start = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(workers, new DaemonThreadFactory("abc-stream-"));
+        final BlockingQueue<Future<Batch>> pending = new ArrayBlockingQueue<Future<Batch>>(capacity);
+        final Throwable[] readerFailure = new Throwable[1];
+        Thread readerThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    List<CommentedValue.Event> events = new ArrayList<CommentedValue.Event>(batchSize);
+                    for (CommentedValue.Event event = reader.read(); event != null; event = reader.read()) {
+                        events.add(event);
+                        if (events.size() == batchSize) {
+                            pending.put(pool.submit(classification(events)));
+                            events = new ArrayList<CommentedValue.Event>(batchSize);
+                        }
+                    }
+                    if (!events.isEmpty())
+                        pending.put(pool.submit(classification(events)));
+                } catch (InterruptedException exc) {
+                    return; // The writer gave up
+                } catch (Throwable exc) {
+                    // Also errors, so that the writer does not wait for END forever
+                    readerFailure[0] = exc;
+                }
+                try {
+                    pending.put(END);
+                } catch (InterruptedException exc) {
+                    // The writer gave up
+                }
+            }
+        }, "abc-stream-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        long count = 0;
+        try {
+            for (Future<Batch> future = pending.take(); future != END; future = pending.take()) {
+                Batch batch = future.get();
+                for (int i = 0; i < batch.events.size(); i++)
+                    sink.write(batch.events.get(i), Arrays.asList(batch.classifications[i]));
+                count += batch.events.size();
+            }
+        } catch (ExecutionException exc) {
+            throw new IllegalStateException("Classification failed", exc.getCause());
+        } finally {
+            readerThread.interrupt();
+            pool.shutdownNow();
+        }
+        readerThread.join();
+        if (readerFailure[0] instanceof IOException)
+            throw (IOException) readerFailure[0];
+        if (readerFailure[0] instanceof UserDataException)
+            throw (UserDataException) readerFailure[0];
+        if (readerFailure[0] instanceof Error)
+            throw (Error) readerFailure[0];
+        if (readerFailure[0] != null)
+            throw new IllegalStateException("Reading failed", readerFailure[0]);
+        long elapsed = System.nanoTime() - start;
+        log.info(String.format("Classified %d events in %.1f ms (%.1f events/s)", count, elapsed / 1e6, elapsed == 0 ? 0 : count * 1e9 / elapsed));
+        return count;
+    }
+
+    private Callable<Batch> classification(final List<CommentedValue.Event> events) {
+        final SolverBudget budget = solverBudget;
+        return new Callable<Batch>() {
+            public Batch call() {
+                List<Event> packed = new ArrayList<Event>(events.size());
+                for (CommentedValue.Event event : events)
+                    packed.add(event.toEvent(creator));
+                Classification[][] classifications = new Classification[events.size()][caseDefinitions.size()];
+                for (int j = 0; j < caseDefinitions.size(); j++) {
+                    List<Classification> res = caseDefinitions.get(j).assignLevels(packed, budget);
+                    for (int i = 0; i < events.size(); i++)
+                        classifications[i][j] = res.get(i);
+                }
+                return new Batch(events, classifications);
+            }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.tools.I18n;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbcSnapshotTest {
+
+    private Criterion.Creator cc;
+    private Map<String, CaseDefinition> caseDefinitions;
+    private File file;
+
+    @Before public void setUp() throws ParseException, AbcConfigurationException, IOException {
+        Criterion x = new Criterion("X", "Fever", "Measured", new Criterion.Footnote[] { new Criterion.Footnote(1, "Oral") },
+                new String[] { "Ref" }, new String[] { "Vital" }, null, 3);
+        cc = new Criterion.Creator(Arrays.asList(x, new Criterion("Y", "Rash"), new Criterion("Z", "Cough")));
+        caseDefinitions = new LinkedHashMap<String, CaseDefinition>();
+        caseDefinitions.put("snapshot", AbcParser.parseCaseDefinition("CASEDEFINITION \"snapshot\" "
+                + "LEVEL1 (X AND (ATLEAST 2 FROM Y, !Z, ?X)) "
+                + "LEVEL2 ((X AND Y) OR (NOT (Z AND Y))) "
+                + "LEVEL3 (X OR Y)", cc));
+        file = File.createTempFile("abc", ".snapshot");
+    }
+
+    @After public void tearDown() {
+        file.delete();
+    }
+
+    private AbcData data() {
+        return AbcData.staticData(cc, caseDefinitions);
+    }
+
+    @Test public void roundTrip() throws AbcConfigurationException, IOException, InterruptedException {
+        CaseDefinition cd = caseDefinitions.get("snapshot");
+        Map<String, ClassificationTable> tables = new HashMap<String, ClassificationTable>();
+        tables.put("snapshot", ClassificationTable.compile(cd, 2, true));
+        AbcSnapshot.write(file, data(), tables, Collections.<File>emptyList());
+
+        AbcSnapshot snapshot = AbcSnapshot.read(file);
+        AbcData data = snapshot.getData();
+        assertThat(data.getCriterionCreator().getShortNames(), is(cc.getShortNames()));
+        Criterion x = data.getCriterionCreator().getByShortName("X");
+        assertThat(x.getWording(), is(cc.getByShortName("X").getWording()));
+        assertThat(x.getOrderingWeight(), is(3));
+        assertThat(x.getFootnotes().get(0).translation(I18n.DEFAULT_LANGUAGE).getContent(), is("Oral"));
+        assertThat(x.getTags().iterator().next().getId(), is("Vital"));
+
+        CaseDefinition restored = data.getCaseDefinitions().get("snapshot");
+        assertThat(restored.getName(), is(cd.getName()));
+        assertThat(restored.getLevel1Clause().unparse(), is(cd.getLevel1Clause().unparse()));
+        assertThat(restored.getLevel2Clause().unparse(), is(cd.getLevel2Clause().unparse()));
+        assertThat(restored.getLevel3Clause().unparse(), is(cd.getLevel3Clause().unparse()));
+        for (Criterion criterion : restored.occurringCriteria())
+            assertThat(criterion == data.getCriterionCreator().getByShortName(criterion.getShortName()), is(true));
+        assertThat(restored.getLevelAnalysis().toBits(), is(cd.getLevelAnalysis().toBits()));
+
+        ClassificationTable table = snapshot.getClassificationTables().get("snapshot");
+        AbcEngine engine = AbcEngine.fromSnapshot(snapshot);
+        for (Event event : new Event().extensions(cd.occurringCriteria())) {
+            Classification expected = cd.assignLevel(event);
+            Classification actual = engine.getCaseDefinition("snapshot").assignLevel(event);
+            assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(event.toString(), actual.getPrecondition1().unparse(), is(expected.getPrecondition1().unparse()));
+            assertThat(event.toString(), table.getResult(event), is(expected.getResult()));
+        }
+    }
+
+    @Test public void sharedCriteria() throws AbcConfigurationException, IOException {
+        Criterion.Creator shared = new Criterion.Creator(Arrays.asList(new Criterion("W", "Wheeze"), cc.getByShortName("Z"), cc.getByShortName("Y"), cc.getByShortName("X")));
+        AbcSnapshot.write(file, AbcData.staticData(shared, caseDefinitions), Collections.<String, ClassificationTable>emptyMap(), Collections.<File>emptyList());
+        assertThat(AbcSnapshot.read(file).getData().getCriterionCreator().getShortNames(), is(shared.getShortNames()));
+    }
+
+    @Test public void fromScratch() throws AbcConfigurationException, IOException, ParseException {
+        Criterion.Creator scratch = Criterion.Creator.fromScratch();
+        Map<String, CaseDefinition> scratchDefinitions = new LinkedHashMap<String, CaseDefinition>();
+        scratchDefinitions.put("first", AbcParser.parseCaseDefinition("CASEDEFINITION \"first\" LEVEL1 (SNAPB AND SNAPA) LEVEL2 (SNAPA) LEVEL3 (SNAPC)", scratch));
+        scratchDefinitions.put("second", AbcParser.parseCaseDefinition("CASEDEFINITION \"second\" LEVEL1 (SNAPC) LEVEL2 (SNAPA OR SNAPD) LEVEL3 (SNAPB)", scratch));
+        AbcSnapshot.write(file, AbcData.staticData(scratch, scratchDefinitions), Collections.<String, ClassificationTable>emptyMap(), Collections.<File>emptyList());
+        assertThat(new File(file.getPath() + ".tmp").exists(), is(false));
+        Map<String, CaseDefinition> restored = AbcSnapshot.read(file).getData().getCaseDefinitions();
+        for (String name : scratchDefinitions.keySet())
+            assertThat(restored.get(name).unparse(), is(scratchDefinitions.get(name).unparse()));
+    }
+
+    @Test(expected = IOException.class) public void corrupt() throws AbcConfigurationException, IOException {
+        AbcSnapshot.write(file, data(), Collections.<String, ClassificationTable>emptyMap(), Collections.<File>emptyList());
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 1);
+        } finally {
+            raf.close();
+        }
+        AbcSnapshot.read(file);
+    }
+
+    @Test public void outdated() throws AbcConfigurationException, IOException {
+        File source = File.createTempFile("abc", ".txt");
+        try {
+            FileWriter writer = new FileWriter(source);
+            writer.write("LEVEL1 (X)");
+            writer.close();
+            AbcSnapshot.write(file, data(), Collections.<String, ClassificationTable>emptyMap(), Arrays.asList(source));
+            AbcSnapshot snapshot = AbcSnapshot.read(file);
+            assertThat(snapshot.isCurrent(Arrays.asList(source)), is(true));
+            assertThat(snapshot.isCurrent(Collections.<File>emptyList()), is(false));
+            writer = new FileWriter(source, true);
+            writer.write(" LEVEL2 (Y)");
+            writer.close();
+            assertThat(snapshot.isCurrent(Arrays.asList(source)), is(false));
+        } finally {
+            source.delete();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.brightoncollaboration.abc.Classification.Result;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncClassifierTest {
+
+    private AsyncClassifier classifier;
+
+    @Before public void setUp() {
+        classifier = new AsyncClassifier(1, 1);
+    }
+
+    @After public void tearDown() {
+        classifier.shutdown();
+    }
+
+    private static CaseDefinition parse(String level1) throws ParseException {
+        return AbcParser.parseCaseDefinition(String.format(
+                "CASEDEFINITION \"async\" LEVEL1 (%s) LEVEL2 (X) LEVEL3 (X OR Y)", level1),
+                Criterion.Creator.fromScratch());
+    }
+
+    /** Pigeons into one hole less, which takes the solver long to refute.
+     */
+    private static CaseDefinition pigeonhole(int pigeons) throws ParseException {
+        StringBuffer sb = new StringBuffer();
+        for (int p = 0; p < pigeons; p++) {
+            sb.append(p == 0 ? "(ATLEAST 1 FROM " : " AND (ATLEAST 1 FROM ");
+            for (int h = 0; h < pigeons - 1; h++)
+                sb.append(String.format(h == 0 ? "P%dH%d" : ", P%dH%d", p, h));
+            sb.append(")");
+        }
+        for (int h = 0; h < pigeons - 1; h++) {
+            sb.append(" AND (ATMOST 1 FROM ");
+            for (int p = 0; p < pigeons; p++)
+                sb.append(String.format(p == 0 ? "P%dH%d" : ", P%dH%d", p, h));
+            sb.append(")");
+        }
+        return parse(sb.toString());
+    }
+
+    @Test public void classify() throws Exception {
+        CaseDefinition cd = parse("X AND Y");
+        Event event = new Event();
+        event.addSymptom(Criterion.Creator.fromScratch().getByShortName("X"), Value.POSITIVE);
+        Future<Classification> future = classifier.submit(cd, event, null, null);
+        assertThat(future.get(10, TimeUnit.SECONDS).getResult(), is(cd.assignLevel(event).getResult()));
+    }
+
+    @Test public void cancel() throws Exception {
+        Future<Classification> slow = classifier.submit(pigeonhole(12), new Event(), null, null);
+        Future<Classification> queued = classifier.submit(parse("X AND Y"), new Event(), null, SolverBudget.UNLIMITED);
+        try {
+            classifier.submit(parse("X AND Y"), new Event(), null, null);
+            fail("Not rejected");
+        } catch (RejectedExecutionException exc) {
+            // The queue is full
+        }
+        Thread.sleep(200);
+        assertThat(slow.isDone(), is(false));
+        assertThat(slow.cancel(true), is(true));
+        try {
+            slow.get();
+            fail("Not cancelled");
+        } catch (CancellationException exc) {
+            // Expected
+        }
+        // The thread is free again when the solver was stopped
+        assertThat(queued.get(10, TimeUnit.SECONDS).getResult(), is(Result.CATEGORY4));
+    }
+
+    @Test public void interrupted() throws Exception {
+        final CaseDefinition cd = pigeonhole(12);
+        final Classification[] res = new Classification[1];
+        Thread thread = new Thread() {
+            public void run() {
+                res[0] = cd.assignLevel(new Event());
+            }
+        };
+        thread.start();
+        Thread.sleep(200);
+        thread.interrupt();
+        SolverBudget.interrupt(thread);
+        thread.join(10000);
+        assertThat(thread.isAlive(), is(false));
+        assertThat(res[0].getResult(), is(Result.ERROR));
+        assertThat(res[0].getErrorReason(), is(Classification.ErrorReason.INTERRUPTED));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchClassifierTest {
+
+    private Criterion.Creator cc;
+    private List<CaseDefinition> cds;
+
+    @Before public void setUp() throws ParseException {
+        cc = Criterion.Creator.fromScratch();
+        cds = Arrays.asList(
+                AbcParser.parseCaseDefinition("CASEDEFINITION \"batch1\" LEVEL1 (X AND (ATLEAST 2 FROM Y, !Z, W)) LEVEL2 ((X AND Y) OR (NOT (Z AND W))) LEVEL3 (EXACTLY 1 FROM X, Y, (ATMOST 1 FROM Z, W))", cc),
+                AbcParser.parseCaseDefinition("CASEDEFINITION \"batch2\" LEVEL1 (X AND ?Y) LEVEL2 ((NOT ?X) OR Y) LEVEL3 (ATLEAST 1 FROM ?X, !Y, Z)", cc));
+    }
+
+    private List<CommentedValue.Event> events() {
+        List<CommentedValue.Event> events = new ArrayList<CommentedValue.Event>();
+        int uid = 0;
+        for (Event event : new Event().extensions(Arrays.asList(cc.getByShortName("X"), cc.getByShortName("Y"), cc.getByShortName("Z"), cc.getByShortName("W"))))
+            events.add(CommentedValue.Event.fromEvent(Integer.toString(uid++), event));
+        return events;
+    }
+
+    @Test public void sameAsSequential() throws InterruptedException {
+        List<CommentedValue.Event> events = events();
+        BatchClassifier classifier = new BatchClassifier(4);
+        try {
+            BatchClassifier.Result result = classifier.classify(events, cds, null);
+            assertThat(result.size(), is(events.size()));
+            for (int i = 0; i < events.size(); i++) {
+                assertThat(result.getEvents().get(i), is(events.get(i)));
+                for (int j = 0; j < cds.size(); j++)
+                    assertThat(result.getClassification(i, j).getResult(),
+                            is(cds.get(j).assignLevel(events.get(i).toEvent()).getResult()));
+            }
+        } finally {
+            classifier.shutdown();
+        }
+    }
+
+    @Test public void sharedExecutorAndCache() throws InterruptedException {
+        List<CommentedValue.Event> events = events();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            BatchClassifier classifier = new BatchClassifier(executor, 3, 5);
+            ClassificationCache cache = new ClassificationCache(1000);
+            BatchClassifier.Result first = classifier.classify(events.iterator(), cds, cache);
+            BatchClassifier.Result second = classifier.classify(events.iterator(), cds, cache);
+            for (int i = 0; i < events.size(); i++)
+                for (int j = 0; j < cds.size(); j++)
+                    assertThat(second.getClassification(i, j).getResult(), is(first.getClassification(i, j).getResult()));
+            assertThat(cache.getHits() >= events.size() * cds.size(), is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void packed() throws InterruptedException {
+        List<CommentedValue.Event> events = events();
+        BatchClassifier classifier = new BatchClassifier(2);
+        try {
+            BatchClassifier.Result result = classifier.classify(events.iterator(), cds, cc, null, null);
+            for (int i = 0; i < events.size(); i++)
+                for (int j = 0; j < cds.size(); j++)
+                    assertThat(result.getClassification(i, j).getResult(),
+                            is(cds.get(j).assignLevel(events.get(i).toEvent()).getResult()));
+        } finally {
+            classifier.shutdown();
+        }
+    }
+
+    @Test public void failureCancelsWorkers() throws InterruptedException {
+        final List<CommentedValue.Event> events = events();
+        final AtomicInteger pulled = new AtomicInteger();
+        Iterator<CommentedValue.Event> failing = new Iterator<CommentedValue.Event>() {
+            public boolean hasNext() {
+                return true;
+            }
+            public CommentedValue.Event next() {
+                if (pulled.incrementAndGet() == 3)
+                    throw new IllegalArgumentException("Unreadable event");
+                return events.get(pulled.get());
+            }
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        // The second worker waits for the only thread until the first failed
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new BatchClassifier(executor, 2, 1).classify(failing, cds, null);
+            fail();
+        } catch (IllegalStateException exc) {
+            assertThat(exc.getCause() instanceof IllegalArgumentException, is(true));
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+        assertThat(pulled.get(), is(3));
+    }
+
+    @Test public void empty() throws InterruptedException {
+        BatchClassifier classifier = new BatchClassifier(2);
+        assertThat(classifier.classify(new ArrayList<CommentedValue.Event>(), cds, null).size(), is(0));
+        classifier.shutdown();
+    }
+
+    @Test public void concurrentCriterionCreation() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Criterion>> futures = new ArrayList<Future<Criterion>>();
+            for (int i = 0; i < 64; i++)
+                futures.add(executor.submit(new Callable<Criterion>() {
+                    public Criterion call() {
+                        return cc.getByShortName("ConcurrentlyCreated");
+                    }
+                }));
+            Criterion criterion = futures.get(0).get();
+            for (Future<Criterion> future : futures)
+                assertThat(future.get() == criterion, is(true));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
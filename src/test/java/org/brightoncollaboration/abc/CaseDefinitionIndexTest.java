@@ -0,0 +1,90 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CaseDefinitionIndexTest {
+
+    private Criterion.Creator cc;
+    private AbcData data;
+
+    @Before public void setUp() throws ParseException, AbcConfigurationException {
+        cc = new Criterion.Creator(Arrays.asList(new Criterion("X", "X"), new Criterion("Y", "Y"), new Criterion("Z", "Z"), new Criterion("W", "W")));
+        Map<String, CaseDefinition> cds = new LinkedHashMap<String, CaseDefinition>();
+        cds.put("xy", AbcParser.parseCaseDefinition("CASEDEFINITION \"xy\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (?Y)", cc));
+        cds.put("z", AbcParser.parseCaseDefinition("CASEDEFINITION \"z\" LEVEL1 (Z) LEVEL2 (!Z) LEVEL3 (?Z)", cc));
+        cds.put("yw", AbcParser.parseCaseDefinition("CASEDEFINITION \"yw\" LEVEL1 (ATLEAST 1 FROM Y, W) LEVEL2 (NOT W) LEVEL3 (Y)", cc));
+        data = AbcData.staticData(cc, cds);
+    }
+
+    @Test public void index() {
+        CaseDefinitionIndex index = new CaseDefinitionIndex(data);
+        assertThat(index.getCaseDefinitionNames(cc.getByShortName("Y")), is(Arrays.asList("xy", "yw")));
+        assertThat(index.getCaseDefinitionNames(cc.getByShortName("Z")), is(Arrays.asList("z")));
+    }
+
+    @Test public void sameAsAssignLevel() {
+        CaseDefinitionIndex index = new CaseDefinitionIndex(data);
+        for (Event event : new Event().extensions(cc.getCriteria())) {
+            Map<String, Classification> classifications = index.classify(PackedEvent.copyOf(event, cc), null, null);
+            assertThat(classifications.keySet(), is(data.getCaseDefinitions().keySet()));
+            for (Map.Entry<String, CaseDefinition> entry : data.getCaseDefinitions().entrySet()) {
+                Classification expected = entry.getValue().assignLevel(event);
+                Classification actual = classifications.get(entry.getKey());
+                assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+                assertThat(event.toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+                assertThat(event.toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+                assertThat(event.toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+            }
+        }
+    }
+
+    @Test public void unaffectedDefinitionsAreReused() {
+        CaseDefinitionIndex index = new CaseDefinitionIndex(data);
+        Classification first = index.classify(new Event().addSymptom(cc.getByShortName("X"), Value.POSITIVE), null, null).get("z");
+        Classification second = index.classify(new Event().addSymptom(cc.getByShortName("W"), Value.NEGATIVE), null, null).get("z");
+        assertThat(first == second, is(true));
+    }
+
+    @Test public void engine() throws AbcConfigurationException {
+        AbcEngine engine = new AbcEngine(data);
+        CommentedValue.Event event = new CommentedValue.Event("e");
+        event.addSymptom(cc.getByShortName("Z"), new CommentedValue(Value.POSITIVE));
+        Map<String, Classification> classifications = engine.confirmDiagnoses("reporter", event);
+        assertThat(classifications.get("z").getResult(), is(Classification.Result.LEVEL1));
+        assertThat(classifications.get("xy").getResult(), is(Classification.Result.LEVEL3));
+    }
+
+    @Test public void engineWithoutData() {
+        CommentedValue.Event event = new CommentedValue.Event("e");
+        event.addSymptom(cc.getByShortName("Z"), new CommentedValue(Value.POSITIVE));
+        assertThat(new AbcEngine().confirmDiagnoses("reporter", event).isEmpty(), is(true));
+    }
+}
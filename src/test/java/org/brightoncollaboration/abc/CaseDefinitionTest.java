@@ -119,4 +119,19 @@ public class CaseDefinitionTest {
         Classification r5 = cd.assignLevel(p5);
         assertThat(r5.getResult().toInt(), is(5));
     }
+
+    @Test public void binaryDecisionDiagramBackend() throws ParseException {
+        CaseDefinition sat = AbcParser.parseCaseDefinition("CASEDEFINITION \"backend\" "
+                + "LEVEL1 (X AND (ATLEAST 2 FROM Y, !Z, ?W)) LEVEL2 ((X AND Y) OR (NOT (Z AND W))) LEVEL3 (EXACTLY 1 FROM X, Y, Z)", cc);
+        CaseDefinition bdd = new CaseDefinition(sat.getName(), sat.getLevel1Clause(), sat.getLevel2Clause(), sat.getLevel3Clause());
+        bdd.setBackend(CaseDefinition.Backend.BINARY_DECISION_DIAGRAM);
+        for (Event event : new Event().extensions(sat.occurringCriteria())) {
+            Classification expected = sat.assignLevel(event);
+            Classification actual = bdd.assignLevel(event);
+            assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(event.toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+            assertThat(event.toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+            assertThat(event.toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+        }
+    }
 }
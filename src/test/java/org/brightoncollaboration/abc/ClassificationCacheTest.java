@@ -0,0 +1,91 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.tools.StringI18n;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassificationCacheTest {
+
+    private Criterion.Creator cc;
+    private Criterion x;
+    private Criterion y;
+    private Criterion unrelated;
+    private CaseDefinition cd;
+
+    @Before public void setUp() {
+        cc = Criterion.Creator.fromScratch();
+        x = cc.getByShortName("X");
+        y = cc.getByShortName("Y");
+        unrelated = cc.getByShortName("Unrelated");
+        cd = new CaseDefinition(StringI18n.singleton("cached"),
+                Clause.and(Clause.criterion(x, Value.POSITIVE), Clause.criterion(y, Value.POSITIVE)),
+                Clause.criterion(x, Value.POSITIVE),
+                Clause.criterion(y, Value.POSITIVE));
+    }
+
+    @Test public void hitOnSameProjection() {
+        ClassificationCache cache = new ClassificationCache(10);
+        Classification c1 = cd.assignLevel(new Event().addSymptom(x, Value.POSITIVE), cache);
+        Classification c2 = cd.assignLevel(new Event().addSymptom(x, Value.POSITIVE).addSymptom(unrelated, Value.NEGATIVE), cache);
+        assertThat(c1.getResult(), is(Classification.Result.LEVEL2));
+        assertThat(c2, sameInstance(c1));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+
+        Classification c3 = cd.assignLevel(new Event().addSymptom(x, Value.NEGATIVE), cache);
+        assertThat(c3.getResult(), is(Classification.Result.CATEGORY4));
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test public void leastRecentlyUsedIsEvicted() {
+        ClassificationCache cache = new ClassificationCache(2);
+        Event e1 = new Event().addSymptom(x, Value.POSITIVE);
+        Event e2 = new Event().addSymptom(y, Value.POSITIVE);
+        Event e3 = new Event().addSymptom(x, Value.NEGATIVE);
+        cd.assignLevel(e1, cache);
+        cd.assignLevel(e2, cache);
+        cd.assignLevel(e1, cache);
+        cd.assignLevel(e3, cache); // evicts e2
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.size(), is(2));
+        cd.assignLevel(e1, cache);
+        assertThat(cache.getHits(), is(2L));
+        cd.assignLevel(e2, cache);
+        assertThat(cache.getMisses(), is(4L));
+    }
+
+    @Test public void engine() throws AbcConfigurationException {
+        AbcEngine engine = new AbcEngine();
+        engine.setClassificationCache(new ClassificationCache(10));
+        CommentedValue.Event event = CommentedValue.Event.fromEvent("1", new Event().addSymptom(y, Value.POSITIVE));
+        engine.confirmDiagnosis("reporter", cd, event);
+        Classification classification = engine.confirmDiagnosis("reporter", cd, event);
+        assertThat(classification.getResult(), is(Classification.Result.LEVEL3));
+        assertThat(engine.getClassificationCache().getHits(), is(1L));
+    }
+}
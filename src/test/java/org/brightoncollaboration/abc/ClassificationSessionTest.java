@@ -0,0 +1,93 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.brightoncollaboration.abc.clause.Clause;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassificationSessionTest {
+
+    private Criterion.Creator cc;
+    private CaseDefinition cd;
+
+    @Before public void setUp() throws ParseException {
+        cc = Criterion.Creator.fromScratch();
+        cd = AbcParser.parseCaseDefinition("CASEDEFINITION \"session\" "
+                + "LEVEL1 (X AND (ATLEAST 2 FROM Y, !Z, W)) "
+                + "LEVEL2 ((X AND Y) OR (NOT (Z AND ?W))) "
+                + "LEVEL3 (EXACTLY 1 FROM X, Y, (ATMOST 1 FROM Z, W, V))", cc);
+    }
+
+    /** Same result and the same constant preconditions as assignLevel.
+     */
+    private void assertEquivalent(Event event, Classification actual) {
+        Classification expected = cd.assignLevel(event);
+        assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+        Clause[] expectedPreconditions = { expected.getPrecondition1(), expected.getPrecondition2(), expected.getPrecondition3() };
+        Clause[] actualPreconditions = { actual.getPrecondition1(), actual.getPrecondition2(), actual.getPrecondition3() };
+        for (int i = 0; i < 3; i++) {
+            assertThat(event.toString(), actualPreconditions[i].isTrue(), is(expectedPreconditions[i].isTrue()));
+            assertThat(event.toString(), actualPreconditions[i].isFalse(), is(expectedPreconditions[i].isFalse()));
+        }
+    }
+
+    @Test public void addedSymptoms() {
+        Random random = new Random(7);
+        List<Criterion> criteria = new ArrayList<Criterion>(cd.occurringCriteria());
+        for (int run = 0; run < 50; run++) {
+            Collections.shuffle(criteria, random);
+            ClassificationSession session = new ClassificationSession(cd, new Event());
+            assertEquivalent(new Event(), session.getClassification());
+            for (Criterion criterion : criteria) {
+                Value value = Value.values()[random.nextInt(Value.values().length)];
+                Classification classification = session.addSymptom(criterion, value);
+                assertEquivalent(session.getEvent(), classification);
+            }
+        }
+    }
+
+    @Test public void changedSymptom() {
+        Criterion x = cc.getByShortName("X");
+        ClassificationSession session = new ClassificationSession(cd, new Event().addSymptom(cc.getByShortName("Y"), Value.POSITIVE));
+        session.addSymptom(x, Value.POSITIVE);
+        assertEquivalent(session.getEvent(), session.getClassification());
+        session.addSymptom(x, Value.NEGATIVE);
+        assertThat(session.getEvent().valueOfCriterion(x), is(Value.NEGATIVE));
+        assertEquivalent(session.getEvent(), session.getClassification());
+    }
+
+    @Test public void unchangedLevelsAreNotSolvedAgain() {
+        ClassificationSession session = new ClassificationSession(cd, new Event());
+        Classification before = session.getClassification();
+        Classification after = session.addSymptom(cc.getByShortName("V"), Value.POSITIVE);
+        assertThat(after.getPrecondition1() == before.getPrecondition1(), is(true));
+        assertThat(after.getPrecondition2() == before.getPrecondition2(), is(true));
+    }
+}
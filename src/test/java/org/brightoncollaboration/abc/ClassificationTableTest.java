@@ -0,0 +1,112 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassificationTableTest {
+
+    private Criterion.Creator cc;
+    private CaseDefinition cd;
+
+    @Before public void setUp() throws ParseException {
+        cc = Criterion.Creator.fromScratch();
+        cd = AbcParser.parseCaseDefinition("CASEDEFINITION \"table\" "
+                + "LEVEL1 (X AND (ATLEAST 2 FROM Y, !Z, W)) "
+                + "LEVEL2 ((X AND Y) OR (NOT (Z AND ?W))) "
+                + "LEVEL3 (EXACTLY 1 FROM X, Y, (ATMOST 1 FROM Z, W, V))", cc);
+    }
+
+    private void assertSameClassifications(ClassificationTable table) {
+        int count = 0;
+        for (Event event : new Event().lazyExtensions(cd.occurringCriteria())) {
+            Classification expected = cd.assignLevel(event);
+            Classification actual = table.assignLevel(event);
+            assertThat(event.toString(), table.getResult(event), is(expected.getResult()));
+            assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(event.toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+            assertThat(event.toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+            assertThat(event.toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+            count++;
+        }
+        assertThat((long) count, is(table.size()));
+    }
+
+    @Test public void results() throws InterruptedException {
+        assertSameClassifications(ClassificationTable.compile(cd, 3, false));
+    }
+
+    @Test public void preconditions() throws InterruptedException {
+        ClassificationTable table = ClassificationTable.compile(cd, 2, true);
+        assertThat(table.hasPreconditions(), is(true));
+        assertSameClassifications(table);
+    }
+
+    @Test public void saveAndLoad() throws InterruptedException, IOException {
+        for (boolean withPreconditions : new boolean[] { false, true }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ClassificationTable.compile(cd, 2, withPreconditions).save(out);
+            ClassificationTable table = ClassificationTable.load(new ByteArrayInputStream(out.toByteArray()), cd);
+            assertThat(table.hasPreconditions(), is(withPreconditions));
+            assertSameClassifications(table);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void stale() throws InterruptedException, IOException, ParseException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClassificationTable.compile(cd, 1, false).save(out);
+        CaseDefinition changed = AbcParser.parseCaseDefinition("CASEDEFINITION \"table\" LEVEL1 (X) LEVEL2 (Y) LEVEL3 (Z)", cc);
+        ClassificationTable.load(new ByteArrayInputStream(out.toByteArray()), changed);
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidIndex() throws InterruptedException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ClassificationTable.compile(cd, 2, true).save(out);
+        byte[] bytes = out.toByteArray();
+        bytes[bytes.length - 2] = bytes[bytes.length - 1] = (byte) 0xFF;
+        ClassificationTable.load(new ByteArrayInputStream(bytes), cd);
+    }
+
+    @Test public void loadOrCompile() throws InterruptedException, IOException {
+        File file = File.createTempFile("classification", ".table");
+        try {
+            file.delete();
+            ClassificationTable.loadOrCompile(file, cd, 2, false);
+            assertThat(file.exists(), is(true));
+            long modified = file.lastModified();
+            assertSameClassifications(ClassificationTable.loadOrCompile(file, cd, 2, false));
+            assertThat(file.lastModified(), is(modified));
+        } finally {
+            file.delete();
+        }
+    }
+}
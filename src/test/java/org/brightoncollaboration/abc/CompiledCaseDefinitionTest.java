@@ -0,0 +1,102 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledCaseDefinitionTest {
+
+    private Criterion.Creator cc;
+
+    @Before public void setUp() {
+        cc = Criterion.Creator.fromScratch();
+    }
+
+    private CaseDefinition parse(String level1, String level2, String level3) throws ParseException {
+        return AbcParser.parseCaseDefinition(String.format(
+                "CASEDEFINITION \"compiled\" LEVEL1 (%s) LEVEL2 (%s) LEVEL3 (%s)", level1, level2, level3), cc);
+    }
+
+    private void assertSameClassifications(CaseDefinition cd) {
+        CompiledCaseDefinition compiled = cd.compile();
+        for (Event event : new Event().extensions(cd.occurringCriteria())) {
+            Classification expected = cd.assignLevel(event);
+            Classification actual = compiled.assignLevel(event);
+            assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(event.toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+            assertThat(event.toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+            assertThat(event.toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+        }
+    }
+
+    @Test public void simple() throws ParseException {
+        assertSameClassifications(parse("X", "Y", "Z"));
+        assertSameClassifications(parse("TRUE", "NOTAPPLICABLE", "X"));
+    }
+
+    @Test public void nested() throws ParseException {
+        assertSameClassifications(parse(
+                "X AND (ATLEAST 2 FROM Y, !Z, W)",
+                "(X AND Y) OR (NOT (Z AND W))",
+                "EXACTLY 1 FROM X, Y, (ATMOST 1 FROM Z, W)"));
+    }
+
+    @Test public void unknown() throws ParseException {
+        assertSameClassifications(parse(
+                "X AND ?Y",
+                "(NOT ?X) OR Y",
+                "ATLEAST 1 FROM ?X, !Y, Z"));
+    }
+
+    @Test public void budget() throws ParseException {
+        CaseDefinition cd = parse("X AND (ATLEAST 2 FROM Y, !Z, W)", "X OR Y", "Z");
+        CompiledCaseDefinition compiled = cd.compile();
+        Event event = new Event();
+        Classification limited = compiled.assignLevel(event, new SolverBudget(0, 0, 1));
+        assertThat(limited.getResult(), is(Classification.Result.ERROR));
+        assertThat(limited.getErrorReason(), is(Classification.ErrorReason.CNF_SIZE_LIMIT));
+        assertThat(compiled.assignLevel(event, new SolverBudget(1000, 1000, 0)).getResult(), is(cd.assignLevel(event).getResult()));
+        assertThat(compiled.assignLevel(event).getResult(), is(cd.assignLevel(event).getResult()));
+        cd.setSolverBudget(new SolverBudget(0, 0, 1));
+        assertThat(compiled.assignLevel(event, SolverBudget.UNLIMITED).getErrorReason(), is(Classification.ErrorReason.CNF_SIZE_LIMIT));
+    }
+
+    @Test public void reuse() throws ParseException {
+        CaseDefinition cd = parse("X AND Y", "X", "Y");
+        CompiledCaseDefinition compiled = cd.compile();
+        Criterion x = cc.getByShortName("X");
+        Criterion y = cc.getByShortName("Y");
+        assertThat(compiled.assignLevel(new Event().addSymptom(x, Value.POSITIVE).addSymptom(y, Value.POSITIVE)).getResult(),
+                is(Classification.Result.LEVEL1));
+        assertThat(compiled.assignLevel(new Event().addSymptom(x, Value.NEGATIVE).addSymptom(y, Value.NEGATIVE)).getResult(),
+                is(Classification.Result.CATEGORY5));
+        assertThat(compiled.assignLevel(new Event().addSymptom(y, Value.POSITIVE)).getResult(),
+                is(Classification.Result.LEVEL3));
+        assertThat(compiled.assignLevel(new Event()).getResult(),
+                is(Classification.Result.CATEGORY4));
+    }
+}
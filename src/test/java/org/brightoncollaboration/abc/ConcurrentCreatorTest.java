@@ -0,0 +1,114 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConcurrentCreatorTest {
+
+    private static final int THREADS = 8;
+    private static final int NAMES = 3000;
+
+    @Test public void internsConcurrently() throws Exception {
+        final Criterion.ConcurrentCreator creator = new Criterion.ConcurrentCreator();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Criterion[]>> futures = new ArrayList<Future<Criterion[]>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Criterion[]>() {
+                    public Criterion[] call() throws InterruptedException {
+                        start.await();
+                        Criterion[] res = new Criterion[NAMES];
+                        for (int i = 0; i < NAMES; i++) {
+                            int name = (i + offset * 97) % NAMES;
+                            res[name] = creator.getByShortName("C" + name);
+                            assertThat(creator.ordinalOf(res[name]), is(res[name].getOrdinal()));
+                        }
+                        return res;
+                    }
+                }));
+            }
+            start.countDown();
+            Criterion[] first = futures.get(0).get();
+            for (Future<Criterion[]> future : futures) {
+                Criterion[] criteria = future.get();
+                for (int i = 0; i < NAMES; i++)
+                    assertThat(criteria[i] == first[i], is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(creator.getOrdinalBound(), is(NAMES));
+        assertThat(creator.getCriteria().size(), is(NAMES));
+        Set<String> names = new HashSet<String>();
+        for (int ordinal = 0; ordinal < NAMES; ordinal++) {
+            Criterion criterion = creator.getByOrdinal(ordinal);
+            assertThat(criterion.getOrdinal(), is(ordinal));
+            assertThat(creator.getByShortName(criterion.getShortName()) == criterion, is(true));
+            names.add(criterion.getShortName());
+        }
+        assertThat(names.size(), is(NAMES));
+        assertThat(creator.getByOrdinal(NAMES) == null, is(true));
+    }
+
+    @Test public void full() {
+        Criterion.ConcurrentCreator creator = new Criterion.ConcurrentCreator(2);
+        creator.getByShortName("A");
+        creator.getByShortName("B");
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                creator.getByShortName("C");
+                fail();
+            } catch (IllegalStateException exc) {
+                // The failed criterion is not left behind for others to wait on
+                assertThat(creator.getShortNames().contains("C"), is(false));
+            }
+        }
+        assertThat(creator.getOrdinalBound(), is(2));
+        assertThat(creator.getByOrdinal(1).getShortName(), is("B"));
+    }
+
+    @Test public void packsEvents() {
+        Criterion.ConcurrentCreator creator = new Criterion.ConcurrentCreator();
+        Criterion x = creator.getByShortName("X");
+        Event event = new PackedEvent(creator);
+        Criterion y = creator.getByShortName("Y");
+        event.addSymptom(x, Value.POSITIVE).addSymptom(y, Value.NEGATIVE);
+        assertThat(event.valueOfCriterion(x), is(Value.POSITIVE));
+        assertThat(event.valueOfCriterion(y), is(Value.NEGATIVE));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ExtensionsTest {
+
+    Criterion.Creator cc = Criterion.Creator.fromScratch();
+    Criterion a = cc.getByShortName("a");
+    Criterion b = cc.getByShortName("b");
+    Criterion c = cc.getByShortName("c");
+
+    @Test public void counterOrder() {
+        Event base = new Event().addSymptom(c, Value.POSITIVE);
+        Extensions extensions = base.lazyExtensions(Arrays.asList(a, b, a));
+        assertThat(extensions.size(), is(9L));
+        List<Event> events = new ArrayList<Event>();
+        for (Event event : extensions)
+            events.add(event);
+        assertThat(events.size(), is(9));
+        assertThat(events.get(0), is(base.extension(a, Value.POSITIVE).extension(b, Value.POSITIVE)));
+        assertThat(events.get(1), is(base.extension(a, Value.POSITIVE).extension(b, Value.NEGATIVE)));
+        assertThat(events.get(5), is(base.extension(a, Value.NEGATIVE).extension(b, Value.UNDEFINED)));
+        for (int i = 0; i < events.size(); i++)
+            assertThat(events.get(i), is(extensions.get(i)));
+        assertThat(new HashSet<Event>(events), is(base.extensions(Arrays.asList(a, b))));
+    }
+
+    @Test public void split() {
+        Extensions extensions = new Event().lazyExtensions(Arrays.asList(a, b, c));
+        List<Event> events = new ArrayList<Event>();
+        long size = 0;
+        for (Extensions part : extensions.split(4)) {
+            size += part.size();
+            for (Event event : part)
+                events.add(event);
+        }
+        assertThat(size, is(27L));
+        for (int i = 0; i < events.size(); i++)
+            assertThat(events.get(i), is(extensions.get(i)));
+        assertThat(extensions.split(100).size(), is(27));
+    }
+
+    @Test public void large() {
+        List<Criterion> criteria = new ArrayList<Criterion>();
+        for (int i = 0; i < 30; i++)
+            criteria.add(cc.getByShortName("large" + i));
+        Extensions extensions = new Event().lazyExtensions(criteria);
+        assertThat(extensions.size(), is(205891132094649L));
+        Iterator<Event> iterator = extensions.split(1000).get(999).iterator();
+        Set<Event> some = new HashSet<Event>();
+        for (int i = 0; i < 100; i++)
+            some.add(iterator.next());
+        assertThat(some.size(), is(100));
+    }
+
+    @Test public void maxCriteria() {
+        List<Criterion> criteria = new ArrayList<Criterion>();
+        for (int i = 0; i < Extensions.MAX_CRITERIA; i++)
+            criteria.add(cc.getByShortName("max" + i));
+        Extensions extensions = new Event().lazyExtensions(criteria);
+        List<Extensions> parts = extensions.split(1000);
+        assertThat(parts.size(), is(1000));
+        long size = 0;
+        for (Extensions part : parts) {
+            assertThat(part.size() > 0, is(true));
+            size += part.size();
+        }
+        assertThat(size, is(extensions.size()));
+        assertThat(parts.get(999).get(extensions.size() - 1), is(extensions.get(extensions.size() - 1)));
+    }
+
+    @Test public void packed() throws AbcConfigurationException {
+        Criterion.Creator creator = new Criterion.Creator(Arrays.asList(new Criterion("p", "p"), new Criterion("q", "q")));
+        Event base = new PackedEvent(creator);
+        for (Event event : base.lazyExtensions(creator.getCriteria()))
+            assertThat(event instanceof PackedEvent, is(true));
+        assertThat(base.extensions(creator.getCriteria()).size(), is(9));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LevelAnalysisTest {
+
+    private Criterion.Creator cc;
+
+    @Before public void setUp() {
+        cc = Criterion.Creator.fromScratch();
+    }
+
+    private CaseDefinition parse(String level1, String level2, String level3) throws ParseException {
+        return AbcParser.parseCaseDefinition(String.format(
+                "CASEDEFINITION \"analyzed\" LEVEL1 (%s) LEVEL2 (%s) LEVEL3 (%s)", level1, level2, level3), cc);
+    }
+
+    private void assertSameClassifications(String level1, String level2, String level3) throws ParseException {
+        CaseDefinition plain = parse(level1, level2, level3);
+        CaseDefinition analyzed = parse(level1, level2, level3);
+        analyzed.analyzeLevels();
+        for (Event event : new Event().extensions(plain.occurringCriteria())) {
+            Classification expected = plain.assignLevel(event);
+            Classification actual = analyzed.assignLevel(event);
+            assertThat(event.toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(event.toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+            assertThat(event.toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+            assertThat(event.toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+        }
+    }
+
+    @Test public void nested() throws ParseException {
+        CaseDefinition cd = parse("X AND Y AND Z", "X AND (Y OR Z)", "X");
+        assertThat(cd.getLevelAnalysis() == null, is(true));
+        LevelAnalysis analysis = cd.analyzeLevels();
+        assertThat(cd.getLevelAnalysis() == analysis, is(true));
+        assertThat(analysis.isNested(), is(true));
+        assertThat(analysis.implies(0, 2), is(true));
+        assertThat(analysis.implies(2, 0), is(false));
+        assertThat(analysis.getProblems().isEmpty(), is(true));
+        assertSameClassifications("X AND Y AND Z", "X AND (Y OR Z)", "X");
+    }
+
+    @Test public void notNested() throws ParseException {
+        LevelAnalysis analysis = parse("X AND Y", "!X", "X OR Z").analyzeLevels();
+        assertThat(analysis.isNested(), is(false));
+        assertThat(analysis.disjoint(0, 1), is(true));
+        assertThat(analysis.implies(0, 2), is(true));
+        assertThat(analysis.getProblems(), is(Arrays.asList("LEVEL1 does not imply LEVEL2", "LEVEL2 does not imply LEVEL3")));
+        assertSameClassifications("X AND Y", "!X", "X OR Z");
+    }
+
+    @Test public void unsatisfiable() throws ParseException {
+        LevelAnalysis analysis = parse("X AND !X", "Y", "Y OR Z").analyzeLevels();
+        assertThat(analysis.satisfiable(0), is(false));
+        assertThat(analysis.getProblems(), is(Arrays.asList("LEVEL1 is not satisfiable")));
+        assertSameClassifications("X AND !X", "Y", "Y OR Z");
+    }
+
+    @Test public void budget() throws ParseException {
+        CaseDefinition cd = parse("X AND Y AND Z", "X AND (Y OR Z)", "X");
+        cd.setSolverBudget(new SolverBudget(0, 0, 1));
+        LevelAnalysis analysis = cd.analyzeLevels();
+        assertThat(analysis.isNested(), is(false));
+        assertThat(analysis.satisfiable(0), is(true));
+    }
+
+    @Test public void unknowns() throws ParseException {
+        LevelAnalysis analysis = parse("X AND Y", "X AND ?Y", "X").analyzeLevels();
+        assertThat(analysis.analyzed(1), is(false));
+        assertThat(analysis.implies(0, 2), is(true));
+        assertThat(analysis.implies(0, 1), is(false));
+        assertThat(analysis.getProblems(), is(Arrays.asList("LEVEL2 contains unknown literals and is not analyzed")));
+        assertSameClassifications(
+                "X AND (ATLEAST 2 FROM Y, !Z, W)",
+                "(X AND ?Y) OR (ATLEAST 2 FROM Y, !Z, W)",
+                "EXACTLY 1 FROM X, Y, (ATMOST 1 FROM Z, ?W)");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.brightoncollaboration.abc.Classification.Result;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @After public void tearDown() throws JMException {
+        AbcEngine.unregisterMetrics();
+        Metrics.reset();
+    }
+
+    @Test public void histogram() {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        assertThat(histogram.getQuantile(0.5), is(0L));
+        for (long value = 1; value <= 100; value++)
+            histogram.record(value);
+        assertThat(histogram.getCount(), is(100L));
+        assertThat(histogram.getMax(), is(100L));
+        assertThat(histogram.getMean(), is(50.5));
+        assertThat(histogram.getQuantile(0.5), is(63L));
+        assertThat(histogram.getQuantile(0.99), is(100L));
+    }
+
+    @Test public void disabled() throws ParseException {
+        CaseDefinition cd = AbcParser.parseCaseDefinition(
+                "CASEDEFINITION \"disabled\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (X OR Y)", Criterion.Creator.fromScratch());
+        cd.assignLevel(new Event());
+        assertThat(Metrics.getHistogram(Metrics.Stage.ASSIGN_LEVEL).getCount(), is(0L));
+        assertThat(Metrics.getResults("disabled").get(Result.CATEGORY4), is(0L));
+    }
+
+    @Test public void sameNames() throws ParseException {
+        Metrics.setEnabled(true);
+        Criterion.Creator cc = Criterion.Creator.fromScratch();
+        CaseDefinition cd1 = AbcParser.parseCaseDefinition(
+                "CASEDEFINITION \"same\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (X OR Y)", cc);
+        CaseDefinition cd2 = AbcParser.parseCaseDefinition(
+                "CASEDEFINITION \"same\" LEVEL1 (X) LEVEL2 (X) LEVEL3 (TRUE)", cc);
+        cd1.assignLevel(new Event());
+        cd2.assignLevels(Arrays.asList(new Event(), new Event().addSymptom(cc.getByShortName("X"), Value.POSITIVE)));
+        assertThat(Metrics.getResults(cd1).get(Result.CATEGORY4), is(1L));
+        assertThat(Metrics.getResults(cd2).get(Result.CATEGORY4), is(0L));
+        assertThat(Metrics.getResults(cd2).get(Result.LEVEL3), is(1L));
+        assertThat(Metrics.getResults(cd2).get(Result.LEVEL1), is(1L));
+        assertThat(Metrics.getResults("same").get(Result.CATEGORY4), is(1L));
+        assertThat(Metrics.getHistogram(Metrics.Stage.ASSIGN_LEVEL).getCount(), is(3L));
+        assertThat(Metrics.mxBean().getResultDistribution().size(), is(2));
+    }
+
+    @Test public void registered() throws ParseException, JMException {
+        ObjectName name = AbcEngine.registerMetrics();
+        assertThat(AbcEngine.registerMetrics(), is(name));
+        CaseDefinition cd = AbcParser.parseCaseDefinition(
+                "CASEDEFINITION \"registered\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (X OR Y)", Criterion.Creator.fromScratch());
+        cd.assignLevel(new Event());
+        assertThat(Metrics.getHistogram(Metrics.Stage.ASSIGN_LEVEL).getCount(), is(1L));
+        assertThat(Metrics.getHistogram(Metrics.Stage.PRECONDITION).getCount(), is(3L));
+        assertThat(Metrics.getHistogram(Metrics.Stage.FILL).getCount(), is(3L));
+        assertThat(Metrics.getHistogram(Metrics.Stage.SOLVE).getCount() > 0, is(true));
+        assertThat(Metrics.getResults("registered").get(Result.CATEGORY4), is(1L));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat((Boolean) server.getAttribute(name, "Enabled"), is(true));
+        assertThat((Long) server.getAttribute(name, "MaxCnfClauses") > 0, is(true));
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertThat(Metrics.getHistogram(Metrics.Stage.ASSIGN_LEVEL).getCount(), is(0L));
+
+        AbcEngine.unregisterMetrics();
+        assertThat(server.isRegistered(name), is(false));
+        assertThat(Metrics.isEnabled(), is(false));
+    }
+}
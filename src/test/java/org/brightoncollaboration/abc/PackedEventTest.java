@@ -0,0 +1,164 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.brightoncollaboration.abc.clause.Clause;
+import org.junit.Test;
+
+public class PackedEventTest {
+
+    private Criterion.Creator creator(String... names) throws AbcConfigurationException {
+        List<Criterion> criteria = new ArrayList<Criterion>();
+        for (String name : names)
+            criteria.add(new Criterion(name, name));
+        return new Criterion.Creator(criteria);
+    }
+
+    @Test public void ordinals() throws AbcConfigurationException {
+        Criterion.Creator cc = creator("a", "b", "c");
+        assertThat(cc.getOrdinalBound(), is(3));
+        for (int i = 0; i < 3; i++)
+            assertThat(cc.getByOrdinal(i).getOrdinal(), is(i));
+        assertThat(cc.getByOrdinal(3), nullValue());
+        assertThat(cc.getByShortName("b").getOrdinal(), is(1));
+    }
+
+    @Test public void sameAsEvent() throws AbcConfigurationException {
+        Criterion.Creator cc = creator("a", "b", "c", "d");
+        Criterion a = cc.getByShortName("a");
+        Criterion b = cc.getByShortName("b");
+        Criterion c = cc.getByShortName("c");
+        Criterion d = cc.getByShortName("d");
+        Event packed = new PackedEvent(cc).addSymptom(a, Value.POSITIVE).addSymptom(b, Value.NEGATIVE).addSymptom(c, Value.UNDEFINED);
+        Event event = new Event().addSymptom(a, Value.POSITIVE).addSymptom(b, Value.NEGATIVE).addSymptom(c, Value.UNDEFINED);
+        for (Criterion criterion : Arrays.asList(a, b, c, d))
+            assertThat(packed.valueOfCriterion(criterion), is(event.valueOfCriterion(criterion)));
+        assertThat(packed.getSymptoms(), is(event.getSymptoms()));
+        assertThat(packed.equals(event), is(true));
+        assertThat(event.equals(packed), is(true));
+        assertThat(packed.hashCode(), is(event.hashCode()));
+
+        packed.addSymptom(a, Value.NEGATIVE);
+        assertThat(packed.valueOfCriterion(a), is(Value.NEGATIVE));
+        assertThat(packed.extension(d, Value.POSITIVE).valueOfCriterion(d), is(Value.POSITIVE));
+        assertThat(packed.valueOfCriterion(d), is(Value.UNDEFINED));
+        assertThat(PackedEvent.copyOf(event, cc), is(event));
+    }
+
+    @Test public void foreignCriteria() throws AbcConfigurationException {
+        Criterion.Creator cc1 = creator("a", "b");
+        Criterion.Creator cc2 = creator("x", "y");
+        Criterion a = cc1.getByShortName("a");
+        Criterion x = cc2.getByShortName("x");
+        assertThat(a.getOrdinal(), is(x.getOrdinal()));
+        Event packed = new PackedEvent(cc1).addSymptom(a, Value.POSITIVE).addSymptom(x, Value.NEGATIVE);
+        assertThat(packed.valueOfCriterion(a), is(Value.POSITIVE));
+        assertThat(packed.valueOfCriterion(x), is(Value.NEGATIVE));
+        assertThat(packed.getSymptoms().size(), is(2));
+    }
+
+    @Test public void sharedCriteria() throws AbcConfigurationException {
+        Criterion x = new Criterion("x", "x");
+        Criterion.Creator cc1 = new Criterion.Creator(Arrays.asList(x));
+        Criterion.Creator cc2 = new Criterion.Creator(Arrays.asList(new Criterion("y", "y"), x));
+        assertThat(cc1.ordinalOf(x), is(0));
+        assertThat(cc2.ordinalOf(x), is(1));
+        assertThat(cc2.getOrdinalBound(), is(2));
+        assertThat(cc2.getByOrdinal(0).getShortName(), is("y"));
+        assertThat(cc2.getByOrdinal(1) == x, is(true));
+        Event packed = new PackedEvent(cc2).addSymptom(x, Value.NEGATIVE).addSymptom(cc2.getByShortName("y"), Value.POSITIVE);
+        assertThat(packed.valueOfCriterion(x), is(Value.NEGATIVE));
+        assertThat(packed.valueOfCriterion(cc2.getByShortName("y")), is(Value.POSITIVE));
+        assertThat(packed.getSymptoms().size(), is(2));
+    }
+
+    @Test public void equalCriteriaOfOtherCreators() throws AbcConfigurationException, ParseException, org.sat4j.specs.TimeoutException {
+        Criterion.Creator cc1 = creator("Other", "A", "B");
+        Criterion.Creator cc2 = creator("A", "B");
+        Criterion a1 = cc1.getByShortName("A");
+        Criterion a2 = cc2.getByShortName("A");
+        assertThat(a1.getOrdinal() == a2.getOrdinal(), is(false));
+        Event packed = new PackedEvent(cc2).addSymptom(a1, Value.POSITIVE);
+        assertThat(packed.valueOfCriterion(a2), is(Value.POSITIVE));
+        assertThat(packed.getSymptoms().size(), is(1));
+        // Values packed for the creator are not found by criteria of others
+        Event own = new PackedEvent(cc2).addSymptom(a2, Value.POSITIVE);
+        assertThat(own.valueOfCriterion(a1), is(Value.UNDEFINED));
+        assertThat(new Event().addSymptom(a2, Value.POSITIVE).valueOfCriterion(a1), is(Value.POSITIVE));
+        // Clauses of both creators are interned apart and hold their own criteria
+        AbcParser.parseClause("A AND B", cc1);
+        Clause clause = AbcParser.parseClause("A AND B", cc2);
+        assertThat(clause.precondition(packed).unparse(), is("B"));
+    }
+
+    @Test public void manyCriteria() throws AbcConfigurationException {
+        String[] names = new String[100];
+        for (int i = 0; i < names.length; i++)
+            names[i] = "c" + i;
+        Criterion.Creator cc = creator(names);
+        Event packed = new PackedEvent(cc);
+        for (int i = 0; i < names.length; i++)
+            packed.addSymptom(cc.getByShortName(names[i]), Value.values()[i % 3]);
+        for (int i = 0; i < names.length; i++)
+            assertThat(packed.valueOfCriterion(cc.getByShortName(names[i])), is(Value.values()[i % 3]));
+    }
+
+    @Test public void nextOrdinal() throws AbcConfigurationException {
+        String[] names = new String[200];
+        for (int i = 0; i < names.length; i++)
+            names[i] = "c" + i;
+        Criterion.Creator cc = creator(names);
+        PackedEvent packed = new PackedEvent(cc);
+        assertThat(packed.nextOrdinal(0), is(-1));
+        List<Integer> ordinals = Arrays.asList(0, 31, 32, 95, 199);
+        for (int ordinal : ordinals)
+            packed.addSymptom(cc.getByOrdinal(ordinal), Value.values()[ordinal % 3]);
+        Criterion foreign = new Criterion("foreign", "foreign");
+        packed.addSymptom(foreign, Value.POSITIVE);
+        List<Integer> visited = new ArrayList<Integer>();
+        for (int ordinal = packed.nextOrdinal(0); ordinal >= 0; ordinal = packed.nextOrdinal(ordinal + 1)) {
+            visited.add(ordinal);
+            assertThat(packed.valueOfOrdinal(ordinal), is(Value.values()[ordinal % 3]));
+        }
+        assertThat(visited, is(ordinals));
+        assertThat(packed.nextOrdinal(96), is(199));
+        assertThat(packed.nextOrdinal(200), is(-1));
+        assertThat(packed.valueOfOrdinal(1), nullValue());
+        assertThat(packed.getUnpackedSymptoms().keySet(), is(Collections.singleton(foreign)));
+    }
+
+    @Test public void precondition() throws AbcConfigurationException, ParseException, org.sat4j.specs.TimeoutException {
+        Criterion.Creator cc = creator("A", "B", "C");
+        Criterion a = cc.getByShortName("A");
+        Clause clause = AbcParser.parseClause("(ATLEAST 2 FROM A, !B, C) AND (NOT ?C)", cc);
+        for (Event event : new Event().extensions(Arrays.asList(a, cc.getByShortName("B"))))
+            assertThat(clause.precondition(PackedEvent.copyOf(event, cc)), is(clause.precondition(event)));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.Relation;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecursiveDescentParserTest {
+
+    private Criterion.Creator cc;
+
+    @Before public void setUp() {
+        cc = Criterion.Creator.fromScratch();
+    }
+
+    private static final String[] CLAUSES = {
+        "TRUE", "NOTAPPLICABLE", "X", "!X", "?X", "X1_a", "NOT X", "NOT (X AND Y)", "AND X, Y, Z", "AND", "OR X, !Y",
+        "ATLEAST 2 FROM X, Y, Z", "ATMOST 0 FROM", "EXACTLY 1 FROM X, (Y OR Z), TRUE",
+        "X AND Y AND Z", "X OR Y", "(X AND Y) OR (NOT Z)", "(ATLEAST 1 FROM X, Y) AND ?Z",
+        "X /* comment */ AND // line\n Y",
+        // Errors
+        "", "x", "(X)", "X AND Y OR Z", "NOT X AND Y", "NOT", "X AND", "AND x", "! x", "ATLEAST FROM X",
+        "ATLEAST 1 X", "X Y", "(X AND Y", "X AND Y)", "X # Y", "X /* open", "EXACTLY 99999999999 FROM X",
+        "AND X, NOT Y", "LEVEL1",
+    };
+
+    private static final String[] CASE_DEFINITIONS = {
+        "CASEDEFINITION \"abc\" LEVEL1 (X) LEVEL2 (Y) LEVEL3 (Z)",
+        "CASEDEFINITION 'abc' LEVEL1 (X AND Y) LEVEL2 (ATLEAST 1 FROM X, Y) LEVEL3 (TRUE)",
+        "CASEDEFINITION en: \"abc\" fr: \"gu\"\nLEVEL1 ( X )\nLEVEL2 ( Y )\nLEVEL3 ( Z )",
+        // Errors
+        "CASEDEFINITION abc LEVEL1 (X) LEVEL2 (Y) LEVEL3 (Z)",
+        "CASEDEFINITION \"abc\" LEVEL1 (X) LEVEL3 (Z)",
+        "CASEDEFINITION \"abc LEVEL1 (X) LEVEL2 (Y) LEVEL3 (Z)",
+        "CASEDEFINITION \"abc\" LEVEL1 (X) LEVEL2 (Y) LEVEL3 (Z) X",
+    };
+
+    private static Object scala(String str, Criterion.Creator cc, boolean caseDefinition) {
+        try {
+            return caseDefinition ? AbcParser.parseCaseDefinition(str, cc) : AbcParser.parseClause(str, cc);
+        } catch (ParseException exc) {
+            return null;
+        } catch (NumberFormatException exc) {
+            return null; // Numbers are not checked by CaseDefinitionParser
+        }
+    }
+
+    private static Object java(String str, Criterion.Creator cc, boolean caseDefinition) {
+        try {
+            return caseDefinition ? RecursiveDescentParser.parseCaseDefinition(str, cc) : RecursiveDescentParser.parseClause(str, cc);
+        } catch (ParseException exc) {
+            return null;
+        }
+    }
+
+    @Test public void sameAsScala() {
+        for (String str : CLAUSES)
+            assertThat(str, java(str, cc, false), is(scala(str, cc, false)));
+        for (String str : CASE_DEFINITIONS) {
+            CaseDefinition expected = (CaseDefinition) scala(str, cc, true);
+            CaseDefinition actual = (CaseDefinition) java(str, cc, true);
+            assertThat(str, actual, is(expected));
+            if (expected != null)
+                assertThat(str, actual.getName().getLanguages(), is(expected.getName().getLanguages()));
+        }
+    }
+
+    private Clause random(Random random, int depth) {
+        int choice = random.nextInt(depth == 0 ? 2 : 5);
+        switch (choice) {
+        case 0:
+            return Clause.criterion(cc.getByShortName("C" + random.nextInt(5)), Value.values()[random.nextInt(3)]);
+        case 1:
+            return random.nextBoolean() ? Clause.tru() : Clause.fals();
+        case 2:
+            return Clause.not(random(random, depth - 1));
+        default:
+            Clause[] clauses = new Clause[random.nextInt(4)];
+            for (int i = 0; i < clauses.length; i++)
+                clauses[i] = random(random, depth - 1);
+            if (choice == 3)
+                return Clause.and(clauses);
+            return Clause.nlist(Relation.values()[random.nextInt(3)], random.nextInt(3), clauses);
+        }
+    }
+
+    @Test public void randomClauses() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            String str = random(random, 4).unparse();
+            assertThat(str, java(str, cc, false), is(scala(str, cc, false)));
+        }
+    }
+
+    private static ParseException error(String str) {
+        try {
+            RecursiveDescentParser.parseClause(str, Criterion.Creator.fromScratch());
+        } catch (ParseException exc) {
+            return exc;
+        }
+        fail(str);
+        return null;
+    }
+
+    @Test public void errors() throws AbcConfigurationException {
+        assertThat(error("x").getMessage(), is("Only constants, criteria and parenthesize clauses allowed here"));
+        assertThat(error("x").getErrorOffset(), is(0));
+        assertThat(error("X AND\n  (Y OR").getErrorOffset(), is(13));
+        assertThat(error("X AND\n  (Y OR").getMessage(), is("Only constants, criteria and parenthesize clauses allowed here"));
+        assertThat(error("(X AND Y").getMessage(), is("`)' expected but end of input found"));
+        assertThat(error("ATLEAST 1 X").getMessage(), is("`FROM' expected but `X' found"));
+        assertThat(RecursiveDescentParser.position("X AND\n  (Y OR", 13), is("2:8"));
+        Criterion.Creator creator = new Criterion.Creator(Arrays.asList(new Criterion("X", "X")));
+        try {
+            RecursiveDescentParser.parseClause("X AND Y", creator);
+            fail();
+        } catch (ParseException exc) {
+            assertThat(exc.getMessage(), is("Unknown criterion Y"));
+            assertThat(exc.getErrorOffset(), is(6));
+        }
+    }
+
+    @Test public void files() throws Exception {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 8; i++)
+            files.add(write(String.format("CASEDEFINITION \"cd%d\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (X OR Y)", i)));
+        try {
+            Map<File, CaseDefinition> res = RecursiveDescentParser.parseCaseDefinitions(files, cc, 3);
+            assertThat(new ArrayList<File>(res.keySet()), is(files));
+            for (int i = 0; i < files.size(); i++)
+                assertThat(res.get(files.get(i)).getName().defaultTranslation(), is("cd" + i));
+            files.add(2, write("CASEDEFINITION \"bad\"\nLEVEL1 (X AND)"));
+            try {
+                RecursiveDescentParser.parseCaseDefinitions(files, cc, 3);
+                fail();
+            } catch (ParseException exc) {
+                assertThat(exc.getMessage(), is(files.get(2) + ":2:14: Only constants, criteria and parenthesize clauses allowed here"));
+            }
+        } finally {
+            for (File file : files)
+                file.delete();
+        }
+    }
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("casedefinition", ".abc");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+}
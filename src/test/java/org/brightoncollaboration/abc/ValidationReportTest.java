@@ -0,0 +1,77 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValidationReportTest {
+
+    private Criterion.Creator cc;
+    private Map<String, CaseDefinition> cds;
+
+    @Before public void setUp() throws ParseException, AbcConfigurationException {
+        cc = new Criterion.Creator(Arrays.asList(new Criterion("X", "X"), new Criterion("Y", "Y"), new Criterion("Unused", "Unused")));
+        cds = new LinkedHashMap<String, CaseDefinition>();
+        cds.put("known", AbcParser.parseCaseDefinition("CASEDEFINITION \"known\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (X OR Y)", cc));
+        cds.put("unnested", AbcParser.parseCaseDefinition("CASEDEFINITION \"unnested\" LEVEL1 (X) LEVEL2 (Y) LEVEL3 (!X)", cc));
+    }
+
+    @Test public void valid() throws InterruptedException, AbcConfigurationException {
+        AbcData data = AbcData.staticData(cc, cds);
+        ValidationReport report = data.validationReport(2);
+        assertThat(report.isValid(), is(true));
+        assertThat(report.getMissingCriteria().isEmpty(), is(true));
+        assertThat(report.getIrrelevantCriteria(), is(Collections.singleton(cc.getByShortName("Unused"))));
+        assertThat(cds.get("unnested").getLevelAnalysis() == null, is(true));
+        data.validate();
+        assertThat(cds.get("known").getLevelAnalysis().isNested(), is(true));
+        assertThat(cds.get("unnested").getLevelAnalysis().isNested(), is(false));
+    }
+
+    @Test public void missing() throws InterruptedException, ParseException {
+        Criterion.Creator other = Criterion.Creator.fromScratch();
+        cds.put("other", AbcParser.parseCaseDefinition("CASEDEFINITION \"other\" LEVEL1 (Q AND X) LEVEL2 (Q) LEVEL3 (TRUE)", other));
+        AbcData data = AbcData.staticData(cc, cds);
+        for (int parallelism = 1; parallelism <= 4; parallelism++) {
+            ValidationReport report = data.validationReport(parallelism);
+            assertThat(report.isValid(), is(false));
+            assertThat(report.getMissingCriteria().keySet(), is(Collections.singleton("other")));
+            assertThat(report.getMissingCriteria().get("other"), is(Collections.singleton(other.getByShortName("Q"))));
+        }
+        assertThat(data.missingCriteria().size(), is(1));
+        try {
+            data.validate();
+            throw new AssertionError("Missing criteria accepted");
+        } catch (AbcConfigurationException exc) {
+            assertThat(exc.getMessage().contains("Q"), is(true));
+        }
+        assertThat(cds.get("other").getLevelAnalysis() == null, is(true));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import static org.brightoncollaboration.abc.Value.NEGATIVE;
+import static org.brightoncollaboration.abc.Value.POSITIVE;
+import static org.brightoncollaboration.abc.Value.UNDEFINED;
+import static org.brightoncollaboration.abc.clause.Clause.and;
+import static org.brightoncollaboration.abc.clause.Clause.criterion;
+import static org.brightoncollaboration.abc.clause.Clause.fals;
+import static org.brightoncollaboration.abc.clause.Clause.nlist;
+import static org.brightoncollaboration.abc.clause.Clause.not;
+import static org.brightoncollaboration.abc.clause.Clause.tru;
+import static org.brightoncollaboration.abc.clause.Relation.AT_LEAST;
+import static org.brightoncollaboration.abc.clause.Relation.AT_MOST;
+import static org.brightoncollaboration.abc.clause.Relation.EXACTLY;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+public class BinaryDecisionDiagramTest {
+
+    Criterion.Creator cc = Criterion.Creator.fromScratch();
+    Criterion a = cc.getByShortName("a");
+    Criterion b = cc.getByShortName("b");
+    Criterion c = cc.getByShortName("c");
+
+    @Test public void preconditions() throws TimeoutException {
+        Clause aCrit = criterion(a, POSITIVE);
+        Clause bCrit = criterion(b, POSITIVE);
+        Clause cCrit = criterion(c, POSITIVE);
+        List<Clause> clauses = Arrays.asList(
+            tru(), fals(), aCrit, not(aCrit), criterion(a, UNDEFINED), not(criterion(b, UNDEFINED)),
+            and(aCrit, not(aCrit)),
+            and(aCrit, criterion(b, NEGATIVE)),
+            nlist(AT_LEAST, 1, aCrit, not(aCrit)),
+            nlist(AT_LEAST, 2, aCrit, bCrit, cCrit),
+            nlist(AT_MOST, 1, aCrit, criterion(b, UNDEFINED), and(bCrit, cCrit)),
+            nlist(EXACTLY, 2, aCrit, not(bCrit), nlist(AT_LEAST, 1, aCrit, cCrit)),
+            nlist(EXACTLY, 0, aCrit, bCrit)
+        );
+        List<Criterion> criteria = Arrays.asList(a, b, c);
+        for (Clause clause : clauses) {
+            BinaryDecisionDiagram diagram = clause.toBinaryDecisionDiagram();
+            for (Event event : new Event().extensions(criteria))
+                assertThat(clause.toString() + " " + event.toString(),
+                        clause.precondition(event, diagram), is(clause.precondition(event)));
+        }
+    }
+
+    @Test public void nodeCount() {
+        assertThat(tru().toBinaryDecisionDiagram().getNodeCount(), is(2));
+        assertThat(and(criterion(a, POSITIVE), criterion(b, POSITIVE)).toBinaryDecisionDiagram().getNodeCount(), is(4));
+        assertThat(nlist(AT_LEAST, 1, criterion(a, POSITIVE), not(criterion(a, POSITIVE))).toBinaryDecisionDiagram().getNodeCount(), is(2));
+
+        // ATLEAST 3 FROM 20 criteria needs a node per counter state and criterion
+        List<Clause> criteria = new LinkedList<Clause>();
+        for (int i = 0; i < 20; i++)
+            criteria.add(criterion(cc.getByShortName("m" + i), POSITIVE));
+        BinaryDecisionDiagram diagram = new NListClause(AT_LEAST, 3, criteria).toBinaryDecisionDiagram();
+        assertThat(diagram.getVariableCount(), is(20));
+        assertThat(diagram.getNodeCount() <= 2 + 3 * 20, is(true));
+        assertThat(diagram.isSatisfiable(new Event()), is(true));
+        assertThat(diagram.isTautology(new Event()), is(false));
+    }
+}
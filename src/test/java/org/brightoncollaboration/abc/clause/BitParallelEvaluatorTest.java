@@ -0,0 +1,109 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import static org.brightoncollaboration.abc.Value.NEGATIVE;
+import static org.brightoncollaboration.abc.Value.POSITIVE;
+import static org.brightoncollaboration.abc.Value.UNDEFINED;
+import static org.brightoncollaboration.abc.clause.Clause.and;
+import static org.brightoncollaboration.abc.clause.Clause.criterion;
+import static org.brightoncollaboration.abc.clause.Clause.fals;
+import static org.brightoncollaboration.abc.clause.Clause.nlist;
+import static org.brightoncollaboration.abc.clause.Clause.not;
+import static org.brightoncollaboration.abc.clause.Clause.tru;
+import static org.brightoncollaboration.abc.clause.Relation.AT_LEAST;
+import static org.brightoncollaboration.abc.clause.Relation.AT_MOST;
+import static org.brightoncollaboration.abc.clause.Relation.EXACTLY;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.tools.StringI18n;
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+public class BitParallelEvaluatorTest {
+
+    Criterion.Creator cc = Criterion.Creator.fromScratch();
+    Criterion a = cc.getByShortName("a");
+    Criterion b = cc.getByShortName("b");
+    Criterion c = cc.getByShortName("c");
+    Criterion d = cc.getByShortName("d");
+
+    List<Event> events = new ArrayList<Event>(new Event().extensions(Arrays.asList(a, b, c, d)));
+
+    @Test public void decidedLanesAreConstantPreconditions() throws TimeoutException {
+        Clause aCrit = criterion(a, POSITIVE);
+        Clause bCrit = criterion(b, POSITIVE);
+        Clause cCrit = criterion(c, POSITIVE);
+        List<Clause> clauses = Arrays.asList(
+            tru(), fals(), aCrit, not(aCrit), criterion(a, UNDEFINED), not(criterion(b, UNDEFINED)),
+            and(aCrit, criterion(b, NEGATIVE)),
+            nlist(AT_LEAST, 2, aCrit, bCrit, cCrit),
+            nlist(AT_MOST, 1, aCrit, criterion(b, UNDEFINED), and(bCrit, cCrit)),
+            nlist(EXACTLY, 2, aCrit, not(bCrit), nlist(AT_LEAST, 1, aCrit, cCrit)),
+            nlist(EXACTLY, 0, aCrit, bCrit),
+            nlist(AT_LEAST, 3, aCrit, bCrit)
+        );
+        for (Clause clause : clauses) {
+            for (int start = 0; start < events.size(); start += BitParallelEvaluator.LANES) {
+                List<Event> block = events.subList(start, Math.min(start + BitParallelEvaluator.LANES, events.size()));
+                BitParallelEvaluator.Lanes lanes = clause.acceptVisitor(new BitParallelEvaluator(block));
+                for (int lane = 0; lane < block.size(); lane++) {
+                    Event event = block.get(lane);
+                    Clause filled = clause.fillEvent(event).simplify();
+                    String msg = clause + " " + event;
+                    assertThat(msg, lanes.isTrue(lane), is(filled.isTrue()));
+                    assertThat(msg, lanes.isFalse(lane), is(filled.isFalse()));
+                }
+            }
+        }
+    }
+
+    @Test public void undecidedLanes() {
+        Clause clause = nlist(AT_LEAST, 1, criterion(a, POSITIVE), criterion(a, NEGATIVE));
+        BitParallelEvaluator.Lanes lanes = clause.acceptVisitor(new BitParallelEvaluator(Arrays.asList(new Event())));
+        assertThat(lanes.getDecided(), is(0L));
+    }
+
+    @Test public void assignLevels() {
+        CaseDefinition cd = new CaseDefinition(StringI18n.singleton("bit-parallel"),
+                and(criterion(a, POSITIVE), nlist(AT_LEAST, 2, criterion(b, POSITIVE), criterion(c, NEGATIVE), criterion(d, UNDEFINED))),
+                nlist(AT_LEAST, 1, criterion(a, POSITIVE), criterion(a, NEGATIVE)),
+                nlist(EXACTLY, 1, criterion(b, POSITIVE), criterion(c, POSITIVE)));
+        List<Classification> classifications = cd.assignLevels(events);
+        assertThat(classifications.size(), is(events.size()));
+        for (int i = 0; i < events.size(); i++) {
+            Classification expected = cd.assignLevel(events.get(i));
+            Classification actual = classifications.get(i);
+            assertThat(events.get(i).toString(), actual.getResult(), is(expected.getResult()));
+            assertThat(events.get(i).toString(), actual.getPrecondition1(), is(expected.getPrecondition1()));
+            assertThat(events.get(i).toString(), actual.getPrecondition2(), is(expected.getPrecondition2()));
+            assertThat(events.get(i).toString(), actual.getPrecondition3(), is(expected.getPrecondition3()));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import static org.brightoncollaboration.abc.Value.NEGATIVE;
+import static org.brightoncollaboration.abc.Value.POSITIVE;
+import static org.brightoncollaboration.abc.clause.Clause.and;
+import static org.brightoncollaboration.abc.clause.Clause.criterion;
+import static org.brightoncollaboration.abc.clause.Clause.nlist;
+import static org.brightoncollaboration.abc.clause.Clause.not;
+import static org.brightoncollaboration.abc.clause.Relation.AT_LEAST;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.DaemonThreadFactory;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.clause.visitor.ClauseSimplifier;
+import org.brightoncollaboration.abc.clause.visitor.FillEvent;
+import org.brightoncollaboration.abc.clause.visitor.NegationNormalForm;
+import org.junit.Test;
+
+public class ClauseFactoryTest {
+
+    Criterion.Creator cc = Criterion.Creator.fromScratch();
+    Criterion a = cc.getByShortName("a");
+    Criterion b = cc.getByShortName("b");
+    Criterion c = cc.getByShortName("c");
+
+    @Test public void interning() {
+        Clause c1 = and(criterion(a, POSITIVE), nlist(AT_LEAST, 1, criterion(b, NEGATIVE), criterion(c, POSITIVE)));
+        Clause c2 = and(criterion(a, POSITIVE), nlist(AT_LEAST, 1, criterion(b, NEGATIVE), criterion(c, POSITIVE)));
+        assertThat(c2, sameInstance(c1));
+        assertThat(c2.hashCode(), is(c1.hashCode()));
+        assertThat(criterion(a, POSITIVE), not(is(criterion(a, NEGATIVE))));
+        assertThat(ClauseFactory.constant(true), sameInstance((Clause) ConstantClause.TRUE));
+    }
+
+    @Test public void constructedClausesAreEqual() {
+        Clause constructed = new AndClause(Arrays.asList((Clause)
+                new CriterionClause(a, POSITIVE),
+                new NotClause(new CriterionClause(b, POSITIVE))));
+        Clause interned = and(criterion(a, POSITIVE), not(criterion(b, POSITIVE)));
+        assertThat(constructed, is(interned));
+        assertThat(interned, is(constructed));
+        assertThat(constructed.hashCode(), is(interned.hashCode()));
+        assertThat(ClauseFactory.intern(constructed), sameInstance(interned));
+    }
+
+    @Test public void criteriaOfOtherCreatorsAreNotInterned() throws Exception {
+        Criterion.Creator creatorA = new Criterion.Creator(Arrays.asList(new Criterion("X", "Fever"), new Criterion("Y", "Rash")));
+        Criterion.Creator creatorB = new Criterion.Creator(Arrays.asList(new Criterion("X", "Pyrexia"), new Criterion("Y", "Exanthema")));
+        Clause parsedA = AbcParser.parseClause("X AND !Y", creatorA);
+        Clause parsedB = AbcParser.parseClause("X AND !Y", creatorB);
+        assertThat(parsedB, not(sameInstance(parsedA)));
+        for (int i = 0; i < 2; i++) {
+            CriterionClause literalA = (CriterionClause) ((AndClause) parsedA).getClauses().get(i);
+            CriterionClause literalB = (CriterionClause) ((AndClause) parsedB).getClauses().get(i);
+            assertThat(literalA.getCriterion(), sameInstance(creatorA.getByShortName(literalA.getCriterionID())));
+            assertThat(literalB.getCriterion(), sameInstance(creatorB.getByShortName(literalB.getCriterionID())));
+        }
+        assertThat(AbcParser.parseClause("X AND !Y", creatorB), sameInstance(parsedB));
+    }
+
+    @Test(timeout = 60000) public void concurrentInterning() throws Exception {
+        final Criterion[] criteria = new Criterion[50];
+        for (int i = 0; i < criteria.length; i++)
+            criteria[i] = cc.getByShortName("concurrent" + i);
+        ExecutorService executor = Executors.newFixedThreadPool(4, new DaemonThreadFactory("abc-test-"));
+        try {
+            List<Future<List<Clause>>> futures = new ArrayList<Future<List<Clause>>>();
+            for (int t = 0; t < 4; t++)
+                futures.add(executor.submit(new Callable<List<Clause>>() {
+                    public List<Clause> call() {
+                        List<Clause> res = new ArrayList<Clause>();
+                        for (int i = 0; i + 1 < criteria.length; i++)
+                            res.add(and(criterion(criteria[i], POSITIVE), criterion(criteria[i + 1], NEGATIVE)));
+                        return res;
+                    }
+                }));
+            List<Clause> first = futures.get(0).get();
+            for (Future<List<Clause>> future : futures) {
+                List<Clause> clauses = future.get();
+                for (int i = 0; i < clauses.size(); i++)
+                    assertThat(clauses.get(i), sameInstance(first.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test public void visitorsShareSubtrees() {
+        Clause shared = nlist(AT_LEAST, 1, criterion(b, POSITIVE), criterion(c, POSITIVE));
+        Clause c1 = and(criterion(a, POSITIVE), shared);
+        Clause c2 = and(criterion(a, NEGATIVE), shared);
+        Event event = new Event().addSymptom(a, POSITIVE);
+
+        Clause filled1 = c1.acceptVisitor(new FillEvent(event));
+        Clause filled2 = c2.acceptVisitor(new FillEvent(event));
+        assertThat(((AndClause) filled1).getClauses().get(1),
+                sameInstance(((AndClause) filled2).getClauses().get(1)));
+
+        assertThat(filled1.acceptVisitor(new ClauseSimplifier()), sameInstance(shared));
+        assertThat(not(not(shared)).acceptVisitor(new NegationNormalForm()), sameInstance(shared));
+    }
+}
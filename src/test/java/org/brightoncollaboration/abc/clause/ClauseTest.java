@@ -33,6 +33,7 @@ import static org.brightoncollaboration.abc.clause.Relation.AT_MOST;
 import static org.brightoncollaboration.abc.clause.Relation.EXACTLY;
 import static org.hamcrest.Matchers.equalToIgnoringWhiteSpace;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
@@ -55,6 +56,7 @@ import org.brightoncollaboration.abc.Criterion;
 import org.brightoncollaboration.abc.Event;
 import org.brightoncollaboration.abc.clause.visitor.CNFClause;
 import org.brightoncollaboration.abc.clause.visitor.CNFConjunction;
+import org.brightoncollaboration.abc.clause.visitor.CNFEncoding;
 import org.brightoncollaboration.abc.clause.visitor.CNFLiteral;
 import org.brightoncollaboration.abc.clause.visitor.NegationNormalForm;
 import org.brightoncollaboration.abc.clause.visitor.Visitor;
@@ -319,6 +321,76 @@ public class ClauseTest {
                 is(nlist(AT_LEAST, 1, not(aCrit), not(bCrit), not(cCrit)).toCNFConjunction()));
     }
 
+    @Test public void tseitin() throws TimeoutException {
+        Clause aCrit = criterion(a, POSITIVE);
+        Clause bCrit = criterion(b, POSITIVE);
+        Clause cCrit = criterion(c, POSITIVE);
+        List<Clause> clauses = Arrays.asList(
+            tru(), fals(), aCrit, not(aCrit), and(), nlist(AT_LEAST, 1),
+            and(aCrit, not(aCrit)),
+            nlist(AT_LEAST, 1, aCrit, not(aCrit)),
+            nlist(AT_LEAST, 2, aCrit, bCrit, cCrit),
+            nlist(AT_MOST, 1, aCrit, bCrit, and(bCrit, cCrit)),
+            nlist(EXACTLY, 2, aCrit, not(bCrit), nlist(AT_LEAST, 1, aCrit, cCrit)),
+            and(nlist(EXACTLY, 1, aCrit, bCrit), aCrit, bCrit),
+            nlist(AT_LEAST, 4, aCrit, bCrit, cCrit),
+            nlist(AT_MOST, 0, aCrit, bCrit, cCrit),
+            nlist(EXACTLY, 0, aCrit, bCrit)
+        );
+        for (Clause clause : clauses) {
+            assertThat(clause.isSatisfiable(CNFEncoding.TSEITIN),
+                    is(clause.isSatisfiable(CNFEncoding.DISTRIBUTIVE)));
+            assertThat(clause.isTautology(CNFEncoding.TSEITIN),
+                    is(clause.isTautology(CNFEncoding.DISTRIBUTIVE)));
+        }
+    }
+
+    @Test public void tseitinIsLinear() throws TimeoutException {
+        // (a1 ∧ b1) ∨ ... ∨ (a20 ∧ b20) has 2^20 clauses when distributed
+        List<Clause> conjunctions = new LinkedList<Clause>();
+        for (int i = 0; i < 20; i++)
+            conjunctions.add(and(criterion(cc.getByShortName("a" + i), POSITIVE),
+                                 criterion(cc.getByShortName("b" + i), POSITIVE)));
+        Clause disjunction = new NListClause(AT_LEAST, 1, conjunctions);
+        assertThat(disjunction.toCNFConjunction(CNFEncoding.TSEITIN).getClauses().size(), lessThan(100));
+        assertThat(disjunction.isSatisfiable(), is(true));
+        assertThat(disjunction.isTautology(), is(false));
+    }
+
+    @Test public void tseitinCardinality() throws TimeoutException {
+        int size = 5;
+        List<Clause> criteria = new LinkedList<Clause>();
+        for (int i = 0; i < size; i++)
+            criteria.add(criterion(cc.getByShortName("n" + i), POSITIVE));
+        for (int assignment = 0; assignment < (1 << size); assignment++) {
+            List<Clause> fixed = new LinkedList<Clause>();
+            for (int i = 0; i < size; i++)
+                fixed.add(criterion(cc.getByShortName("n" + i), (assignment & (1 << i)) != 0 ? POSITIVE : NEGATIVE));
+            int count = Integer.bitCount(assignment);
+            for (int number = 0; number <= size + 1; number++) {
+                for (Relation rel : Relation.values()) {
+                    boolean expected = rel == AT_LEAST ? count >= number
+                                     : rel == AT_MOST ? count <= number
+                                     : count == number;
+                    List<Clause> conjunction = new LinkedList<Clause>(fixed);
+                    conjunction.add(new NListClause(rel, number, criteria));
+                    assertThat(new AndClause(conjunction).isSatisfiable(CNFEncoding.TSEITIN), is(expected));
+                }
+            }
+        }
+    }
+
+    @Test public void tseitinCardinalityIsPolynomial() throws TimeoutException {
+        List<Clause> criteria = new LinkedList<Clause>();
+        for (int i = 0; i < 20; i++)
+            criteria.add(criterion(cc.getByShortName("m" + i), POSITIVE));
+        Clause atLeast = new NListClause(AT_LEAST, 3, criteria);
+        assertThat(atLeast.toCNFConjunction(CNFEncoding.TSEITIN).getClauses().size(), lessThan(4 * 3 * 18 + 1));
+        assertThat(atLeast.isSatisfiable(), is(true));
+        assertThat(atLeast.isTautology(), is(false));
+        assertThat(new NListClause(EXACTLY, 10, criteria).isSatisfiable(), is(true));
+    }
+
     @Test public void minimize() throws TimeoutException {
 
         assertThat(tru().minimize(),
@@ -0,0 +1,171 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.clause;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.visitor.CNFEncoding;
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+import org.sat4j.tools.SolverDecorator;
+
+public class SolverBudgetTest {
+
+    /** Pigeons into one hole less, which is unsatisfiable and hard for
+     *  resolution.
+     */
+    private static Clause pigeonhole(int pigeons) {
+        Criterion.Creator cc = Criterion.Creator.fromScratch();
+        Clause[][] in = new Clause[pigeons][pigeons - 1];
+        for (int p = 0; p < pigeons; p++)
+            for (int h = 0; h < pigeons - 1; h++)
+                in[p][h] = ClauseFactory.criterion(cc.getByShortName("Pigeon" + p + "Hole" + h), Value.POSITIVE);
+        List<Clause> constraints = new ArrayList<Clause>();
+        for (int p = 0; p < pigeons; p++)
+            constraints.add(Clause.nlist(Relation.AT_LEAST, 1, in[p]));
+        for (int h = 0; h < pigeons - 1; h++) {
+            Clause[] hole = new Clause[pigeons];
+            for (int p = 0; p < pigeons; p++)
+                hole[p] = in[p][h];
+            constraints.add(Clause.nlist(Relation.AT_MOST, 1, hole));
+        }
+        return Clause.and(constraints.toArray(new Clause[constraints.size()]));
+    }
+
+    private static BudgetExceededException.Limit exceeded(Clause clause, SolverBudget budget) throws TimeoutException {
+        try {
+            clause.isSatisfiable(CNFEncoding.TSEITIN, budget);
+        } catch (BudgetExceededException exc) {
+            return exc.getLimit();
+        }
+        fail("Budget not exceeded");
+        return null;
+    }
+
+    @Test public void unlimited() throws TimeoutException {
+        assertThat(pigeonhole(5).isSatisfiable(CNFEncoding.TSEITIN, SolverBudget.UNLIMITED), is(false));
+    }
+
+    @Test public void conflicts() throws TimeoutException {
+        assertThat(exceeded(pigeonhole(8), new SolverBudget(0, 10, 0)), is(BudgetExceededException.Limit.CONFLICTS));
+    }
+
+    @Test public void time() throws TimeoutException {
+        assertThat(exceeded(pigeonhole(11), new SolverBudget(50, 0, 0)), is(BudgetExceededException.Limit.TIME));
+        assertThat(exceeded(pigeonhole(11), new SolverBudget(50, Integer.MAX_VALUE, 0)), is(BudgetExceededException.Limit.TIME));
+    }
+
+    @Test public void size() throws TimeoutException {
+        assertThat(exceeded(pigeonhole(5), new SolverBudget(0, 0, 10)), is(BudgetExceededException.Limit.CNF_SIZE));
+    }
+
+    /** The clauses of pigeonhole(pigeons) directly for sat4j.
+     */
+    private static ISolver pigeonholeSolver(int pigeons) throws ContradictionException {
+        ISolver solver = SolverFactory.instance().defaultSolver();
+        solver.newVar(pigeons * (pigeons - 1));
+        for (int p = 0; p < pigeons; p++) {
+            int[] holes = new int[pigeons - 1];
+            for (int h = 0; h < pigeons - 1; h++)
+                holes[h] = p * (pigeons - 1) + h + 1;
+            solver.addClause(new VecInt(holes));
+        }
+        for (int h = 0; h < pigeons - 1; h++)
+            for (int p = 0; p < pigeons; p++)
+                for (int q = p + 1; q < pigeons; q++)
+                    solver.addClause(new VecInt(new int[] { -(p * (pigeons - 1) + h + 1), -(q * (pigeons - 1) + h + 1) }));
+        return solver;
+    }
+
+    @Test(timeout = 60000) public void interruptBeforeSolve() throws Exception {
+        final CountDownLatch registered = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        // Holds the search back until the solver was interrupted
+        final ISolver solver = new SolverDecorator(pigeonholeSolver(12)) {
+            private static final long serialVersionUID = 1L;
+            @Override public boolean isSatisfiable() throws TimeoutException {
+                registered.countDown();
+                boolean wasInterrupted = false;
+                while (interrupted.getCount() > 0) {
+                    try {
+                        interrupted.await();
+                    } catch (InterruptedException exc) {
+                        wasInterrupted = true;
+                    }
+                }
+                if (wasInterrupted)
+                    Thread.currentThread().interrupt();
+                return super.isSatisfiable();
+            }
+        };
+        final BudgetExceededException.Limit[] limit = new BudgetExceededException.Limit[1];
+        Thread thread = new Thread() {
+            @Override public void run() {
+                try {
+                    SolverBudget.UNLIMITED.isSatisfiable(solver);
+                } catch (BudgetExceededException exc) {
+                    limit[0] = exc.getLimit();
+                } catch (TimeoutException exc) {
+                    // Leaves limit null
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        registered.await();
+        thread.interrupt();
+        SolverBudget.interrupt(thread);
+        interrupted.countDown();
+        thread.join();
+        assertThat(limit[0], is(BudgetExceededException.Limit.INTERRUPTED));
+    }
+
+    @Test public void errorReason() throws ParseException {
+        CaseDefinition cd = AbcParser.parseCaseDefinition(
+                "CASEDEFINITION \"budget\" LEVEL1 (X AND Y) LEVEL2 (X OR Y) LEVEL3 (ATLEAST 2 FROM X, Y, Z)",
+                Criterion.Creator.fromScratch());
+        Event event = new Event();
+        assertThat(cd.assignLevel(event).getResult(), is(Classification.Result.CATEGORY4));
+        cd.setSolverBudget(new SolverBudget(0, 0, 1));
+        Classification classification = cd.assignLevel(event);
+        assertThat(classification.getResult(), is(Classification.Result.ERROR));
+        assertThat(classification.getErrorReason(), is(Classification.ErrorReason.CNF_SIZE_LIMIT));
+        cd.setSolverBudget(null);
+        assertThat(cd.assignLevel(event, new SolverBudget(0, 0, 1)).getErrorReason(), is(Classification.ErrorReason.CNF_SIZE_LIMIT));
+        assertThat(cd.assignLevel(event, SolverBudget.UNLIMITED).getResult(), is(Classification.Result.CATEGORY4));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.clause.visitor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Event;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.AndClause;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.ConstantClause;
+import org.brightoncollaboration.abc.clause.CriterionClause;
+import org.brightoncollaboration.abc.clause.NListClause;
+import org.brightoncollaboration.abc.clause.NotClause;
+import org.brightoncollaboration.abc.clause.Relation;
+import org.junit.Test;
+
+public class FillAndSimplifyTest {
+
+    Criterion.Creator cc = Criterion.Creator.fromScratch();
+    Criterion a = cc.getByShortName("a");
+    Criterion b = cc.getByShortName("b");
+    Criterion c = cc.getByShortName("c");
+    List<Criterion> criteria = Arrays.asList(a, b, c);
+
+    Random random = new Random(42);
+
+    /** Random clauses built by the constructors, i.e. not interned and not
+     *  simplified.
+     */
+    private Clause random(int depth) {
+        int kind = random.nextInt(depth == 0 ? 2 : 5);
+        switch (kind) {
+        case 0:
+            return random.nextInt(8) == 0 ? (random.nextBoolean() ? ConstantClause.TRUE : ConstantClause.FALSE) :
+                new CriterionClause(criteria.get(random.nextInt(criteria.size())), Value.values()[random.nextInt(Value.values().length)]);
+        case 1:
+            return new CriterionClause(criteria.get(random.nextInt(criteria.size())), Value.POSITIVE);
+        case 2:
+            return new NotClause(random(depth - 1));
+        case 3:
+            return new AndClause(randomList(depth - 1));
+        default:
+            List<Clause> clauses = randomList(depth - 1);
+            return new NListClause(Relation.values()[random.nextInt(3)], random.nextInt(clauses.size() + 2), clauses);
+        }
+    }
+
+    private List<Clause> randomList(int depth) {
+        List<Clause> res = new ArrayList<Clause>();
+        for (int i = random.nextInt(5); i > 0; i--)
+            res.add(random(depth));
+        return res;
+    }
+
+    @Test public void sameAsFillEventAndSimplifier() {
+        for (int i = 0; i < 500; i++) {
+            Clause clause = random(4);
+            for (Event event : new Event().extensions(criteria)) {
+                Clause expected = clause.acceptVisitor(new FillEvent(event)).acceptVisitor(new ClauseSimplifier());
+                Clause actual = clause.acceptVisitor(new FillAndSimplify(event));
+                assertThat(clause + " on " + event, actual, is(expected));
+            }
+        }
+    }
+
+    @Test public void unchangedClausesAreShared() {
+        Clause clause = Clause.and(
+                Clause.criterion(a, Value.POSITIVE),
+                Clause.nlist(Relation.AT_LEAST, 1, Clause.criterion(b, Value.NEGATIVE), Clause.not(Clause.and(Clause.criterion(b, Value.POSITIVE), Clause.criterion(c, Value.POSITIVE)))));
+        assertThat(clause.acceptVisitor(new FillAndSimplify(new Event())) == clause, is(true));
+    }
+
+    @Test public void shortCircuits() {
+        Event event = new Event();
+        event.addSymptom(a, Value.NEGATIVE);
+        event.addSymptom(b, Value.POSITIVE);
+        Clause and = Clause.and(Clause.criterion(a, Value.POSITIVE), Clause.criterion(c, Value.POSITIVE));
+        assertThat(and.acceptVisitor(new FillAndSimplify(event)), is(Clause.fals()));
+        Clause atLeast = Clause.nlist(Relation.AT_LEAST, 1, Clause.criterion(b, Value.POSITIVE), Clause.criterion(c, Value.POSITIVE));
+        assertThat(atLeast.acceptVisitor(new FillAndSimplify(event)), is(Clause.tru()));
+        Clause atMost = Clause.nlist(Relation.AT_MOST, 0, Clause.criterion(b, Value.POSITIVE), Clause.criterion(c, Value.POSITIVE));
+        assertThat(atMost.acceptVisitor(new FillAndSimplify(event)), is(Clause.fals()));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+package org.brightoncollaboration.abc.tools;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.AbcConfigurationException;
+import org.brightoncollaboration.abc.AbcData;
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.BatchClassifier;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.Clause;
+import org.brightoncollaboration.abc.clause.visitor.UnparseClauseAppender;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.csvreader.CsvReader;
+
+public class ClassificationWriterTest {
+
+    private Criterion.Creator cc;
+    private AbcData data;
+    private List<String> names = Arrays.asList("a", "b");
+
+    @Before public void setUp() throws ParseException, AbcConfigurationException {
+        cc = new Criterion.Creator(Arrays.asList(new Criterion("X", "X"), new Criterion("Y", "Y"), new Criterion("Z", "Z")));
+        Map<String, CaseDefinition> cds = new HashMap<String, CaseDefinition>();
+        cds.put("a", AbcParser.parseCaseDefinition("CASEDEFINITION \"a\" LEVEL1 (ATLEAST 2 FROM X, !Y, Z) LEVEL2 (X OR ?Z) LEVEL3 (NOT Y)", cc));
+        cds.put("b", AbcParser.parseCaseDefinition("CASEDEFINITION \"b\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (Y)", cc));
+        data = AbcData.staticData(cc, cds);
+    }
+
+    private String events() {
+        return "uid,X,Y,Z\ne0,yes,,\ne1,,no,\ne2,,,\ne3,no,no,no\n";
+    }
+
+    private static String unparse(Clause clause) {
+        return clause == null ? "" : clause.unparse();
+    }
+
+    @Test public void appenderUnparses() throws ParseException {
+        for (String str : new String[] { "X", "!X AND ?Y", "NOT (X OR Y)", "ATLEAST 2 FROM X, (Y AND Z), (NOT Z)", "EXACTLY 1 FROM X, (ATMOST 1 FROM Y, Z)" }) {
+            Clause clause = AbcParser.parseClause(str, cc);
+            assertThat(UnparseClauseAppender.append(new StringBuilder(), clause).toString(), is(clause.unparse()));
+        }
+    }
+
+    @Test public void csv() throws Exception {
+        StringWriter out = new StringWriter();
+        CsvClassificationWriter writer = new CsvClassificationWriter(out, names);
+        StreamingClassifier classifier = new StreamingClassifier(data, 2, 1, 1);
+        classifier.classify(new CsvEventReader(new StringReader(events()), cc, Value.literals("yes", "no", "unknown")), writer);
+        writer.flush();
+
+        CsvReader csv = new CsvReader(new StringReader(out.toString()));
+        csv.readHeaders();
+        assertThat(Arrays.asList(csv.getHeaders()), is(Arrays.asList(CsvClassificationWriter.HEADERS)));
+        int records = 0;
+        while (csv.readRecord()) {
+            records++;
+            Classification expected = data.getCaseDefinitions().get(csv.get("caseDefinition")).assignLevel(eventOf(csv.get("uid")));
+            assertThat(csv.get("result"), is(expected.getResult().name()));
+            assertThat(csv.get("level"), is(expected.getResult().toInt().toString()));
+            assertThat(csv.get("precondition1"), is(unparse(expected.getPrecondition1())));
+            assertThat(csv.get("precondition2"), is(unparse(expected.getPrecondition2())));
+            assertThat(csv.get("precondition3"), is(unparse(expected.getPrecondition3())));
+        }
+        assertThat(records, is(8));
+    }
+
+    private org.brightoncollaboration.abc.Event eventOf(String uid) throws Exception {
+        CsvEventReader reader = new CsvEventReader(new StringReader(events()), cc, Value.literals("yes", "no", "unknown"));
+        for (CommentedValue.Event event = reader.read(); event != null; event = reader.read())
+            if (event.getUid().equals(uid))
+                return event.toEvent(cc);
+        throw new IllegalArgumentException(uid);
+    }
+
+    @Test public void jsonLines() throws Exception {
+        CommentedValue.Event event = new CommentedValue.Event("say \"x\"\n");
+        event.addSymptom(cc.getByShortName("Y"), new CommentedValue(Value.POSITIVE));
+        StringWriter out = new StringWriter();
+        JsonLinesClassificationWriter writer = new JsonLinesClassificationWriter(out, names);
+        BatchClassifier.Result result = new BatchClassifier(1).classify(Arrays.asList(event), Arrays.asList(
+                data.getCaseDefinitions().get("a"), data.getCaseDefinitions().get("b")), null);
+        writer.write(result);
+        writer.write("e", "b", Classification.createError(Classification.ErrorReason.TIMEOUT));
+        String[] lines = out.toString().split("\n");
+        assertThat(lines.length, is(3));
+        assertThat(lines[1], is("{\"uid\":\"say \\\"x\\\"\\n\",\"caseDefinition\":\"b\",\"result\":\"LEVEL3\",\"level\":3,"
+                + "\"preconditions\":[\"X\",\"X\",\"TRUE\"],\"missingCriteria\":[\"X\"]}"));
+        assertThat(lines[2], is("{\"uid\":\"e\",\"caseDefinition\":\"b\",\"result\":\"ERROR\",\"level\":0,\"errorReason\":\"TIMEOUT\","
+                + "\"preconditions\":[null,null,null],\"missingCriteria\":[]}"));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of the Automatic Brighton Classification Tool (ABC-Tool).
+ *
+ * The ABC-Tool is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Affero General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * The ABC-Tool is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Affero General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Affero Affero General Public
+ * License along with The ABC-Tool.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright 2008, 2012 Benedikt Becker
+ */
+
+package org.brightoncollaboration.abc.tools;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.brightoncollaboration.abc.AbcConfigurationException;
+import org.brightoncollaboration.abc.AbcData;
+import org.brightoncollaboration.abc.AbcParser;
+import org.brightoncollaboration.abc.CaseDefinition;
+import org.brightoncollaboration.abc.Classification;
+import org.brightoncollaboration.abc.CommentedValue;
+import org.brightoncollaboration.abc.Criterion;
+import org.brightoncollaboration.abc.UserDataException;
+import org.brightoncollaboration.abc.Value;
+import org.brightoncollaboration.abc.clause.SolverBudget;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingClassifierTest {
+
+    private Criterion.Creator cc;
+    private AbcData data;
+    private Map<String, Value> literals = Value.literals("yes", "no", "unknown");
+
+    @Before public void setUp() throws ParseException, AbcConfigurationException {
+        cc = new Criterion.Creator(Arrays.asList(new Criterion("X", "X"), new Criterion("Y", "Y"), new Criterion("Z", "Z")));
+        Map<String, CaseDefinition> cds = new HashMap<String, CaseDefinition>();
+        cds.put("b", AbcParser.parseCaseDefinition("CASEDEFINITION \"b\" LEVEL1 (X AND Y) LEVEL2 (X) LEVEL3 (Y)", cc));
+        cds.put("a", AbcParser.parseCaseDefinition("CASEDEFINITION \"a\" LEVEL1 (ATLEAST 2 FROM X, !Y, Z) LEVEL2 (X OR ?Z) LEVEL3 (NOT Y)", cc));
+        data = AbcData.staticData(cc, cds);
+    }
+
+    private String csv(int records) {
+        String[] cells = { "yes", "no", "unknown", "" };
+        StringBuilder sb = new StringBuilder("uid,X,Y,Z,Ignored\n");
+        for (int i = 0; i < records; i++)
+            sb.append(String.format("e%d,%s,%s,%s,whatever\n", i, cells[i % 4], cells[i / 4 % 4], cells[i / 16 % 4]));
+        return sb.toString();
+    }
+
+    private static class CollectingSink implements StreamingClassifier.Sink {
+        List<CommentedValue.Event> events = new ArrayList<CommentedValue.Event>();
+        List<List<Classification>> classifications = new ArrayList<List<Classification>>();
+        public void write(CommentedValue.Event event, List<Classification> classifications) {
+            events.add(event);
+            this.classifications.add(classifications);
+        }
+    }
+
+    @Test public void csvInOrder() throws Exception {
+        StreamingClassifier classifier = new StreamingClassifier(data, 3, 5, 2);
+        assertThat(classifier.getCaseDefinitionNames(), is(Arrays.asList("a", "b")));
+        CollectingSink sink = new CollectingSink();
+        EventReader reader = new CsvEventReader(new StringReader(csv(64)), cc, literals);
+        assertThat(classifier.classify(reader, sink), is(64L));
+        reader.close();
+        for (int i = 0; i < 64; i++) {
+            CommentedValue.Event event = sink.events.get(i);
+            assertThat(event.getUid(), is("e" + i));
+            assertThat(sink.classifications.get(i).get(0).getResult(), is(data.getCaseDefinitions().get("a").assignLevel(event.toEvent()).getResult()));
+            assertThat(sink.classifications.get(i).get(1).getResult(), is(data.getCaseDefinitions().get("b").assignLevel(event.toEvent()).getResult()));
+        }
+    }
+
+    @Test public void csvSink() throws Exception {
+        StreamingClassifier classifier = new StreamingClassifier(data, 2, 2, 1);
+        StringWriter out = new StringWriter();
+        StreamingClassifier.CsvSink sink = new StreamingClassifier.CsvSink(out, classifier.getCaseDefinitionNames());
+        classifier.classify(new CsvEventReader(new StringReader("uid,X,Y\n1,yes,yes\n2,no,no\n"), cc, literals), sink);
+        sink.flush();
+        String[] lines = out.toString().split("\r?\n");
+        assertThat(lines.length, is(3));
+        assertThat(lines[0], is("uid,a,b"));
+        assertThat(lines[1].startsWith("1,"), is(true));
+        assertThat(lines[1].endsWith("," + Classification.Result.LEVEL1.toInt()), is(true));
+    }
+
+    @Test public void jsonLines() throws Exception {
+        String input = "{\"uid\": \"first\", \"X\": \"yes\", \"Y\": \"no\", \"Other\": 12}\n"
+            + "\n"
+            + "{\"X\": null, \"Z\": \"unknown\", \"Y\": \"y\\u0065s\"}\n"
+            + "{}\n";
+        JsonLinesEventReader reader = new JsonLinesEventReader(new StringReader(input), cc, literals);
+        CommentedValue.Event first = reader.read();
+        assertThat(first.getUid(), is("first"));
+        assertThat(first.toEvent().valueOfCriterion(cc.getByShortName("X")), is(Value.POSITIVE));
+        assertThat(first.toEvent().valueOfCriterion(cc.getByShortName("Y")), is(Value.NEGATIVE));
+        CommentedValue.Event second = reader.read();
+        assertThat(second.getUid(), is("3"));
+        assertThat(second.getSymptoms().size(), is(2));
+        assertThat(second.toEvent().valueOfCriterion(cc.getByShortName("Y")), is(Value.POSITIVE));
+        assertThat(reader.read().getSymptoms().size(), is(0));
+        assertThat(reader.read() == null, is(true));
+    }
+
+    @Test(expected = UserDataException.class)
+    public void invalidLiteral() throws Exception {
+        new StreamingClassifier(data, 2, 2, 1).classify(
+                new CsvEventReader(new StringReader("uid,X\n1,yes\n2,maybe\n3,no\n"), cc, literals), new CollectingSink());
+    }
+
+    @Test(timeout = 10000, expected = StackOverflowError.class)
+    public void readerError() throws Exception {
+        new StreamingClassifier(data, 2, 2, 1).classify(new EventReader() {
+            public CommentedValue.Event read() {
+                throw new StackOverflowError();
+            }
+            public void close() {
+            }
+        }, new CollectingSink());
+    }
+
+    @Test public void solverBudget() throws Exception {
+        StreamingClassifier classifier = new StreamingClassifier(data, 2, 2, 1);
+        classifier.setSolverBudget(new SolverBudget(0, 0, 1));
+        CollectingSink sink = new CollectingSink();
+        classifier.classify(new CsvEventReader(new StringReader("uid,X\n1,\n"), cc, literals), sink);
+        for (Classification classification : sink.classifications.get(0))
+            assertThat(classification.getErrorReason(), is(Classification.ErrorReason.CNF_SIZE_LIMIT));
+    }
+
+    @Test(expected = UserDataException.class)
+    public void invalidJson() throws IOException, UserDataException {
+        new JsonLinesEventReader(new StringReader("{\"X\" \"yes\"}\n"), cc, literals).read();
+    }
+}